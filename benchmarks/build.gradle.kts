@@ -0,0 +1,32 @@
+plugins {
+    java
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+group = parent?.group ?: IllegalStateException("Group is not defined")
+version = parent?.version ?: IllegalStateException("Version is not defined")
+description = "Stormify Benchmarks"
+
+java.sourceCompatibility = JavaVersion.VERSION_1_8
+java.targetCompatibility = JavaVersion.VERSION_1_8
+
+dependencies {
+    jmh(project(":db"))
+    jmh(project(":logger"))
+    jmh(project(":biglist"))
+    jmh(project(":tokenizer"))
+    jmh("org.xerial:sqlite-jdbc:3.46.1.3")
+}
+
+jmh {
+    jmhVersion.set("1.37")
+    fork.set(1)
+    warmupIterations.set(3)
+    iterations.set(5)
+    // Report the allocation rate of every benchmark
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    // Run a subset with: ./gradlew :benchmarks:jmh -PjmhIncludes=FixParams
+    if (project.hasProperty("jmhIncludes"))
+        includes.add(project.property("jmhIncludes").toString())
+}
@@ -0,0 +1,37 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.logger;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of formatting log messages, and of skipping messages below the minimum level.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class LoggerBenchmark {
+    private Logger formatting;
+    private SystemOutLogger filtered;
+    private volatile String lastMessage;
+
+    @Setup
+    public void setup() {
+        formatting = new WatchLogger(new SilentLogger(), (level, message, throwable) -> lastMessage = message);
+        filtered = new SystemOutLogger("Benchmark");
+        filtered.setMinimumLevel(LogLevel.ERROR);
+    }
+
+    @Benchmark
+    public void format() {
+        formatting.debug("Query {} executed in {} ms with {} rows", "SELECT * FROM wide_row", 12, 100);
+    }
+
+    @Benchmark
+    public void belowMinimumLevel() {
+        filtered.debug("Query {} executed in {} ms with {} rows", "SELECT * FROM wide_row", 12, 100);
+    }
+}
@@ -0,0 +1,81 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import onl.ycode.logger.SilentLogger;
+import org.sqlite.SQLiteDataSource;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static onl.ycode.stormify.StormifyManager.stormify;
+
+/**
+ * An in-memory SQLite database, shared by all benchmarks of the same JVM. The database lives as long as at least
+ * one connection to it is open, so a connection is kept open for the lifetime of the JVM.
+ */
+public final class BenchmarkDatabase {
+    /**
+     * The number of rows of the {@link WideRow} table.
+     */
+    public static final int ROWS = 1000;
+
+    private static Connection keepAlive;
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Attach Stormify to the benchmark database, and create the test data. It is safe to call this method more
+     * than once.
+     */
+    public static synchronized void init() {
+        if (keepAlive != null)
+            return;
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:file:stormify?mode=memory&cache=shared");
+        try {
+            keepAlive = dataSource.getConnection();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Unable to create benchmark database", e);
+        }
+        stormify().setLogger(new SilentLogger());
+        stormify().setDataSource(dataSource);
+        stormify().executeUpdate("CREATE TABLE wide_row (id INTEGER PRIMARY KEY, name TEXT, description TEXT, code TEXT, " +
+                "category TEXT, label TEXT, notes TEXT, quantity INTEGER, flag INTEGER, counter INTEGER, version INTEGER, " +
+                "amount NUMERIC, price NUMERIC, ratio REAL, score REAL, active INTEGER, archived INTEGER)");
+        stormify().transaction(() -> {
+            for (int i = 1; i <= ROWS; i++)
+                stormify().create(newRow(i));
+        });
+    }
+
+    /**
+     * Create a new, fully populated, row.
+     *
+     * @param id the primary key of the row
+     * @return the new row
+     */
+    public static WideRow newRow(int id) {
+        WideRow row = new WideRow(id);
+        row.setName("Name " + id);
+        row.setDescription("A somewhat longer description of row " + id);
+        row.setCode("C" + id);
+        row.setCategory("Category " + id % 10);
+        row.setLabel("Label " + id % 100);
+        row.setNotes("Notes of row " + id);
+        row.setQuantity(id % 1000);
+        row.setFlag(id % 2);
+        row.setCounter((long) id * 1000);
+        row.setVersion(1L);
+        row.setAmount(BigDecimal.valueOf(id, 2));
+        row.setPrice(BigDecimal.valueOf(id * 3L, 2));
+        row.setRatio(id / 7d);
+        row.setScore(id / 3d);
+        row.setActive(id % 3 == 0);
+        row.setArchived(false);
+        return row;
+    }
+}
@@ -0,0 +1,68 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static onl.ycode.stormify.TypeUtils.castTo;
+
+/**
+ * The cost of converting the values returned by the JDBC drivers to the types of the entity fields.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CastToBenchmark {
+    private final Integer integer = 42;
+    private final Long longValue = 42L;
+    private final BigDecimal decimal = new BigDecimal("42.50");
+    private final Timestamp timestamp = new Timestamp(System.currentTimeMillis());
+    private final String text = "42";
+
+    @Benchmark
+    public Object sameType() {
+        return castTo(Integer.class, integer);
+    }
+
+    @Benchmark
+    public Object longToInteger() {
+        return castTo(Integer.class, longValue);
+    }
+
+    @Benchmark
+    public Object bigDecimalToInteger() {
+        return castTo(int.class, decimal);
+    }
+
+    @Benchmark
+    public Object bigDecimalToDouble() {
+        return castTo(Double.class, decimal);
+    }
+
+    @Benchmark
+    public Object integerToBoolean() {
+        return castTo(Boolean.class, integer);
+    }
+
+    @Benchmark
+    public Object stringToLong() {
+        return castTo(Long.class, text);
+    }
+
+    @Benchmark
+    public Object timestampToDate() {
+        return castTo(Date.class, timestamp);
+    }
+
+    @Benchmark
+    public Object timestampToLocalDateTime() {
+        return castTo(LocalDateTime.class, timestamp);
+    }
+}
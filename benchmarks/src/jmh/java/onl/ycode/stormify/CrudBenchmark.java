@@ -0,0 +1,47 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static onl.ycode.stormify.StormifyManager.stormify;
+
+/**
+ * The cost of the entity operations against an in-memory database, including the population of wide rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CrudBenchmark {
+    private int nextId = BenchmarkDatabase.ROWS + 1;
+    private int readId = 0;
+
+    @Setup
+    public void setup() {
+        BenchmarkDatabase.init();
+    }
+
+    @Benchmark
+    public WideRow populate() {
+        readId = readId % BenchmarkDatabase.ROWS + 1;
+        return stormify().populate(new WideRow(readId));
+    }
+
+    @Benchmark
+    public List<WideRow> readPage() {
+        return stormify().read(WideRow.class, "SELECT * FROM wide_row WHERE id <= ?", 100);
+    }
+
+    @Benchmark
+    public WideRow createUpdateDelete() {
+        WideRow row = stormify().create(BenchmarkDatabase.newRow(nextId++));
+        row.setName("Updated");
+        stormify().update(row);
+        stormify().delete(row);
+        return row;
+    }
+}
@@ -0,0 +1,47 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static onl.ycode.stormify.StormifyManager.stormify;
+
+/**
+ * The cost of reading and writing entity properties through {@link FieldInfo}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FieldAccessBenchmark {
+    private FieldInfo stringField;
+    private FieldInfo integerField;
+    private WideRow row;
+    private int counter = 0;
+
+    @Setup
+    public void setup() {
+        TableInfo info = stormify().getTableInfo(WideRow.class);
+        stringField = info.getField("name");
+        integerField = info.getField("quantity");
+        row = BenchmarkDatabase.newRow(1);
+    }
+
+    @Benchmark
+    public Object getValue() {
+        return stringField.getValue(row);
+    }
+
+    @Benchmark
+    public void setValue() {
+        integerField.setValue(row, counter++);
+    }
+
+    @Benchmark
+    public void setValueWithConversion() {
+        // Drivers often return a Long or a BigDecimal for an integer column
+        integerField.setValue(row, (long) counter++);
+    }
+}
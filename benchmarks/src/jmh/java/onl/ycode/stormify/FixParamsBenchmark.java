@@ -0,0 +1,48 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static onl.ycode.stormify.StormifyManager.stormify;
+
+/**
+ * The cost of expanding the placeholders of a query, with scalar and with iterable arguments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FixParamsBenchmark {
+    private static final String SCALAR_QUERY = "SELECT * FROM wide_row WHERE id = ? AND name = ? AND quantity > ? AND active = ?";
+    private static final String ITERABLE_QUERY = "SELECT * FROM wide_row WHERE category = ? AND id IN ?";
+
+    @Param({"10", "100"})
+    public int listSize;
+
+    private Object[] scalarArgs;
+    private Object[] iterableArgs;
+
+    @Setup
+    public void setup() {
+        scalarArgs = new Object[]{42, "Name 42", 10, true};
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i < listSize; i++)
+            ids.add(i);
+        iterableArgs = new Object[]{"Category 1", ids};
+    }
+
+    @Benchmark
+    public Object scalar() {
+        return stormify().fixParams(SCALAR_QUERY, scalarArgs);
+    }
+
+    @Benchmark
+    public Object iterable() {
+        return stormify().fixParams(ITERABLE_QUERY, iterableArgs);
+    }
+}
@@ -0,0 +1,38 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.tmaker;
+
+import onl.ycode.stormify.BenchmarkDatabase;
+import onl.ycode.stormify.WideRow;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of fetching a page of a {@link PagedDBList}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PagedDBListBenchmark {
+    @Param({"20", "100"})
+    public int pageSize;
+
+    private PagedDBList<WideRow> list;
+    private int page = 0;
+
+    @Setup
+    public void setup() {
+        BenchmarkDatabase.init();
+        list = new PagedDBList<>(WideRow.class);
+        list.setPageSize(pageSize);
+    }
+
+    @Benchmark
+    public Object fetchPage() {
+        int lowBound = page * pageSize;
+        page = (page + 1) % (BenchmarkDatabase.ROWS / pageSize);
+        return list.getFragment(lowBound, lowBound + pageSize);
+    }
+}
@@ -0,0 +1,43 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.tokenizer;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of parsing and generating fixed width records.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TokenizerBenchmark {
+    private Tokenizer tokenizer;
+    private Object[] data;
+    private String line;
+
+    @Setup
+    public void setup() throws TokenizerException {
+        tokenizer = new Tokenizer()
+                .integral(0, 6, "id")
+                .text(6, 26, "name")
+                .decimal(2, 26, 36, "amount")
+                .date(36, 44, "yyyyMMdd", "date");
+        data = new Object[]{1234, "Some name", new BigDecimal("123.45"), new Date()};
+        line = tokenizer.output(data);
+    }
+
+    @Benchmark
+    public String output() throws TokenizerException {
+        return tokenizer.output(data);
+    }
+
+    @Benchmark
+    public InputTokens parse() throws TokenizerException {
+        return tokenizer.parse(line);
+    }
+}
@@ -0,0 +1,111 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.tmaker;
+
+import onl.ycode.stormify.FieldInfo;
+import onl.ycode.stormify.QueryException;
+import onl.ycode.stormify.TableInfo;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+import static onl.ycode.stormify.StormifyManager.stormify;
+
+/**
+ * A filtered list with the details of a parent object, i.e. the paged equivalent of
+ * {@link onl.ycode.stormify.StormifyManager#getDetails(Object, Class, String)}. The list is always constrained
+ * on the foreign key to the parent object, while sorting, filters and the constraint clause can be used as with
+ * any other {@link FilteredList}. Only the rows of the current page are loaded, so parents with a large number of
+ * details can be browsed without loading all of them.
+ * <p>
+ * The reference property of every loaded detail is set to the parent object.
+ *
+ * @param <T> The type of the details
+ */
+public class DetailsList<T> extends FilteredList<T> {
+
+    private final Object parent;
+    private final Object parentId;
+    private final FieldInfo field;
+
+    /**
+     * Creates a new list with the details of the given parent object. The details class should have exactly one
+     * property that references the parent class.
+     *
+     * @param parent       The parent object
+     * @param detailsClass The class of the details
+     */
+    public DetailsList(Object parent, Class<T> detailsClass) {
+        this(parent, detailsClass, null);
+    }
+
+    /**
+     * Creates a new list with the details of the given parent object.
+     *
+     * @param parent       The parent object
+     * @param detailsClass The class of the details
+     * @param propertyName The name of the reference property in the details class (i.e. the foreign key property
+     *                     name). If empty, the property of the details class that matches the parent class will be
+     *                     used. If more than one property matches, an exception will be thrown.
+     */
+    public DetailsList(Object parent, Class<T> detailsClass, String propertyName) {
+        super(detailsClass);
+        this.parent = requireNonNull(parent, "Parent object cannot be null");
+        Class<?> parentClass = parent.getClass();
+        Collection<FieldInfo> parentPrimaryKeys = stormify().getTableInfo(parentClass).getPrimaryKeys();
+        if (parentPrimaryKeys.size() != 1)
+            throw new QueryException("Parent class " + parentClass.getSimpleName() + " should have exactly one primary key");
+        if (propertyName == null || propertyName.isEmpty())
+            propertyName = findFieldByType(info, parentClass);
+        field = info.getField(propertyName);
+        if (field == null)
+            throw new QueryException("Field " + propertyName + " not found in class " + detailsClass.getSimpleName());
+        if (!field.getType().equals(parentClass))
+            throw new QueryException("Field " + propertyName + " is not of type " + parentClass.getSimpleName() +
+                    " in class " + detailsClass.getSimpleName());
+        parentId = parentPrimaryKeys.iterator().next().getValue(parent);
+    }
+
+    /**
+     * Retrieve the parent object of the details.
+     *
+     * @return The parent object
+     */
+    public Object getParent() {
+        return parent;
+    }
+
+    @Override
+    public String getConstraintClause(Consumer<Object> args) {
+        args.accept(parentId);
+        String constraint = super.getConstraintClause(args);
+        String foreignKey = info.getTableName() + "." + field.getDbName() + " = ?";
+        return constraint.isEmpty() ? foreignKey : foreignKey + " AND (" + constraint + ")";
+    }
+
+    @Override
+    protected List<T> getFragment(int lowBound, int upperBound) {
+        List<T> details = super.getFragment(lowBound, upperBound);
+        if (field.isWritable())
+            for (T detail : details)
+                field.setValue(detail, parent);
+        return details;
+    }
+
+    private static String findFieldByType(TableInfo info, Class<?> type) {
+        String found = null;
+        for (FieldInfo field : info.getFields())
+            if (field.getType() == type) {
+                if (found == null)
+                    found = field.getName();
+                else
+                    throw new QueryException("Multiple fields of type " + type.getSimpleName() + " found in " + info.getTableName());
+            }
+        if (found == null)
+            throw new QueryException("Field of type " + type.getSimpleName() + " not found in " + info.getClassType().getSimpleName());
+        return found;
+    }
+}
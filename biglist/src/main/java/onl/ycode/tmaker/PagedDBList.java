@@ -3,6 +3,7 @@
 
 package onl.ycode.tmaker;
 
+import onl.ycode.stormify.ExecutionMonitor;
 import onl.ycode.stormify.SqlDialect;
 import onl.ycode.stormify.TableInfo;
 
@@ -65,8 +66,20 @@ public class PagedDBList<T> extends PagedList<T> {
         List<Object> args = new ArrayList<>();
         String query = stormify().getSqlDialect().queryFormatter.
                 apply(constrDistinct(), getTableName(), constrConstraint(args::add), constrSorting(), lowBound, upperBound);
-        List<T> result = silence(() -> stormify().read(classType, query, args.toArray()));
-        return result == null ? Collections.emptyList() : result;
+        ExecutionMonitor.Span span = stormify().getExecutionMonitor().pageFetchStarted(classType, lowBound, upperBound);
+        // Every page is a different query, so it is not kept in the query cache
+        List<T> result;
+        try {
+            result = stormify().prepare(classType, query).read(args.toArray());
+        } catch (RuntimeException | Error e) {
+            if (span != null)
+                span.finish(-1, e);
+            stormify().getDiagnosticsLogger().error(e.getMessage(), e);
+            return Collections.emptyList();
+        }
+        if (span != null)
+            span.finish(result.size(), null);
+        return result;
     }
 
     private String constrDistinct() {
@@ -0,0 +1,52 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.tmaker;
+
+import onl.ycode.stormify.SpillingList;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A paged list that presents the results of a query, as returned by
+ * {@link onl.ycode.stormify.StormifyManager#readLarge(Class, int, String, Object...)}. The results are already
+ * fetched, so scrolling through the list does not run the query again; only the rows of the current page are
+ * restored from disk.
+ * <p>
+ * Closing this list closes the underlying list as well, and deletes its temporary file.
+ *
+ * @param <T> The type of elements in the list
+ */
+public class SpilledPagedList<T> extends PagedList<T> implements Closeable {
+
+    private final SpillingList<T> source;
+
+    /**
+     * Creates a new paged list based on the given results.
+     *
+     * @param source The results of a query
+     */
+    public SpilledPagedList(SpillingList<T> source) {
+        this.source = requireNonNull(source, "Source list cannot be null");
+    }
+
+    @Override
+    protected List<T> getFragment(int lowBound, int upperBound) {
+        return new ArrayList<>(source.subList(lowBound, upperBound));
+    }
+
+    @Override
+    public int size() {
+        return source.size();
+    }
+
+    @Override
+    public void close() {
+        invalidate();
+        source.close();
+    }
+}
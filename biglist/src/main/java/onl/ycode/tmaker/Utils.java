@@ -10,7 +10,8 @@ class Utils {
      * <p>
      * When the exception occurs, the function will return null.
      * This is useful for handling non-important exceptions in a safe way.
-     * The exception will be logged using the logger of the controller.
+     * The exception will be logged using the rate-limited diagnostics logger of the controller,
+     * so that repeated failures (e.g. on every page fetch) do not flood the log.
      *
      * @param supplier the supplier to execute
      * @param <T>      the type of the result
@@ -20,7 +21,7 @@ class Utils {
         try {
             return supplier.get();
         } catch (Throwable e) {
-            stormify().getLogger().error(e.getMessage(), e);
+            stormify().getDiagnosticsLogger().error(e.getMessage(), e);
             return null;
         }
     }
@@ -3,8 +3,10 @@
 
 package onl.ycode.stormify;
 
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 import static onl.ycode.stormify.StormifyManager.stormify;
@@ -56,10 +58,15 @@ import static onl.ycode.stormify.StormifyManager.stormify;
  * Note that the {@link #autoPopulate()} method should be called before accessing the fields itself. This method is similar to what JPA
  * does with the lazy loading of an object. The main difference is, this method needs to be defined explicitly by the developer, instead
  * of adding arbitrary code to pojo classes.
+ * <p>
+ * Fields that belong to a lazy group (see {@link DbField#lazyGroup()}) are not fetched by {@link #autoPopulate()}.
+ * Call {@link #autoPopulate(String)} with the name of the group instead, before accessing them.
  */
 public abstract class AutoTable {
 
     private volatile boolean isDirty = true;
+    private Set<String> loadedGroups;
+    private Set<String> loadedColumns;
     private final TableInfo tableInfo = stormify().getTableInfo(getClass());
 
     @Override
@@ -101,7 +108,39 @@ public abstract class AutoTable {
             synchronized (this) {
                 if (isDirty) {
                     isDirty = false;
-                    stormify().forcePopulate(this);
+                    ExecutionMonitor.Span span = stormify().getExecutionMonitor().populateStarted(getClass());
+                    try {
+                        stormify().forcePopulate(this);
+                    } catch (RuntimeException e) {
+                        if (span != null)
+                            span.finish(-1, e);
+                        throw e;
+                    }
+                    if (span != null)
+                        span.finish(1, null);
+                }
+            }
+    }
+
+    /**
+     * Automatically populates the fields of a lazy group of this object. The ID field should already have been set.
+     *
+     * @param group the name of the lazy group.
+     */
+    protected void autoPopulate(String group) {
+        if (!isGroupLoaded(group))
+            synchronized (this) {
+                if (!isGroupLoaded(group)) {
+                    ExecutionMonitor.Span span = stormify().getExecutionMonitor().populateStarted(getClass());
+                    try {
+                        stormify().forcePopulate(this, group);
+                    } catch (RuntimeException e) {
+                        if (span != null)
+                            span.finish(-1, e);
+                        throw e;
+                    }
+                    if (span != null)
+                        span.finish(1, null);
                 }
             }
     }
@@ -111,5 +150,32 @@ public abstract class AutoTable {
      */
     protected synchronized void markPopulated() {
         isDirty = false;
+        loadedColumns = null;
+    }
+
+    /**
+     * Marks this object as populated only with the given columns, e.g. by a projection. The fields of other columns
+     * are not written back when the object is updated.
+     */
+    synchronized void markColumnsLoaded(Set<String> columns) {
+        loadedColumns = columns;
+    }
+
+    synchronized boolean isPartiallyLoaded() {
+        return loadedColumns != null;
+    }
+
+    synchronized boolean isColumnLoaded(String column) {
+        return loadedColumns == null || loadedColumns.contains(column);
+    }
+
+    synchronized boolean isGroupLoaded(String group) {
+        return loadedGroups != null && loadedGroups.contains(group);
+    }
+
+    synchronized void markGroupLoaded(String group) {
+        if (loadedGroups == null)
+            loadedGroups = new HashSet<>();
+        loadedGroups.add(group);
     }
 }
@@ -69,7 +69,9 @@ class BeanHelper {
             bInfo.creatable &= dbInsertable(bInfo.getterAnnotation, bInfo.setterAnnotation, bInfo.fieldAnnotation);
             bInfo.updatable &= dbUpdatable(bInfo.getterAnnotation, bInfo.setterAnnotation, bInfo.fieldAnnotation);
             hasPrimaryKey |= fieldPrimaryKey;
-            fieldInfo.add(new FieldInfo(bInfo.propertyName, dbName, bInfo.type, bInfo.getter, bInfo.setter, bInfo.sequence, fieldPrimaryKey, bInfo.creatable, bInfo.updatable));
+            String lazyGroup = fieldPrimaryKey ? null : lazyGroup(bInfo.getterAnnotation, bInfo.setterAnnotation, bInfo.fieldAnnotation);
+            boolean interned = dbIntern(bInfo.getterAnnotation, bInfo.setterAnnotation, bInfo.fieldAnnotation);
+            fieldInfo.add(new FieldInfo(bInfo.propertyName, dbName, bInfo.type, bInfo.getter, bInfo.setter, bInfo.sequence, fieldPrimaryKey, bInfo.creatable, bInfo.updatable, lazyGroup, interned));
         }
 
         DbTable dbTable = clazz.getAnnotation(DbTable.class);
@@ -96,6 +98,13 @@ class BeanHelper {
         Map<Class<?>, Map<String, Method>> getters = new HashMap<>();
         Map<Class<?>, Map<String, Method>> setters = new HashMap<>();
 
+        // The components of records are getters, although their names have no prefix
+        Method[] accessors = ConstructorPlan.recordAccessors(container);
+        if (accessors != null)
+            for (Method accessor : accessors)
+                if (!Collection.class.isAssignableFrom(accessor.getReturnType()) && !Map.class.isAssignableFrom(accessor.getReturnType()))
+                    getters.computeIfAbsent(accessor.getReturnType(), k -> new HashMap<>()).put(accessor.getName(), accessor);
+
         // Iterate through all methods of the provided class
         for (Method m : container.getMethods()) {
             // Check if the method is a setter by its name (starts with "set")
@@ -199,6 +208,22 @@ class BeanHelper {
         return name;
     }
 
+    private static String lazyGroup(DbField getter, DbField setter, DbField field) {
+        if (getter != null && !getter.lazyGroup().trim().isEmpty())
+            return getter.lazyGroup().trim();
+        if (setter != null && !setter.lazyGroup().trim().isEmpty())
+            return setter.lazyGroup().trim();
+        if (field != null && !field.lazyGroup().trim().isEmpty())
+            return field.lazyGroup().trim();
+        return null;
+    }
+
+    private static boolean dbIntern(DbField getter, DbField setter, DbField field) {
+        return (getter != null && getter.intern())
+                || (setter != null && setter.intern())
+                || (field != null && field.intern());
+    }
+
     private static boolean dbInsertable(DbField getter, DbField setter, DbField field) {
         return (getter == null || getter.creatable())
                 && (setter == null || setter.creatable())
@@ -0,0 +1,419 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.*;
+
+/**
+ * A batch of rows of a query result, stored by column. Numeric columns are stored in primitive arrays, character
+ * columns are dictionary-encoded, and null values are kept in a bitmap per column. This is much more compact than
+ * reading every row as an entity, and it is suitable for exporting or aggregating large amounts of data.
+ * <p>
+ * A column is stored as one of the {@link ColumnType} types, depending on its SQL type. Use the accessor that
+ * matches the type of the column:
+ * <pre>{@code
+ * ColumnBatch batch = stormify().readColumns("SELECT id, weight FROM item");
+ * long[] ids = batch.getLongs(0);
+ * double[] weights = batch.getDoubles(1);
+ * for (int row = 0; row < batch.size(); row++)
+ *     if (!batch.isNull(1, row))
+ *         total += weights[row];
+ * }</pre>
+ * Primitive arrays have exactly {@link #size()} elements; null values are stored as zero.
+ */
+public final class ColumnBatch {
+    /**
+     * The type of the storage of a column.
+     */
+    public enum ColumnType {
+        /**
+         * Stored as {@code int[]}. Used for TINYINT, SMALLINT and INTEGER columns.
+         */
+        INT,
+        /**
+         * Stored as {@code long[]}. Used for BIGINT columns, and NUMERIC/DECIMAL columns without fractional digits
+         * and with a known precision of at most 18 digits.
+         */
+        LONG,
+        /**
+         * Stored as {@code double[]}. Used for floating point columns.
+         */
+        DOUBLE,
+        /**
+         * Stored as dictionary codes, {@code int[]}, and a dictionary of distinct values, {@code String[]}. Used for
+         * character columns.
+         */
+        STRING,
+        /**
+         * Stored as {@code Object[]}. Used for all other columns, including NUMERIC/DECIMAL columns that do not fit
+         * in a {@code long}, which are stored as {@link java.math.BigDecimal} values.
+         */
+        OBJECT
+    }
+
+    private final String[] names;
+    private final ColumnType[] types;
+    private final Object[] data;
+    private final String[][] dictionaries;
+    private final BitSet[] nulls;
+    private final int size;
+
+    private ColumnBatch(String[] names, ColumnType[] types, Object[] data, String[][] dictionaries, BitSet[] nulls, int size) {
+        this.names = names;
+        this.types = types;
+        this.data = data;
+        this.dictionaries = dictionaries;
+        this.nulls = nulls;
+        this.size = size;
+    }
+
+    /**
+     * Get the number of rows of this batch.
+     *
+     * @return the number of rows.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of columns of this batch.
+     *
+     * @return the number of columns.
+     */
+    public int getColumnCount() {
+        return names.length;
+    }
+
+    /**
+     * Get the name of a column, as defined in the query.
+     *
+     * @param column the index of the column, starting from 0.
+     * @return the name of the column.
+     */
+    public String getColumnName(int column) {
+        return names[column];
+    }
+
+    /**
+     * Find the index of a column, given its name. The name is first searched case-sensitive, and then
+     * case-insensitive.
+     *
+     * @param name the name of the column.
+     * @return the index of the column, starting from 0, or -1 if the column was not found.
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < names.length; i++)
+            if (names[i].equals(name))
+                return i;
+        for (int i = 0; i < names.length; i++)
+            if (names[i].equalsIgnoreCase(name))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Get the storage type of a column.
+     *
+     * @param column the index of the column, starting from 0.
+     * @return the storage type of the column.
+     */
+    public ColumnType getColumnType(int column) {
+        return types[column];
+    }
+
+    /**
+     * Check if a value is null.
+     *
+     * @param column the index of the column, starting from 0.
+     * @param row    the index of the row, starting from 0.
+     * @return true if the value is null.
+     */
+    public boolean isNull(int column, int row) {
+        return nulls[column] != null && nulls[column].get(row);
+    }
+
+    /**
+     * Get the values of a column of type {@link ColumnType#INT}.
+     *
+     * @param column the index of the column, starting from 0.
+     * @return the values of the column.
+     */
+    public int[] getInts(int column) {
+        return (int[]) typed(column, ColumnType.INT);
+    }
+
+    /**
+     * Get the values of a column of type {@link ColumnType#LONG}.
+     *
+     * @param column the index of the column, starting from 0.
+     * @return the values of the column.
+     */
+    public long[] getLongs(int column) {
+        return (long[]) typed(column, ColumnType.LONG);
+    }
+
+    /**
+     * Get the values of a column of type {@link ColumnType#DOUBLE}.
+     *
+     * @param column the index of the column, starting from 0.
+     * @return the values of the column.
+     */
+    public double[] getDoubles(int column) {
+        return (double[]) typed(column, ColumnType.DOUBLE);
+    }
+
+    /**
+     * Get the dictionary codes of a column of type {@link ColumnType#STRING}. Every code is an index in the
+     * dictionary of the column, see {@link #getDictionary(int)}.
+     *
+     * @param column the index of the column, starting from 0.
+     * @return the dictionary codes of the column.
+     */
+    public int[] getCodes(int column) {
+        return (int[]) typed(column, ColumnType.STRING);
+    }
+
+    /**
+     * Get the distinct values of a column of type {@link ColumnType#STRING}.
+     *
+     * @param column the index of the column, starting from 0.
+     * @return the distinct values of the column.
+     */
+    public String[] getDictionary(int column) {
+        typed(column, ColumnType.STRING);
+        return dictionaries[column];
+    }
+
+    /**
+     * Get a value of a column of type {@link ColumnType#STRING}.
+     *
+     * @param column the index of the column, starting from 0.
+     * @param row    the index of the row, starting from 0.
+     * @return the value, or null if the value is null.
+     */
+    public String getString(int column, int row) {
+        return isNull(column, row) ? null : dictionaries[column][getCodes(column)[row]];
+    }
+
+    /**
+     * Get a value of any column, as an object. Numeric values are boxed.
+     *
+     * @param column the index of the column, starting from 0.
+     * @param row    the index of the row, starting from 0.
+     * @return the value, or null if the value is null.
+     */
+    public Object getObject(int column, int row) {
+        if (isNull(column, row))
+            return null;
+        switch (types[column]) {
+            case INT:
+                return ((int[]) data[column])[row];
+            case LONG:
+                return ((long[]) data[column])[row];
+            case DOUBLE:
+                return ((double[]) data[column])[row];
+            case STRING:
+                return dictionaries[column][((int[]) data[column])[row]];
+            default:
+                return ((Object[]) data[column])[row];
+        }
+    }
+
+    private Object typed(int column, ColumnType type) {
+        if (types[column] != type)
+            throw new QueryException("Column " + names[column] + " is of type " + types[column] + ", not " + type);
+        return data[column];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("ColumnBatch[").append(size).append(" rows");
+        for (int i = 0; i < names.length; i++)
+            out.append(i == 0 ? ": " : ", ").append(names[i]).append(' ').append(types[i]);
+        return out.append(']').toString();
+    }
+
+    /**
+     * Collects the rows of a result set, column by column.
+     */
+    static final class Collector {
+        private final String[] names;
+        private final ColumnType[] types;
+        private final boolean[] decimals;
+        private final int initialCapacity;
+        private Object[] data;
+        private List<Map<String, Integer>> dictionaries;
+        private BitSet[] nulls;
+        private int capacity;
+        private int size;
+
+        Collector(ResultSetMetaData metaData, int initialCapacity) throws SQLException {
+            int columns = metaData.getColumnCount();
+            this.names = new String[columns];
+            this.types = new ColumnType[columns];
+            this.decimals = new boolean[columns];
+            for (int i = 0; i < columns; i++) {
+                names[i] = metaData.getColumnLabel(i + 1);
+                types[i] = typeOf(metaData, i + 1);
+                int sqlType = metaData.getColumnType(i + 1);
+                decimals[i] = sqlType == Types.NUMERIC || sqlType == Types.DECIMAL;
+            }
+            this.initialCapacity = Math.max(initialCapacity, 1);
+            reset();
+        }
+
+        int size() {
+            return size;
+        }
+
+        void add(ResultSet resultSet) throws SQLException {
+            if (size == capacity)
+                grow();
+            for (int i = 0; i < types.length; i++) {
+                int column = i + 1;
+                boolean isNull;
+                switch (types[i]) {
+                    case INT:
+                        int intValue = resultSet.getInt(column);
+                        ((int[]) data[i])[size] = intValue;
+                        isNull = intValue == 0 && resultSet.wasNull();
+                        break;
+                    case LONG:
+                        long longValue = resultSet.getLong(column);
+                        ((long[]) data[i])[size] = longValue;
+                        isNull = longValue == 0 && resultSet.wasNull();
+                        break;
+                    case DOUBLE:
+                        double doubleValue = resultSet.getDouble(column);
+                        ((double[]) data[i])[size] = doubleValue;
+                        isNull = doubleValue == 0 && resultSet.wasNull();
+                        break;
+                    case STRING:
+                        String text = resultSet.getString(column);
+                        isNull = text == null;
+                        if (!isNull) {
+                            Map<String, Integer> dictionary = dictionaries.get(i);
+                            Integer code = dictionary.get(text);
+                            if (code == null)
+                                dictionary.put(text, code = dictionary.size());
+                            ((int[]) data[i])[size] = code;
+                        }
+                        break;
+                    default:
+                        Object value = decimals[i] ? resultSet.getBigDecimal(column) : Lobs.materialize(resultSet.getObject(column));
+                        ((Object[]) data[i])[size] = value;
+                        isNull = value == null;
+                }
+                if (isNull) {
+                    if (nulls[i] == null)
+                        nulls[i] = new BitSet();
+                    nulls[i].set(size);
+                }
+            }
+            size++;
+        }
+
+        /**
+         * Create a batch with the rows collected so far, and start a new batch.
+         */
+        ColumnBatch build() {
+            Object[] trimmed = new Object[types.length];
+            String[][] dictionaryValues = new String[types.length][];
+            for (int i = 0; i < types.length; i++) {
+                switch (types[i]) {
+                    case INT:
+                        trimmed[i] = Arrays.copyOf((int[]) data[i], size);
+                        break;
+                    case LONG:
+                        trimmed[i] = Arrays.copyOf((long[]) data[i], size);
+                        break;
+                    case DOUBLE:
+                        trimmed[i] = Arrays.copyOf((double[]) data[i], size);
+                        break;
+                    case STRING:
+                        trimmed[i] = Arrays.copyOf((int[]) data[i], size);
+                        Map<String, Integer> dictionary = dictionaries.get(i);
+                        String[] values = new String[dictionary.size()];
+                        for (Map.Entry<String, Integer> entry : dictionary.entrySet())
+                            values[entry.getValue()] = entry.getKey();
+                        dictionaryValues[i] = values;
+                        break;
+                    default:
+                        trimmed[i] = Arrays.copyOf((Object[]) data[i], size);
+                }
+            }
+            ColumnBatch batch = new ColumnBatch(names, types, trimmed, dictionaryValues, nulls, size);
+            reset();
+            return batch;
+        }
+
+        private void reset() {
+            capacity = initialCapacity;
+            size = 0;
+            data = new Object[types.length];
+            dictionaries = new ArrayList<>(types.length);
+            nulls = new BitSet[types.length];
+            for (int i = 0; i < types.length; i++) {
+                data[i] = allocate(types[i], capacity);
+                dictionaries.add(types[i] == ColumnType.STRING ? new HashMap<>() : null);
+            }
+        }
+
+        private void grow() {
+            capacity = capacity * 2;
+            for (int i = 0; i < types.length; i++) {
+                Object grown = allocate(types[i], capacity);
+                System.arraycopy(data[i], 0, grown, 0, size);
+                data[i] = grown;
+            }
+        }
+
+        private static Object allocate(ColumnType type, int capacity) {
+            switch (type) {
+                case INT:
+                case STRING:
+                    return new int[capacity];
+                case LONG:
+                    return new long[capacity];
+                case DOUBLE:
+                    return new double[capacity];
+                default:
+                    return new Object[capacity];
+            }
+        }
+
+        private static ColumnType typeOf(ResultSetMetaData metaData, int column) throws SQLException {
+            switch (metaData.getColumnType(column)) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                    return ColumnType.INT;
+                case Types.BIGINT:
+                    return ColumnType.LONG;
+                case Types.NUMERIC:
+                case Types.DECIMAL:
+                    int precision = metaData.getPrecision(column);
+                    return metaData.getScale(column) == 0 && precision > 0 && precision <= 18 ? ColumnType.LONG : ColumnType.OBJECT;
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    return ColumnType.DOUBLE;
+                case Types.CHAR:
+                case Types.VARCHAR:
+                case Types.LONGVARCHAR:
+                case Types.NCHAR:
+                case Types.NVARCHAR:
+                case Types.LONGNVARCHAR:
+                    return ColumnType.STRING;
+                default:
+                    return ColumnType.OBJECT;
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Reads a column value from a result set using the typed getter that matches the type of the field, in order to
+ * avoid the intermediate objects created by {@link ResultSet#getObject(int)} and the conversion that follows.
+ */
+interface ColumnReader {
+
+    Object read(ResultSet resultSet, int column) throws SQLException;
+
+    /**
+     * Find the typed reader for a field, given the type of the field and the JDBC type of the column.
+     *
+     * @param fieldType the type of the field
+     * @param sqlType   the JDBC type of the column, see {@link Types}
+     * @param scale     the scale of the column, for decimal columns
+     * @return the reader, or null if the value should be read with {@link ResultSet#getObject(int)} and converted
+     */
+    static ColumnReader of(Class<?> fieldType, int sqlType, int scale) {
+        if (isInteger(sqlType) || isDecimal(sqlType)) {
+            boolean exact = isInteger(sqlType) || ((sqlType == Types.NUMERIC || sqlType == Types.DECIMAL) && scale == 0);
+            if (fieldType == int.class || fieldType == Integer.class)
+                return exact ? (rs, c) -> {
+                    int value = rs.getInt(c);
+                    return value == 0 && rs.wasNull() ? null : value;
+                } : null;
+            if (fieldType == long.class || fieldType == Long.class)
+                return exact ? (rs, c) -> {
+                    long value = rs.getLong(c);
+                    return value == 0 && rs.wasNull() ? null : value;
+                } : null;
+            if (fieldType == short.class || fieldType == Short.class)
+                return exact ? (rs, c) -> {
+                    short value = rs.getShort(c);
+                    return value == 0 && rs.wasNull() ? null : value;
+                } : null;
+            if (fieldType == double.class || fieldType == Double.class)
+                return (rs, c) -> {
+                    double value = rs.getDouble(c);
+                    return value == 0 && rs.wasNull() ? null : value;
+                };
+            if (fieldType == float.class || fieldType == Float.class)
+                return (rs, c) -> {
+                    float value = rs.getFloat(c);
+                    return value == 0 && rs.wasNull() ? null : value;
+                };
+            if (fieldType == BigDecimal.class)
+                return ResultSet::getBigDecimal;
+            return null;
+        }
+        switch (sqlType) {
+            case Types.BOOLEAN:
+            case Types.BIT:
+                return fieldType == boolean.class || fieldType == Boolean.class ? (rs, c) -> {
+                    boolean value = rs.getBoolean(c);
+                    return !value && rs.wasNull() ? null : value;
+                } : null;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                return fieldType == String.class ? ResultSet::getString : null;
+            case Types.BINARY:
+            case Types.VARBINARY:
+            case Types.LONGVARBINARY:
+                return fieldType == byte[].class ? ResultSet::getBytes : null;
+            case Types.TIMESTAMP:
+                return fieldType == LocalDateTime.class ? temporal(LocalDateTime.class) : null;
+            case Types.DATE:
+                return fieldType == LocalDate.class ? temporal(LocalDate.class) : null;
+            case Types.TIME:
+                return fieldType == LocalTime.class ? temporal(LocalTime.class) : null;
+            default:
+                return null;
+        }
+    }
+
+    static ColumnReader temporal(Class<?> type) {
+        return (rs, c) -> {
+            try {
+                return rs.getObject(c, type);
+            } catch (SQLFeatureNotSupportedException | AbstractMethodError e) {
+                // Drivers before JDBC 4.2
+                return TypeUtils.castTo(type, rs.getObject(c));
+            }
+        };
+    }
+
+    static boolean isInteger(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    static boolean isDecimal(int sqlType) {
+        switch (sqlType) {
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+/**
+ * A histogram of the time the connections handed out by Stormify were held by the application, before they were
+ * released. Each bucket counts the connections held up to its upper bound (inclusive), in milliseconds, and more
+ * than the upper bound of the previous bucket. The last bucket has no upper bound.
+ *
+ * @see StormifyManager#getConnectionHoldHistogram()
+ */
+public final class ConnectionHoldHistogram {
+    private final long[] upperBounds;
+    private final long[] counts;
+    private final long totalMillis;
+    private final long maxMillis;
+    private final int active;
+
+    ConnectionHoldHistogram(long[] upperBounds, long[] counts, long totalMillis, long maxMillis, int active) {
+        this.upperBounds = upperBounds;
+        this.counts = counts;
+        this.totalMillis = totalMillis;
+        this.maxMillis = maxMillis;
+        this.active = active;
+    }
+
+    /**
+     * Get the upper bounds of the buckets, in milliseconds. The last bucket, which has no upper bound, is not
+     * included, so this array is one item shorter than {@link #getCounts()}.
+     *
+     * @return the upper bounds of the buckets.
+     */
+    public long[] getUpperBounds() {
+        return upperBounds.clone();
+    }
+
+    /**
+     * Get the number of released connections per bucket.
+     *
+     * @return the counts of the buckets.
+     */
+    public long[] getCounts() {
+        return counts.clone();
+    }
+
+    /**
+     * Get the total number of released connections.
+     *
+     * @return the number of released connections.
+     */
+    public long getCount() {
+        long sum = 0;
+        for (long count : counts)
+            sum += count;
+        return sum;
+    }
+
+    /**
+     * Get the mean hold time of the released connections, in milliseconds.
+     *
+     * @return the mean hold time, or 0 if no connection was released yet.
+     */
+    public double getMeanMillis() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) totalMillis / count;
+    }
+
+    /**
+     * Get the maximum hold time of the released connections, in milliseconds.
+     *
+     * @return the maximum hold time.
+     */
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    /**
+     * Get the number of connections that are held at the moment of the snapshot.
+     *
+     * @return the number of active connections.
+     */
+    public int getActive() {
+        return active;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder("Connection hold time: count=").append(getCount())
+                .append(", mean=").append(String.format("%.1f", getMeanMillis())).append("ms, max=").append(maxMillis)
+                .append("ms, active=").append(active);
+        for (int i = 0; i < counts.length; i++)
+            if (counts[i] > 0)
+                out.append("\n\t").append(i < upperBounds.length ? "<= " + upperBounds[i] : "> " + upperBounds[upperBounds.length - 1])
+                        .append(" ms: ").append(counts[i]);
+        return out.toString();
+    }
+}
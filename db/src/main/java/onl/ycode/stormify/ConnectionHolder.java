@@ -0,0 +1,76 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+/**
+ * A snapshot of a connection that is currently held by the application, as handed out by Stormify.
+ *
+ * @see StormifyManager#getConnectionHolders()
+ */
+public final class ConnectionHolder {
+    private final String threadName;
+    private final long acquiredAt;
+    private final long heldMillis;
+    private final boolean transactional;
+    private final StackTraceElement[] stack;
+
+    ConnectionHolder(String threadName, long acquiredAt, long heldMillis, boolean transactional, StackTraceElement[] stack) {
+        this.threadName = threadName;
+        this.acquiredAt = acquiredAt;
+        this.heldMillis = heldMillis;
+        this.transactional = transactional;
+        this.stack = stack;
+    }
+
+    /**
+     * Get the name of the thread that acquired the connection.
+     *
+     * @return the thread name.
+     */
+    public String getThreadName() {
+        return threadName;
+    }
+
+    /**
+     * Get the time the connection was acquired, in milliseconds since the epoch.
+     *
+     * @return the acquisition time.
+     */
+    public long getAcquiredAt() {
+        return acquiredAt;
+    }
+
+    /**
+     * Get the time the connection is held, in milliseconds, at the moment of the snapshot.
+     *
+     * @return the hold time.
+     */
+    public long getHeldMillis() {
+        return heldMillis;
+    }
+
+    /**
+     * Check if the connection is used by a transaction.
+     *
+     * @return true if the connection belongs to a transaction.
+     */
+    public boolean isTransactional() {
+        return transactional;
+    }
+
+    /**
+     * Get the stack trace of the code that acquired the connection. Stack traces are only sampled when
+     * enabled with {@link StormifyManager#setConnectionStackSampling(int)}.
+     *
+     * @return the stack trace of the acquisition, or null if it was not sampled.
+     */
+    public StackTraceElement[] getStack() {
+        return stack == null ? null : stack.clone();
+    }
+
+    @Override
+    public String toString() {
+        return "Connection held for " + heldMillis + " ms by thread " + threadName + (transactional ? " (transactional)" : "");
+    }
+}
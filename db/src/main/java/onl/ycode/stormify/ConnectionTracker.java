@@ -0,0 +1,151 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static onl.ycode.stormify.StormifyManager.stormify;
+
+/**
+ * Keeps track of the connections handed out by Stormify, in order to detect connections that are held for too long
+ * and to collect statistics about the hold time of the connections.
+ */
+final class ConnectionTracker {
+    private static final long[] BUCKET_BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1_000, 2_000, 5_000, 10_000, 30_000, 60_000};
+    private static final long MIN_CHECK_PERIOD_MILLIS = 100;
+
+    private final ConcurrentHashMap<Lease, Boolean> leases = new ConcurrentHashMap<>();
+    private final LongAdder[] buckets = new LongAdder[BUCKET_BOUNDS.length + 1];
+    private final LongAdder totalMillis = new LongAdder();
+    private final AtomicLong maxMillis = new AtomicLong();
+    private final AtomicLong acquisitions = new AtomicLong();
+
+    private volatile long warnThresholdMillis = 0;
+    private volatile int stackSamplingRate = 0;
+    private ScheduledExecutorService watchdog;
+    private ScheduledFuture<?> watchdogTask;
+
+    ConnectionTracker() {
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    Lease acquired(boolean transactional) {
+        long count = acquisitions.incrementAndGet();
+        int rate = stackSamplingRate;
+        StackTraceElement[] stack = null;
+        if (rate > 0 && count % rate == 0) {
+            StackTraceElement[] trace = new Throwable().getStackTrace();
+            stack = Arrays.copyOfRange(trace, 1, trace.length);
+        }
+        Lease lease = new Lease(transactional, stack);
+        leases.put(lease, Boolean.TRUE);
+        return lease;
+    }
+
+    void released(Lease lease) {
+        if (lease == null || leases.remove(lease) == null)
+            return;
+        long held = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lease.acquiredNanos);
+        buckets[bucketOf(held)].increment();
+        totalMillis.add(held);
+        long max;
+        while (held > (max = maxMillis.get()) && !maxMillis.compareAndSet(max, held)) {
+        }
+        long threshold = warnThresholdMillis;
+        if (threshold > 0 && held >= threshold)
+            stormify().getLogger().warn(describe(lease, "Connection released after " + held + " ms"));
+    }
+
+    synchronized void setWarnThreshold(long thresholdMillis) {
+        warnThresholdMillis = Math.max(thresholdMillis, 0);
+        if (watchdogTask != null) {
+            watchdogTask.cancel(false);
+            watchdogTask = null;
+        }
+        if (thresholdMillis <= 0)
+            return;
+        if (watchdog == null)
+            watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "stormify-connection-watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+        long period = Math.max(thresholdMillis / 2, MIN_CHECK_PERIOD_MILLIS);
+        watchdogTask = watchdog.scheduleWithFixedDelay(this::checkLeases, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    void setStackSamplingRate(int rate) {
+        stackSamplingRate = Math.max(rate, 0);
+    }
+
+    List<ConnectionHolder> getHolders() {
+        long now = System.nanoTime();
+        List<ConnectionHolder> result = new ArrayList<>();
+        for (Lease lease : leases.keySet())
+            result.add(new ConnectionHolder(lease.threadName, lease.acquiredAt, TimeUnit.NANOSECONDS.toMillis(now - lease.acquiredNanos),
+                    lease.transactional, lease.stack));
+        result.sort((a, b) -> Long.compare(b.getHeldMillis(), a.getHeldMillis()));
+        return result;
+    }
+
+    ConnectionHoldHistogram getHistogram() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < counts.length; i++)
+            counts[i] = buckets[i].sum();
+        return new ConnectionHoldHistogram(BUCKET_BOUNDS.clone(), counts, totalMillis.sum(), maxMillis.get(), leases.size());
+    }
+
+    private void checkLeases() {
+        long threshold = warnThresholdMillis;
+        if (threshold <= 0)
+            return;
+        long now = System.nanoTime();
+        for (Lease lease : leases.keySet()) {
+            long held = TimeUnit.NANOSECONDS.toMillis(now - lease.acquiredNanos);
+            if (held >= threshold && !lease.warned) {
+                lease.warned = true;
+                try {
+                    stormify().getLogger().warn(describe(lease, "Connection held for " + held + " ms and still not released"));
+                } catch (RuntimeException ignored) {
+                }
+            }
+        }
+    }
+
+    private static String describe(Lease lease, String message) {
+        StringBuilder out = new StringBuilder(message)
+                .append(" (").append(lease.transactional ? "transactional, " : "").append("thread ").append(lease.threadName).append(')');
+        if (lease.stack != null)
+            for (StackTraceElement ste : lease.stack)
+                out.append("\n\tat ").append(ste);
+        return out.toString();
+    }
+
+    private static int bucketOf(long millis) {
+        for (int i = 0; i < BUCKET_BOUNDS.length; i++)
+            if (millis <= BUCKET_BOUNDS[i])
+                return i;
+        return BUCKET_BOUNDS.length;
+    }
+
+    static final class Lease {
+        private final String threadName = Thread.currentThread().getName();
+        private final long acquiredAt = System.currentTimeMillis();
+        private final long acquiredNanos = System.nanoTime();
+        private final boolean transactional;
+        private final StackTraceElement[] stack;
+        private volatile boolean warned = false;
+
+        private Lease(boolean transactional, StackTraceElement[] stack) {
+            this.transactional = transactional;
+            this.stack = stack;
+        }
+    }
+}
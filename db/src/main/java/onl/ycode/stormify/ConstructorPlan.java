@@ -0,0 +1,178 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+/**
+ * The constructor of an immutable class, together with the order of its arguments. Immutable classes are created
+ * with one constructor call, instead of calling the setter of every field. The supported classes are Java records,
+ * using their canonical constructor, and classes without a default constructor, that have a constructor annotated
+ * with {@code java.beans.ConstructorProperties}.
+ * <p>
+ * Records and the {@code ConstructorProperties} annotation are accessed with reflection, so that they are supported
+ * when available, without requiring a newer Java version or the {@code java.desktop} module.
+ */
+final class ConstructorPlan {
+    private static final Method isRecordMethod;
+    private static final Method recordComponentsMethod;
+    private static final Method componentNameMethod;
+    private static final Method componentTypeMethod;
+    private static final Method componentAccessorMethod;
+    private static final Class<? extends Annotation> constructorPropertiesClass;
+    private static final Method constructorPropertiesValueMethod;
+
+    static {
+        Method isRecord = null, components = null, name = null, type = null, accessor = null;
+        try {
+            isRecord = Class.class.getMethod("isRecord");
+            components = Class.class.getMethod("getRecordComponents");
+            Class<?> componentClass = Class.forName("java.lang.reflect.RecordComponent");
+            name = componentClass.getMethod("getName");
+            type = componentClass.getMethod("getType");
+            accessor = componentClass.getMethod("getAccessor");
+        } catch (ReflectiveOperationException e) {
+            // Records are not supported by this Java version
+            isRecord = null;
+        }
+        isRecordMethod = isRecord;
+        recordComponentsMethod = components;
+        componentNameMethod = name;
+        componentTypeMethod = type;
+        componentAccessorMethod = accessor;
+        Class<? extends Annotation> annotation;
+        Method value;
+        try {
+            annotation = Class.forName("java.beans.ConstructorProperties").asSubclass(Annotation.class);
+            value = annotation.getMethod("value");
+        } catch (ReflectiveOperationException | LinkageError e) {
+            annotation = null;
+            value = null;
+        }
+        constructorPropertiesClass = annotation;
+        constructorPropertiesValueMethod = value;
+    }
+
+    private final Constructor<?> constructor;
+    private final String[] names;
+    private final Object[] defaults;
+
+    private ConstructorPlan(Constructor<?> constructor, String[] names) {
+        this.constructor = constructor;
+        this.names = names;
+        Class<?>[] types = constructor.getParameterTypes();
+        this.defaults = new Object[types.length];
+        for (int i = 0; i < types.length; i++)
+            if (types[i].isPrimitive())
+                defaults[i] = Array.get(Array.newInstance(types[i], 1), 0);
+    }
+
+    /**
+     * Find the constructor plan of a class.
+     *
+     * @return the plan, or null if the class should be created with its default constructor and populated with
+     * its setters.
+     */
+    static ConstructorPlan of(Class<?> type) {
+        Object[] components = recordComponents(type);
+        if (components != null) {
+            String[] names = new String[components.length];
+            Class<?>[] types = new Class<?>[components.length];
+            for (int i = 0; i < components.length; i++) {
+                names[i] = invoke(componentNameMethod, components[i]);
+                types[i] = invoke(componentTypeMethod, components[i]);
+            }
+            try {
+                return new ConstructorPlan(type.getDeclaredConstructor(types), names);
+            } catch (NoSuchMethodException e) {
+                throw new QueryException("Unable to find the canonical constructor of record " + type.getName(), e);
+            }
+        }
+        try {
+            type.getDeclaredConstructor();
+            return null;
+        } catch (NoSuchMethodException ignored) {
+        }
+        if (constructorPropertiesClass == null)
+            return null;
+        Constructor<?> found = null;
+        String[] foundNames = null;
+        for (Constructor<?> constructor : type.getConstructors()) {
+            Annotation annotation = constructor.getAnnotation(constructorPropertiesClass);
+            if (annotation == null)
+                continue;
+            String[] names = invoke(constructorPropertiesValueMethod, annotation);
+            if (names.length != constructor.getParameterCount())
+                throw new QueryException("The constructor properties of " + type.getName() + " do not match the constructor parameters");
+            if (found == null || names.length > foundNames.length) {
+                found = constructor;
+                foundNames = names;
+            }
+        }
+        return found == null ? null : new ConstructorPlan(found, foundNames);
+    }
+
+    /**
+     * Get the accessors of the components of a record.
+     *
+     * @return the accessors, or null if the class is not a record.
+     */
+    static Method[] recordAccessors(Class<?> type) {
+        Object[] components = recordComponents(type);
+        if (components == null)
+            return null;
+        Method[] accessors = new Method[components.length];
+        for (int i = 0; i < components.length; i++)
+            accessors[i] = invoke(componentAccessorMethod, components[i]);
+        return accessors;
+    }
+
+    /**
+     * Find the constructor argument of a property.
+     *
+     * @return the index of the argument, or -1 if the property is not a constructor argument.
+     */
+    int indexOf(String property) {
+        for (int i = 0; i < names.length; i++)
+            if (names[i].equals(property))
+                return i;
+        return -1;
+    }
+
+    /**
+     * Create a new array of constructor arguments, with the default values of their types.
+     */
+    Object[] arguments() {
+        return defaults.clone();
+    }
+
+    Object newInstance(Object[] arguments) {
+        try {
+            return constructor.newInstance(arguments);
+        } catch (InvocationTargetException e) {
+            throw new QueryException("Unable to create instance of " + constructor.getDeclaringClass().getName(), e.getCause());
+        } catch (ReflectiveOperationException | IllegalArgumentException e) {
+            throw new QueryException("Unable to create instance of " + constructor.getDeclaringClass().getName(), e);
+        }
+    }
+
+    private static Object[] recordComponents(Class<?> type) {
+        if (isRecordMethod == null || !(Boolean) invoke(isRecordMethod, type))
+            return null;
+        return invoke(recordComponentsMethod, type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T invoke(Method method, Object target) {
+        try {
+            return (T) method.invoke(target);
+        } catch (ReflectiveOperationException e) {
+            throw new QueryException("Unable to call " + method.getName(), e);
+        }
+    }
+}
@@ -55,4 +55,26 @@ public @interface DbField {
      * @return true if the field can be used when updating a record, false otherwise.
      */
     boolean updatable() default true;
+
+    /**
+     * The lazy group of the field. Fields that belong to a lazy group are not fetched when the entity is read from
+     * the database; all the fields of a group are fetched together, when the group is populated with
+     * {@link StormifyManager#populate(Object, String)}. Use this for large columns that are rarely needed.
+     * <p>
+     * The default value is empty, meaning the field is always fetched.
+     *
+     * @return The name of the lazy group of the field.
+     */
+    String lazyGroup() default "";
+
+    /**
+     * Whether the values of the field should be shared, when the entities are read from the database. Equal values of
+     * the same query result will be the same instance. Use this for character fields with few distinct values, like
+     * status codes or currencies, to save memory when reading many rows.
+     * <p>
+     * The default value is false.
+     *
+     * @return true if the values of the field should be shared, false otherwise.
+     */
+    boolean intern() default false;
 }
@@ -0,0 +1,108 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.util.*;
+import java.util.function.Function;
+
+import static onl.ycode.stormify.EntityData.ID_FOUND;
+
+/**
+ * The new entities of an object graph, in the order they should be created, as used by
+ * {@link StormifyManager#persistGraph(Object)}. The graph is walked through the reference fields of the new
+ * entities, and through the registered details of the root and of the new entities.
+ * <p>
+ * Every new entity is placed at a level after the levels of the new entities it references, so that the primary
+ * keys of referenced entities are known when it is created. The entities of the same table and level are created
+ * together, with one batch.
+ */
+final class EntityGraph {
+    private final ClassRegistry registry;
+    private final Function<Object, List<Iterable<?>>> details;
+    private final Map<Object, Integer> levels = new IdentityHashMap<>();
+    private final Set<Object> visiting = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Deque<Object> expanded = new ArrayDeque<>();
+    private final List<Object> created = new ArrayList<>();
+
+    EntityGraph(ClassRegistry registry, Function<Object, List<Iterable<?>>> details) {
+        this.registry = registry;
+        this.details = details;
+    }
+
+    /**
+     * Walk the graph of the given root entity.
+     *
+     * @return the batches of new entities, in creation order; all entities of a batch belong to the same table.
+     */
+    List<List<Object>> batches(Object root) {
+        // The details of an existing root are persisted too, but other existing entities are not walked
+        if (level(root) < 0)
+            expanded.add(root);
+        while (!expanded.isEmpty()) {
+            Object parent = expanded.poll();
+            for (Iterable<?> children : details.apply(parent))
+                if (children != null)
+                    for (Object child : children)
+                        if (child != null) {
+                            linkParent(child, parent);
+                            level(child);
+                        }
+        }
+        TreeMap<Integer, Map<Class<?>, List<Object>>> byLevel = new TreeMap<>();
+        for (Object entity : created)
+            byLevel.computeIfAbsent(levels.get(entity), it -> new LinkedHashMap<>())
+                    .computeIfAbsent(entity.getClass(), it -> new ArrayList<>()).add(entity);
+        List<List<Object>> result = new ArrayList<>();
+        for (Map<Class<?>, List<Object>> tables : byLevel.values())
+            result.addAll(tables.values());
+        return result;
+    }
+
+    /**
+     * Find the level of an entity, after the levels of the new entities it references.
+     *
+     * @return the level of the entity, or -1 if the entity already exists in the database.
+     */
+    private int level(Object entity) {
+        Integer found = levels.get(entity);
+        if (found != null)
+            return found;
+        if (!visiting.add(entity))
+            throw new QueryException("Circular reference of new entities found at " + entity.getClass().getName() + ", unable to order their creation");
+        EntityData<Object> data = new EntityData<>(entity, registry);
+        int level = -1;
+        if (data.status != ID_FOUND) {
+            level = 0;
+            for (FieldInfo field : data.tableInfo.getFields())
+                if (field.isReference()) {
+                    Object value = field.getValue(entity);
+                    if (value != null && !value.getClass().isArray())
+                        level = Math.max(level, level(value) + 1);
+                }
+            created.add(entity);
+        }
+        visiting.remove(entity);
+        levels.put(entity, level);
+        if (level >= 0)
+            expanded.add(entity);
+        return level;
+    }
+
+    /**
+     * Set the reference of a new detail to its parent, if it is not already set and only one field matches.
+     */
+    private void linkParent(Object child, Object parent) {
+        if (levels.containsKey(child) || new EntityData<>(child, registry).status == ID_FOUND)
+            return;
+        FieldInfo found = null;
+        for (FieldInfo field : registry.getTableInfo(child.getClass()).getFields())
+            if (field.getType() == parent.getClass()) {
+                if (found != null)
+                    return;
+                found = field;
+            }
+        if (found != null && found.isWritable() && found.getValue(child) == null)
+            found.setValue(child, parent, registry);
+    }
+}
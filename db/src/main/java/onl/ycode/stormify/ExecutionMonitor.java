@@ -0,0 +1,110 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+/**
+ * A monitor that is notified about the database activity of Stormify, like query executions, connection
+ * requests and transaction boundaries. It is the extension point used by profiling and tracing tools.
+ * <p>
+ * Every notification method is called when the activity starts, and returns a {@link Span}, which is
+ * finished when the activity is over. If the monitor is not interested in the specific activity, it
+ * should return null, so that no further work is performed.
+ * <p>
+ * The monitor is registered with {@link StormifyManager#setExecutionMonitor(ExecutionMonitor)}.
+ */
+public interface ExecutionMonitor {
+
+    /**
+     * A monitor that ignores all activity. This is the default monitor.
+     */
+    ExecutionMonitor NONE = new ExecutionMonitor() {
+    };
+
+    /**
+     * A transaction boundary.
+     */
+    enum TransactionAction {
+        /**
+         * A transaction, or a nested transaction (savepoint), starts.
+         */
+        BEGIN,
+        /**
+         * A transaction, or a nested transaction (savepoint), is committed.
+         */
+        COMMIT,
+        /**
+         * A transaction, or a nested transaction (savepoint), is rolled back.
+         */
+        ROLLBACK
+    }
+
+    /**
+     * An activity that is being monitored.
+     */
+    interface Span {
+        /**
+         * Called when the activity is over.
+         *
+         * @param count the number of items the activity processed, i.e. the rows of a query or a page. A negative
+         *              value means that the number of items is unknown or not relevant for this activity.
+         * @param error the error that caused the activity to fail, or null if it was successful.
+         */
+        void finish(long count, Throwable error);
+    }
+
+    /**
+     * Called before a SQL statement is executed. The span is finished after the statement is executed and,
+     * for queries, after all rows are consumed.
+     *
+     * @param sql   the SQL statement, as sent to the database, with placeholders instead of values.
+     * @param table the main table of the statement, or null if it is not known.
+     * @return the span of this execution, or null if it is not monitored.
+     */
+    default Span queryStarted(String sql, String table) {
+        return null;
+    }
+
+    /**
+     * Called before a connection is requested from the data source.
+     *
+     * @param transactional true if the connection will be used for a transaction.
+     * @return the span of the connection request, finished as soon as the connection is available.
+     */
+    default Span connectionRequested(boolean transactional) {
+        return null;
+    }
+
+    /**
+     * Called before a transaction boundary is applied.
+     *
+     * @param action         the transaction action.
+     * @param savepointDepth the depth of the nested transaction, or 0 for the outer transaction.
+     * @return the span of the transaction action.
+     */
+    default Span transactionAction(TransactionAction action, int savepointDepth) {
+        return null;
+    }
+
+    /**
+     * Called before an {@link AutoTable} entity is populated from the database.
+     *
+     * @param entityClass the class of the entity.
+     * @return the span of the population.
+     */
+    default Span populateStarted(Class<?> entityClass) {
+        return null;
+    }
+
+    /**
+     * Called before a page of a paged list is fetched from the database.
+     *
+     * @param entityClass the class of the entities of the list.
+     * @param lowBound    the index of the first element of the page, inclusive.
+     * @param upperBound  the index of the last element of the page, exclusive.
+     * @return the span of the page fetch. Its count is the number of rows fetched.
+     */
+    default Span pageFetchStarted(Class<?> entityClass, int lowBound, int upperBound) {
+        return null;
+    }
+}
@@ -4,9 +4,14 @@
 package onl.ycode.stormify;
 
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.List;
 
+import static onl.ycode.stormify.StormifyManager.stormify;
 import static onl.ycode.stormify.TypeUtils.castTo;
 import static onl.ycode.stormify.Utils.isBaseClass;
 
@@ -24,9 +29,15 @@ public class FieldInfo {
     private final String sequence;
     private final boolean creatable;
     private final boolean updatable;
+    private final String lazyGroup;
+    private final boolean interned;
+    private ParamBinder binder;
+    private boolean binderResolved;
+    private MethodHandle setterHandle;
+    private boolean setterHandleResolved;
     boolean primaryKey;
 
-    FieldInfo(String name, String dbName, Class<?> type, Method getter, Method setter, String sequence, boolean primaryKey, boolean creatable, boolean updatable) {
+    FieldInfo(String name, String dbName, Class<?> type, Method getter, Method setter, String sequence, boolean primaryKey, boolean creatable, boolean updatable, String lazyGroup, boolean interned) {
         this.name = name;
         this.dbName = dbName;
         this.type = type;
@@ -37,6 +48,8 @@ public class FieldInfo {
         this.sequence = sequence;
         this.creatable = creatable;
         this.updatable = updatable;
+        this.lazyGroup = lazyGroup;
+        this.interned = interned;
     }
 
     /**
@@ -75,19 +88,10 @@ public class FieldInfo {
     void setValue(Object item, Object value, ClassRegistry registry) {
         if (setter != null) {
             try {
-                if (value == null && type.isPrimitive())
-                    throw new QueryException("Cannot set null value for primitive field " + name);
-                if (value == null || type.isAssignableFrom(value.getClass())) {
-                    setter.invoke(item, value);
-                    return;
-                }
-                if (isReference && registry != null) {
-                    Object wrapper = type.getDeclaredConstructor().newInstance();
-                    registry.getTableInfo(type).getPrimaryKey().setValue(wrapper, value, registry);
-                    value = wrapper;
-                }
-                setter.invoke(item, castTo(type, value));
-            } catch (Exception e) {
+                invokeSetter(item, convertValue(value, registry));
+            } catch (Error e) {
+                throw e;
+            } catch (Throwable e) {
                 throw new QueryException("Failed to set value for field '" + name + "' (value=" + value + ")", e);
             }
         } else {
@@ -95,6 +99,64 @@ public class FieldInfo {
         }
     }
 
+    /**
+     * Convert a value to the type of the field, as it would be set with {@link #setValue(Object, Object)}.
+     */
+    Object convert(Object value, ClassRegistry registry) {
+        try {
+            return convertValue(value, registry);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new QueryException("Failed to set value for field '" + name + "' (value=" + value + ")", e);
+        }
+    }
+
+    private Object convertValue(Object value, ClassRegistry registry) throws ReflectiveOperationException {
+        if (value == null && type.isPrimitive())
+            throw new QueryException("Cannot set null value for primitive field " + name);
+        if (value == null || type.isAssignableFrom(value.getClass()))
+            return value;
+        if (isReference && registry != null)
+            value = createReference(value, registry);
+        return castTo(type, value);
+    }
+
+    /**
+     * Create an instance of the referenced table, with only its primary key set.
+     */
+    Object createReference(Object key, ClassRegistry registry) throws ReflectiveOperationException {
+        TableInfo info = registry.getTableInfo(type);
+        FieldInfo primaryKey = info.getPrimaryKey();
+        ConstructorPlan plan = info.constructorPlan.get();
+        if (plan != null) {
+            Object[] arguments = plan.arguments();
+            int index = plan.indexOf(primaryKey.getName());
+            if (index < 0)
+                throw new QueryException("The primary key of " + type.getName() + " is not a constructor argument");
+            arguments[index] = primaryKey.convert(key, registry);
+            return plan.newInstance(arguments);
+        }
+        Object wrapper = type.getDeclaredConstructor().newInstance();
+        primaryKey.setValue(wrapper, key, registry);
+        return wrapper;
+    }
+
+    private void invokeSetter(Object item, Object value) throws Throwable {
+        if (!setterHandleResolved) {
+            try {
+                // A method handle does not allocate an argument array on every call, as Method.invoke does
+                setterHandle = MethodHandles.publicLookup().unreflect(setter)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            } catch (IllegalAccessException e) {
+                setterHandle = null;
+            }
+            setterHandleResolved = true;
+        }
+        if (setterHandle != null)
+            setterHandle.invokeExact(item, value);
+        else
+            setter.invoke(item, value);
+    }
+
     /**
      * Get the name of the field, as used for the database queries.
      *
@@ -159,6 +221,54 @@ public class FieldInfo {
         return updatable;
     }
 
+    /**
+     * Check if the field has a setter, i.e. if its value can be set after the entity is created.
+     *
+     * @return true if the field can be set, false if it is only set by the constructor of an immutable class.
+     */
+    public boolean isWritable() {
+        return setter != null;
+    }
+
+    /**
+     * Get the typed binder of the field, when the field is used as a query parameter. For references, the binder of
+     * the primary key of the referenced table is used.
+     *
+     * @return The binder, or null if the value should be bound as an object.
+     */
+    ParamBinder getBinder() {
+        if (!binderResolved) {
+            Class<?> valueType = type;
+            if (isReference) try {
+                List<FieldInfo> keys = stormify().getTableInfo(type).getPrimaryKeys();
+                valueType = keys.size() == 1 ? keys.get(0).getType() : null;
+            } catch (QueryException e) {
+                valueType = null;
+            }
+            binder = valueType == null ? null : ParamBinder.of(valueType);
+            binderResolved = true;
+        }
+        return binder;
+    }
+
+    /**
+     * Get the lazy group of the field. Fields of a lazy group are not fetched together with the entity.
+     *
+     * @return The name of the lazy group, or null if the field is always fetched.
+     */
+    public String getLazyGroup() {
+        return lazyGroup;
+    }
+
+    /**
+     * Check if the values of the field are shared, when the entities are read from the database.
+     *
+     * @return true if equal values of the same query result are the same instance, false otherwise.
+     */
+    public boolean isInterned() {
+        return interned;
+    }
+
     @Override
     public String toString() {
         return "{" +
@@ -169,6 +279,8 @@ public class FieldInfo {
                 " : " + type.getSimpleName() +
                 (primaryKey ? ", primary" : "") +
                 (sequence == null ? "" : ", \uD83E\uDDEE='" + sequence + '\'') +
+                (lazyGroup == null ? "" : ", lazy='" + lazyGroup + '\'') +
+                (interned ? ", interned" : "") +
                 '}';
     }
 
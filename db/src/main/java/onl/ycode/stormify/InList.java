@@ -0,0 +1,55 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.util.Arrays;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * A collection of values that is used as a single query parameter, with a specific {@link InListStrategy}.
+ * Use it to override the global strategy for a single query:
+ * <pre>{@code
+ * stormify().read(Item.class, "SELECT * FROM item WHERE id IN ?", InList.of(ids, InListStrategy.TEMPORARY_TABLE));
+ * }</pre>
+ */
+public final class InList {
+    final Iterable<?> values;
+    final InListStrategy strategy;
+
+    private InList(Iterable<?> values, InListStrategy strategy) {
+        this.values = values;
+        this.strategy = strategy;
+    }
+
+    /**
+     * Create a new collection parameter.
+     *
+     * @param values   the values of the parameter.
+     * @param strategy the strategy to pass the values to the database.
+     * @return the collection parameter.
+     */
+    public static InList of(Iterable<?> values, InListStrategy strategy) {
+        requireNonNull(values, "Values cannot be null");
+        requireNonNull(strategy, "Strategy cannot be null");
+        return new InList(values, strategy);
+    }
+
+    /**
+     * Create a new collection parameter.
+     *
+     * @param values   the values of the parameter.
+     * @param strategy the strategy to pass the values to the database.
+     * @return the collection parameter.
+     */
+    public static InList of(Object[] values, InListStrategy strategy) {
+        requireNonNull(values, "Values cannot be null");
+        return of(Arrays.asList(values), strategy);
+    }
+
+    @Override
+    public String toString() {
+        return strategy + " " + values;
+    }
+}
@@ -0,0 +1,44 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+/**
+ * The strategy used to pass a collection of values as a single query parameter, typically in {@code IN ?} clauses.
+ * <p>
+ * The strategy can be selected globally, with {@link StormifyManager#setInListStrategy(InListStrategy)}, or for a
+ * single parameter, with {@link InList#of(Iterable, InListStrategy)}. Strategies that are not supported by the
+ * current database fall back to {@link #PADDED}.
+ */
+public enum InListStrategy {
+    /**
+     * Every value gets its own placeholder, i.e. {@code IN (?, ?, ?)}. Every different list size produces a
+     * different statement. This is the default strategy.
+     */
+    EXPAND,
+    /**
+     * Like {@link #EXPAND}, but the number of placeholders is rounded up to the next power of two, by repeating the
+     * last value. Thus, only a few different statements are produced, and statement caches remain effective.
+     */
+    PADDED,
+    /**
+     * The values are bound as a single SQL array parameter, and {@code IN ?} is rewritten as {@code = ANY(?)}.
+     * Only one statement is produced, regardless of the list size. Supported on PostgreSQL, for values of the common
+     * SQL types; other values fall back to {@link #PADDED}.
+     */
+    ARRAY,
+    /**
+     * The values are inserted into a temporary table, which is used as a subquery, i.e.
+     * {@code IN (SELECT v FROM temporary_table)}. The table is dropped right after the query. This strategy
+     * avoids the parameter limits of the database, like the 2100 parameters of SQL Server. On Oracle, where
+     * temporary tables should be defined in advance, the values are given as a subquery instead, which is not
+     * subject to the 1000 items limit of expression lists.
+     */
+    TEMPORARY_TABLE,
+    /**
+     * The strategy is selected according to the database and the list size: {@link #ARRAY} on PostgreSQL,
+     * {@link #TEMPORARY_TABLE} for lists larger than the threshold (see {@link StormifyManager#setInListThreshold(int)}),
+     * and {@link #PADDED} otherwise.
+     */
+    AUTO
+}
@@ -0,0 +1,328 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static onl.ycode.stormify.StormifyManager.stormify;
+import static onl.ycode.stormify.TypeUtils.convertJavaTypeToSQLType;
+import static onl.ycode.stormify.Utils.nCopies;
+
+/**
+ * Implements the {@link InListStrategy} strategies, i.e. the ways a collection parameter is passed to the database.
+ */
+final class InLists {
+    private static final Pattern TRAILING_IN = Pattern.compile("(?i)(\\bNOT\\s+)?\\bIN\\s*$");
+    private static final int ORACLE_MAX_LIST = 1000;
+    private static final int STAGING_BATCH = 1000;
+    private static final int MAX_DECIMAL_PRECISION = 38;
+    private static final int MAX_DECIMAL_SCALE = 30;
+    private static final int MAX_VARCHAR_LENGTH = 4000;
+    private static final AtomicLong tableCounter = new AtomicLong();
+
+    private InLists() {
+    }
+
+    /**
+     * Find the strategy that will actually be used, given the database and the values of the list. Arrays are only
+     * used when the type of the values can be mapped to an SQL array type, and temporary tables only when the values
+     * fit in the column of the table without losing precision.
+     */
+    static InListStrategy resolve(InListStrategy strategy, SqlDialect dialect, List<?> values, int threshold) {
+        int size = values.size();
+        switch (strategy) {
+            case EXPAND:
+            case PADDED:
+                return strategy;
+            case ARRAY:
+                return dialect == SqlDialect.POSTGRESQL && arrayType(values) != null ? InListStrategy.ARRAY : InListStrategy.PADDED;
+            case TEMPORARY_TABLE:
+                return canStage(dialect, values) ? InListStrategy.TEMPORARY_TABLE : InListStrategy.PADDED;
+            default:
+                if (dialect == SqlDialect.POSTGRESQL && arrayType(values) != null)
+                    return InListStrategy.ARRAY;
+                if ((size > threshold || (isOracle(dialect) && size > ORACLE_MAX_LIST)) && canStage(dialect, values))
+                    return InListStrategy.TEMPORARY_TABLE;
+                return InListStrategy.PADDED;
+        }
+    }
+
+    /**
+     * Append a collection parameter to the query.
+     *
+     * @param query    the query to append to
+     * @param fragment the query text just before the placeholder
+     * @param values   the values of the collection
+     * @param strategy the resolved strategy, see {@link #resolve(InListStrategy, SqlDialect, List, int)}
+     * @param dialect  the current dialect; it may be null only for the {@link InListStrategy#EXPAND} strategy
+     * @param params   the parameters of the query, to add the values to
+     * @param staged   the collections that should be staged in temporary tables before the query is executed
+     */
+    static void append(StringBuilder query, String fragment, List<?> values, InListStrategy strategy, SqlDialect dialect,
+                       List<Object> params, List<StagedValues> staged) {
+        int size = values.size();
+        switch (strategy) {
+            case PADDED:
+                int padded = size == 0 ? 0 : Math.max(size, Math.min(Integer.highestOneBit(size - 1) << 1,
+                        isOracle(dialect) ? ORACLE_MAX_LIST : Integer.MAX_VALUE));
+                query.append(fragment).append('(').append(nCopies("?", ", ", padded)).append(')');
+                params.addAll(values);
+                for (int i = size; i < padded; i++)
+                    params.add(values.get(size - 1));
+                break;
+            case ARRAY:
+                Matcher matcher = TRAILING_IN.matcher(fragment);
+                if (matcher.find())
+                    query.append(fragment, 0, matcher.start()).append(matcher.group(1) == null ? "= ANY(?)" : "<> ALL(?)");
+                else
+                    query.append(fragment).append('?');
+                params.add(new ArrayValue(arrayType(values), values.toArray()));
+                break;
+            case TEMPORARY_TABLE:
+                if (isOracle(dialect)) {
+                    query.append(fragment).append('(').append(nCopies("SELECT ? FROM dual", " UNION ALL ", size)).append(')');
+                    params.addAll(values);
+                } else {
+                    StagedValues stagedValues = new StagedValues(dialect, values);
+                    query.append(fragment).append("(SELECT v FROM ").append(stagedValues.table).append(')');
+                    staged.add(stagedValues);
+                }
+                break;
+            default:
+                query.append(fragment).append('(').append(nCopies("?", ", ", size)).append(')');
+                params.addAll(values);
+        }
+    }
+
+    /**
+     * Stage the collections in temporary tables.
+     *
+     * @param staged  the collections to stage, or null if there are none
+     * @param created the tables that should be dropped after the query; every table is added as soon as it is
+     *                created, so that it is dropped even if staging fails later on
+     */
+    static void stage(Connection connection, List<StagedValues> staged, List<StagedValues> created) throws SQLException {
+        if (staged != null)
+            for (StagedValues values : staged)
+                values.stage(connection, created);
+    }
+
+    static void drop(Connection connection, List<StagedValues> created) {
+        if (created != null)
+            for (StagedValues values : created)
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(values.dropSql());
+                } catch (SQLException e) {
+                    stormify().getDiagnosticsLogger().warn("Unable to drop temporary table", e);
+                }
+    }
+
+    private static boolean canStage(SqlDialect dialect, List<?> values) {
+        switch (dialect) {
+            case UNKNOWN:
+            case FAILSAFE:
+                return false;
+            case ORACLE_NEW:
+            case ORACLE_OLD:
+                return true;
+            default:
+                return columnType(dialect, values) != null;
+        }
+    }
+
+    private static boolean isOracle(SqlDialect dialect) {
+        return dialect == SqlDialect.ORACLE_NEW || dialect == SqlDialect.ORACLE_OLD;
+    }
+
+    private static boolean isSqlServer(SqlDialect dialect) {
+        return dialect == SqlDialect.SQL_SERVER_NEW || dialect == SqlDialect.SQL_SERVER_OLD;
+    }
+
+    private static boolean isMySql(SqlDialect dialect) {
+        return dialect == SqlDialect.MYSQL_NEW || dialect == SqlDialect.MYSQL_OLD
+                || dialect == SqlDialect.MARIA_DB_NEW || dialect == SqlDialect.MARIA_DB_OLD;
+    }
+
+    /**
+     * The SQL type of the first non-null value, {@link Types#NULL} if all values are null, or {@link Types#OTHER} if
+     * the type is not known.
+     */
+    private static int sqlTypeOf(Iterable<?> values) {
+        for (Object value : values)
+            if (value != null)
+                try {
+                    return convertJavaTypeToSQLType(value.getClass());
+                } catch (QueryException e) {
+                    return Types.OTHER;
+                }
+        return Types.NULL;
+    }
+
+    /**
+     * The name of the PostgreSQL array element type for the given values, or null if the type of the values is not
+     * known, and thus an array cannot be safely used.
+     */
+    static String arrayType(List<?> values) {
+        switch (sqlTypeOf(values)) {
+            case Types.SMALLINT:
+                return "smallint";
+            case Types.INTEGER:
+                return "integer";
+            case Types.BIGINT:
+                return "bigint";
+            case Types.REAL:
+                return "real";
+            case Types.DOUBLE:
+                return "float8";
+            case Types.NUMERIC:
+                return "numeric";
+            case Types.BOOLEAN:
+                return "boolean";
+            case Types.VARCHAR:
+                return "varchar";
+            case Types.TIMESTAMP:
+                return "timestamp";
+            case Types.DATE:
+                return "date";
+            case Types.TIME:
+                return "time";
+            case Types.BLOB:
+                return "bytea";
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * The type of the temporary table column that holds the given values, or null if some values do not fit in a column
+     * without being rounded or truncated, and thus the values cannot be staged.
+     */
+    static String columnType(SqlDialect dialect, List<?> values) {
+        switch (sqlTypeOf(values)) {
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                for (Object value : values)
+                    if (value instanceof BigInteger && ((BigInteger) value).bitLength() >= Long.SIZE)
+                        return null;
+                return "BIGINT";
+            case Types.REAL:
+            case Types.DOUBLE:
+                return "DOUBLE PRECISION";
+            case Types.NUMERIC:
+                return decimalType(values);
+            case Types.BOOLEAN:
+                return isSqlServer(dialect) ? "BIT" : "BOOLEAN";
+            case Types.TIMESTAMP:
+                return isSqlServer(dialect) ? "DATETIME2" : isMySql(dialect) ? "DATETIME" : "TIMESTAMP";
+            case Types.DATE:
+                return "DATE";
+            case Types.TIME:
+                return "TIME";
+            case Types.BLOB:
+                return null;
+            default:
+                for (Object value : values)
+                    if (value != null && value.toString().length() > MAX_VARCHAR_LENGTH)
+                        return null;
+                return (isSqlServer(dialect) ? "NVARCHAR(" : "VARCHAR(") + MAX_VARCHAR_LENGTH + ")";
+        }
+    }
+
+    /**
+     * A decimal type, just wide enough for the integer and the fractional digits of all values. The limits are the
+     * ones that all supported databases accept; MySQL has the smallest maximum scale.
+     */
+    private static String decimalType(List<?> values) {
+        int integerDigits = 1;
+        int scale = 0;
+        for (Object value : values)
+            if (value != null) {
+                if (!(value instanceof BigDecimal))
+                    return null;
+                BigDecimal decimal = (BigDecimal) value;
+                integerDigits = Math.max(integerDigits, decimal.precision() - decimal.scale());
+                scale = Math.max(scale, decimal.scale());
+            }
+        return scale > MAX_DECIMAL_SCALE || integerDigits + scale > MAX_DECIMAL_PRECISION ? null
+                : "DECIMAL(" + (integerDigits + scale) + ", " + scale + ")";
+    }
+
+    /**
+     * A collection of values, bound as a single SQL array parameter.
+     */
+    static final class ArrayValue {
+        private final String type;
+        private final Object[] values;
+
+        private ArrayValue(String type, Object[] values) {
+            this.type = type;
+            this.values = values;
+        }
+
+        Array create(Connection connection) throws SQLException {
+            return connection.createArrayOf(type, values);
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(values);
+        }
+    }
+
+    /**
+     * A collection of values, staged in a temporary table before the query is executed.
+     */
+    static final class StagedValues {
+        private final SqlDialect dialect;
+        private final List<?> values;
+        private final String table;
+        private final String columnType;
+
+        private StagedValues(SqlDialect dialect, List<?> values) {
+            this.dialect = dialect;
+            this.values = values;
+            this.table = (isSqlServer(dialect) ? "#" : "") + "stormify_in_" + tableCounter.incrementAndGet();
+            this.columnType = columnType(dialect, values);
+        }
+
+        private void stage(Connection connection, List<StagedValues> created) throws SQLException {
+            String create = isSqlServer(dialect) ? "CREATE TABLE " : dialect == SqlDialect.SQLITE ? "CREATE TEMP TABLE " : "CREATE TEMPORARY TABLE ";
+            // In a PostgreSQL transaction, a DROP after a failed statement fails too, so the commit drops the table
+            boolean dropOnCommit = dialect == SqlDialect.POSTGRESQL && !connection.getAutoCommit();
+            try (Statement statement = connection.createStatement()) {
+                statement.execute(create + table + " (v " + columnType + ")" + (dropOnCommit ? " ON COMMIT DROP" : ""));
+            }
+            if (!dropOnCommit)
+                created.add(this);
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + table + " (v) VALUES (?)")) {
+                int count = 0;
+                for (Object value : values) {
+                    statement.setObject(1, value);
+                    statement.addBatch();
+                    if (++count % STAGING_BATCH == 0)
+                        statement.executeBatch();
+                }
+                if (count % STAGING_BATCH != 0)
+                    statement.executeBatch();
+            }
+        }
+
+        private String dropSql() {
+            return (isMySql(dialect) ? "DROP TEMPORARY TABLE " : "DROP TABLE ") + table;
+        }
+
+        @Override
+        public String toString() {
+            return table + values;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+import static onl.ycode.stormify.StormifyManager.stormify;
+
+/**
+ * A large object (BLOB or CLOB) that is not loaded together with its entity, but only when its content is
+ * requested.
+ * <p>
+ * When an entity with a {@code LazyLob} field is read from the database, only a reference to the large object is
+ * stored in the field. Every time the content is requested, it is fetched from the database, using the primary key
+ * of the entity. The content is never held on the heap as a whole, unless {@link #getBytes()} or
+ * {@link #getString()} are used.
+ * <p>
+ * To store a large object, create a {@code LazyLob} with one of the {@code of} methods and set it to the field of the
+ * entity before creating or updating it. When an entity is updated, a field that still holds the object loaded with
+ * the entity is not written back, and thus the content is never transferred when other columns are updated.
+ */
+public final class LazyLob {
+    private final boolean character;
+    private final Object owner;
+    private final String column;
+    private final SafeSupplier<Object> source;
+
+    LazyLob(Object owner, String column, boolean character) {
+        this.character = character;
+        this.owner = owner;
+        this.column = column;
+        this.source = null;
+    }
+
+    private LazyLob(boolean character, SafeSupplier<Object> source) {
+        this.character = character;
+        this.owner = null;
+        this.column = null;
+        this.source = source;
+    }
+
+    /**
+     * Create a binary large object with the given content.
+     *
+     * @param data the content of the object.
+     * @return the large object.
+     */
+    public static LazyLob of(byte[] data) {
+        requireNonNull(data, "Data cannot be null");
+        return new LazyLob(false, () -> new ByteArrayInputStream(data));
+    }
+
+    /**
+     * Create a character large object with the given content.
+     *
+     * @param text the content of the object.
+     * @return the large object.
+     */
+    public static LazyLob of(String text) {
+        requireNonNull(text, "Text cannot be null");
+        return new LazyLob(true, () -> new StringReader(text));
+    }
+
+    /**
+     * Create a binary large object from the given file. The file is read every time the content is requested.
+     *
+     * @param file the file with the content of the object.
+     * @return the large object.
+     */
+    public static LazyLob of(Path file) {
+        requireNonNull(file, "File cannot be null");
+        return new LazyLob(false, () -> Files.newInputStream(file));
+    }
+
+    /**
+     * Create a binary large object from the given stream. Since the stream can be consumed only once, the content of
+     * this object can be requested only once.
+     *
+     * @param stream the stream with the content of the object.
+     * @return the large object.
+     */
+    public static LazyLob of(InputStream stream) {
+        requireNonNull(stream, "Stream cannot be null");
+        return new LazyLob(false, oneShot(stream));
+    }
+
+    /**
+     * Create a character large object from the given reader. Since the reader can be consumed only once, the content
+     * of this object can be requested only once.
+     *
+     * @param reader the reader with the content of the object.
+     * @return the large object.
+     */
+    public static LazyLob of(Reader reader) {
+        requireNonNull(reader, "Reader cannot be null");
+        return new LazyLob(true, oneShot(reader));
+    }
+
+    /**
+     * Check if this is a character large object (CLOB), or a binary large object (BLOB).
+     *
+     * @return true if this is a character large object.
+     */
+    public boolean isCharacter() {
+        return character;
+    }
+
+    /**
+     * Open a stream to the content of this object. The stream should be closed after use. Character objects are
+     * encoded as UTF-8.
+     *
+     * @return the stream with the content, or null if the database value is null.
+     */
+    public InputStream openStream() {
+        Object content = open();
+        if (content instanceof Reader)
+            return new ReaderInputStream((Reader) content);
+        return (InputStream) content;
+    }
+
+    /**
+     * Open a reader to the content of this object. The reader should be closed after use. Binary objects are decoded
+     * as UTF-8.
+     *
+     * @return the reader with the content, or null if the database value is null.
+     */
+    public Reader openReader() {
+        Object content = open();
+        if (content instanceof InputStream)
+            return new InputStreamReader((InputStream) content, UTF_8);
+        return (Reader) content;
+    }
+
+    /**
+     * Read the whole content of this object in memory, as bytes.
+     *
+     * @return the content, or null if the database value is null.
+     */
+    public byte[] getBytes() {
+        try (InputStream in = openStream()) {
+            if (in == null)
+                return null;
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0)
+                out.write(buffer, 0, read);
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new QueryException("Unable to read large object", e);
+        }
+    }
+
+    /**
+     * Read the whole content of this object in memory, as text.
+     *
+     * @return the content, or null if the database value is null.
+     */
+    public String getString() {
+        try (Reader in = openReader()) {
+            if (in == null)
+                return null;
+            StringBuilder out = new StringBuilder();
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = in.read(buffer)) >= 0)
+                out.append(buffer, 0, read);
+            return out.toString();
+        } catch (IOException e) {
+            throw new QueryException("Unable to read large object", e);
+        }
+    }
+
+    private Object open() {
+        if (source == null)
+            return stormify().fetchLob(owner, column, character);
+        try {
+            return source.get();
+        } catch (QueryException e) {
+            throw e;
+        } catch (Throwable th) {
+            throw new QueryException("Unable to open large object", th);
+        }
+    }
+
+    /**
+     * Check if the given value of a field is the large object that was loaded from the given column of the owner,
+     * i.e. the field has not been set to new content since the owner was read.
+     */
+    static boolean isUnmodified(Object value, Object owner, String column) {
+        if (!(value instanceof LazyLob))
+            return false;
+        LazyLob lob = (LazyLob) value;
+        return lob.source == null && lob.owner == owner && lob.column.equalsIgnoreCase(column);
+    }
+
+    private static SafeSupplier<Object> oneShot(Object content) {
+        boolean[] used = {false};
+        return () -> {
+            synchronized (used) {
+                if (used[0])
+                    throw new QueryException("The content of this large object has already been consumed");
+                used[0] = true;
+            }
+            return content;
+        };
+    }
+
+    @Override
+    public String toString() {
+        return source == null ? "LazyLob[" + column + "]" : character ? "LazyLob[text]" : "LazyLob[binary]";
+    }
+
+    private static final class ReaderInputStream extends InputStream {
+        private final Reader reader;
+        private final char[] chars = new char[4096];
+        private byte[] bytes = new byte[0];
+        private int position = 0;
+
+        private ReaderInputStream(Reader reader) {
+            this.reader = reader;
+        }
+
+        private boolean fill() throws IOException {
+            while (position >= bytes.length) {
+                int read = reader.read(chars, 0, chars.length - 1);
+                if (read < 0)
+                    return false;
+                // Keep surrogate pairs together, so that they are encoded correctly
+                if (read > 0 && Character.isHighSurrogate(chars[read - 1])) {
+                    int next = reader.read();
+                    if (next >= 0)
+                        chars[read++] = (char) next;
+                }
+                bytes = new String(chars, 0, read).getBytes(UTF_8);
+                position = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? bytes[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (!fill())
+                return -1;
+            int count = Math.min(len, bytes.length - position);
+            System.arraycopy(bytes, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,248 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Streaming support for large objects. Large objects are never materialized on the heap as a whole: they are
+ * copied ("spooled") from the database stream to memory if they are small, or to a temporary file otherwise, so
+ * that they remain readable after the result set is closed.
+ */
+final class Lobs {
+    private static final int MEMORY_LIMIT = 64 * 1024;
+
+    private Lobs() {
+    }
+
+    /**
+     * Check if the given field type is read from the database as a stream, instead of a value.
+     */
+    static boolean isStreaming(Class<?> type) {
+        return type == InputStream.class || type == Reader.class || type == Path.class || type == LazyLob.class;
+    }
+
+    /**
+     * Read a streaming field from the current row of the result set.
+     */
+    static Object read(Class<?> type, ResultSet resultSet, int column, Object owner, String columnName) throws SQLException {
+        if (type == LazyLob.class) {
+            if (owner == null)
+                throw new QueryException("Lazy large objects can only be used as fields of entities");
+            return new LazyLob(owner, columnName, isCharacter(resultSet.getMetaData().getColumnType(column)));
+        }
+        try {
+            if (type == Reader.class)
+                return spool(resultSet.getCharacterStream(column));
+            InputStream in = resultSet.getBinaryStream(column);
+            if (in == null)
+                return null;
+            if (type == Path.class)
+                return spoolToFile(in);
+            return spool(in);
+        } catch (IOException e) {
+            throw new QueryException("Unable to read large object from column " + resultSet.getMetaData().getColumnName(column), e);
+        }
+    }
+
+    /**
+     * Copy the given stream to memory or to a temporary file. The temporary file is deleted when the returned
+     * stream is closed.
+     */
+    static InputStream spool(InputStream in) throws IOException {
+        if (in == null)
+            return null;
+        try {
+            byte[] buffer = new byte[8192];
+            ByteArrayOutputStream memory = new ByteArrayOutputStream();
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                memory.write(buffer, 0, read);
+                if (memory.size() > MEMORY_LIMIT) {
+                    Path file = Files.createTempFile("stormify-lob", ".tmp");
+                    try (OutputStream out = Files.newOutputStream(file)) {
+                        memory.writeTo(out);
+                        while ((read = in.read(buffer)) >= 0)
+                            out.write(buffer, 0, read);
+                    } catch (IOException | RuntimeException e) {
+                        Files.deleteIfExists(file);
+                        throw e;
+                    }
+                    return new TemporaryFileInputStream(file);
+                }
+            }
+            return new ByteArrayInputStream(memory.toByteArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Copy the given character stream to memory or to a temporary file, see {@link #spool(InputStream)}.
+     */
+    static Reader spool(Reader in) throws IOException {
+        if (in == null)
+            return null;
+        try {
+            char[] buffer = new char[8192];
+            CharArrayWriter memory = new CharArrayWriter();
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                memory.write(buffer, 0, read);
+                if (memory.size() > MEMORY_LIMIT) {
+                    Path file = Files.createTempFile("stormify-lob", ".tmp");
+                    try (Writer out = new OutputStreamWriter(Files.newOutputStream(file), UTF_8)) {
+                        memory.writeTo(out);
+                        while ((read = in.read(buffer)) >= 0)
+                            out.write(buffer, 0, read);
+                    } catch (IOException | RuntimeException e) {
+                        Files.deleteIfExists(file);
+                        throw e;
+                    }
+                    return new InputStreamReader(new TemporaryFileInputStream(file), UTF_8);
+                }
+            }
+            return new CharArrayReader(memory.toCharArray());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Copy the given stream to a new temporary file. The caller is responsible to delete the file.
+     */
+    static Path spoolToFile(InputStream in) throws IOException {
+        Path file = Files.createTempFile("stormify-lob", ".tmp");
+        try (InputStream source = in) {
+            Files.copy(source, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return file;
+    }
+
+    /**
+     * Bind a streaming parameter, if the given parameter is a stream.
+     *
+     * @return true if the parameter was bound, false if it is not a streaming parameter
+     */
+    static boolean bind(PreparedStatement statement, int index, Object param, Closer closer) throws SQLException, IOException {
+        if (param instanceof InputStream)
+            statement.setBinaryStream(index, (InputStream) param);
+        else if (param instanceof Reader)
+            statement.setCharacterStream(index, (Reader) param);
+        else if (param instanceof Path) {
+            Path path = (Path) param;
+            statement.setBinaryStream(index, closer.add(Files.newInputStream(path)), Files.size(path));
+        } else
+            return false;
+        return true;
+    }
+
+    /**
+     * Open the content of the lazy large objects found in the parameters. This should be done before a connection
+     * is acquired, since loaded objects are fetched from the database.
+     *
+     * @return the parameters, where lazy large objects are replaced by their content
+     */
+    static List<Object> open(List<Object> params, Closer closer) {
+        List<Object> result = params;
+        for (int i = 0; i < params.size(); i++)
+            if (params.get(i) instanceof LazyLob) {
+                if (result == params)
+                    result = new ArrayList<>(params);
+                LazyLob lob = (LazyLob) params.get(i);
+                result.set(i, lob.isCharacter() ? closer.add(lob.openReader()) : closer.add(lob.openStream()));
+            }
+        return result;
+    }
+
+    /**
+     * Convert a large object, as returned by the driver, to a value that can be stored in a field.
+     */
+    static Object materialize(Object value) throws SQLException {
+        if (value instanceof Clob) {
+            long length = ((Clob) value).length();
+            if (length > Integer.MAX_VALUE - 8)
+                throw new QueryException("Character large object of " + length + " characters is too big; use a Reader, Path or LazyLob field instead");
+            return ((Clob) value).getSubString(1, (int) length);
+        }
+        if (value instanceof Blob) {
+            long length = ((Blob) value).length();
+            if (length > Integer.MAX_VALUE - 8)
+                throw new QueryException("Binary large object of " + length + " bytes is too big; use an InputStream, Path or LazyLob field instead");
+            return ((Blob) value).getBytes(1, (int) length);
+        }
+        return value;
+    }
+
+    private static boolean isCharacter(int sqlType) {
+        switch (sqlType) {
+            case Types.CLOB:
+            case Types.NCLOB:
+            case Types.CHAR:
+            case Types.NCHAR:
+            case Types.VARCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * The resources opened while binding parameters, to be closed after the statement is executed.
+     */
+    static final class Closer implements AutoCloseable {
+        private List<Closeable> resources;
+
+        <C extends Closeable> C add(C resource) {
+            if (resource == null)
+                return null;
+            if (resources == null)
+                resources = new ArrayList<>();
+            resources.add(resource);
+            return resource;
+        }
+
+        @Override
+        public void close() {
+            if (resources != null)
+                for (Closeable resource : resources)
+                    try {
+                        resource.close();
+                    } catch (IOException ignored) {
+                    }
+        }
+    }
+
+    private static final class TemporaryFileInputStream extends FilterInputStream {
+        private final Path file;
+
+        private TemporaryFileInputStream(Path file) throws IOException {
+            super(new BufferedInputStream(Files.newInputStream(file)));
+            this.file = file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+}
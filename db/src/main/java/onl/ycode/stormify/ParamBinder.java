@@ -0,0 +1,119 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * Binds a parameter to a prepared statement using the typed setter that matches the type of the field, instead of
+ * {@link PreparedStatement#setObject(int, Object)}. Null values are bound with
+ * {@link PreparedStatement#setNull(int, int)} and the SQL type of the field, so that the driver does not need to
+ * discover the type of the parameter.
+ */
+interface ParamBinder {
+
+    void bind(PreparedStatement statement, int index, Object value) throws SQLException;
+
+    /**
+     * Find the typed binder for a field type.
+     *
+     * @param type the type of the field, or the type of the primary key for reference fields
+     * @return the binder, or null if the value should be bound with {@link PreparedStatement#setObject(int, Object)}
+     */
+    static ParamBinder of(Class<?> type) {
+        if (type == int.class || type == Integer.class)
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, Types.INTEGER);
+                else st.setInt(i, (Integer) v);
+            };
+        if (type == long.class || type == Long.class)
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, Types.BIGINT);
+                else st.setLong(i, (Long) v);
+            };
+        if (type == short.class || type == Short.class)
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, Types.SMALLINT);
+                else st.setShort(i, (Short) v);
+            };
+        if (type == byte.class || type == Byte.class)
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, Types.SMALLINT);
+                else st.setShort(i, (Byte) v);
+            };
+        if (type == double.class || type == Double.class)
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, Types.DOUBLE);
+                else st.setDouble(i, (Double) v);
+            };
+        if (type == float.class || type == Float.class)
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, Types.REAL);
+                else st.setFloat(i, (Float) v);
+            };
+        if (type == boolean.class || type == Boolean.class)
+            return (st, i, v) -> {
+                // BIT instead of BOOLEAN, since it is understood by more drivers (e.g. Oracle)
+                if (v == null) st.setNull(i, Types.BIT);
+                else st.setBoolean(i, (Boolean) v);
+            };
+        if (type == BigDecimal.class)
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, Types.NUMERIC);
+                else st.setBigDecimal(i, (BigDecimal) v);
+            };
+        if (type == String.class)
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, Types.VARCHAR);
+                else st.setString(i, (String) v);
+            };
+        if (type == char.class || type == Character.class)
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, Types.VARCHAR);
+                else st.setString(i, v.toString());
+            };
+        if (type == byte[].class)
+            return (st, i, v) -> {
+                // VARBINARY instead of BLOB, since some drivers (e.g. PostgreSQL) map BLOB to large object references
+                if (v == null) st.setNull(i, Types.VARBINARY);
+                else st.setBytes(i, (byte[]) v);
+            };
+        if (type == Timestamp.class)
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, Types.TIMESTAMP);
+                else st.setTimestamp(i, (Timestamp) v);
+            };
+        if (type == java.sql.Date.class)
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, Types.DATE);
+                else st.setDate(i, (java.sql.Date) v);
+            };
+        if (type == Time.class)
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, Types.TIME);
+                else st.setTime(i, (Time) v);
+            };
+        if (type == java.util.Date.class)
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, Types.TIMESTAMP);
+                else st.setTimestamp(i, v instanceof Timestamp ? (Timestamp) v : new Timestamp(((java.util.Date) v).getTime()));
+            };
+        if (type == LocalDateTime.class || type == LocalDate.class || type == LocalTime.class) {
+            int sqlType = TypeUtils.convertJavaTypeToSQLType(type);
+            return (st, i, v) -> {
+                if (v == null) st.setNull(i, sqlType);
+                else st.setObject(i, v);
+            };
+        }
+        return null;
+    }
+}
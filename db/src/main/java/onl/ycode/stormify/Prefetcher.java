@@ -0,0 +1,163 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Reads the rows of a cursor in a background thread, while the rows that are already read are processed by the
+ * calling thread. The rows are passed in batches through a bounded queue, so that at most {@link #QUEUE_CAPACITY}
+ * batches are kept in memory, besides the batch being filled and the batch being processed.
+ * <p>
+ * When the consumer fails or the calling thread is interrupted, the statement of the reader is cancelled, so that
+ * a long-running fetch is aborted, and its connection is closed before the error is propagated. When the reader
+ * fails, the error is propagated to the calling thread, after the batches that were already read are processed.
+ */
+final class Prefetcher<T> {
+    static final int QUEUE_CAPACITY = 2;
+    private static final long OFFER_TIMEOUT_MILLIS = 100;
+    private static final List<Object> END = new ArrayList<>(0);
+    private static final AtomicInteger counter = new AtomicInteger();
+
+    private final int batchSize;
+    private final BlockingQueue<List<Object>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private volatile boolean stopped;
+    private volatile Throwable failure;
+    private volatile Statement statement;
+    private List<Object> current;
+
+    Prefetcher(int batchSize) {
+        if (batchSize < 1)
+            throw new QueryException("Batch size should be positive, found " + batchSize);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Read and process all rows.
+     *
+     * @param reader   the cursor to run in the background; it passes every row to the given consumer.
+     * @param consumer the consumer of the rows, called in the calling thread.
+     * @return the number of rows processed.
+     */
+    @SuppressWarnings("unchecked")
+    int run(Consumer<Consumer<T>> reader, Consumer<T> consumer) {
+        Thread producer = new Thread(() -> produce(reader), "stormify-prefetch-" + counter.incrementAndGet());
+        producer.setDaemon(true);
+        producer.start();
+        int count = 0;
+        boolean completed = false;
+        try {
+            List<Object> batch;
+            while ((batch = queue.take()) != END) {
+                for (Object item : batch) {
+                    consumer.accept((T) item);
+                    count++;
+                }
+            }
+            completed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryException("Interrupted while waiting for rows", e);
+        } finally {
+            stopped = true;
+            if (!completed)
+                cancel();
+            queue.clear();
+            join(producer);
+        }
+        Throwable error = failure;
+        if (error instanceof RuntimeException)
+            throw (RuntimeException) error;
+        if (error instanceof Error)
+            throw (Error) error;
+        if (error != null)
+            throw new QueryException("Unable to read rows", error);
+        return count;
+    }
+
+    /**
+     * Register the statement of the reader, just before it is executed, so that it can be cancelled.
+     */
+    void executing(Statement statement) {
+        this.statement = statement;
+        if (stopped)
+            cancel();
+    }
+
+    private void cancel() {
+        Statement running = statement;
+        if (running != null)
+            try {
+                running.cancel();
+            } catch (SQLException ignored) {
+                // The statement is closed anyway, when the reader stops
+            }
+    }
+
+    private void produce(Consumer<Consumer<T>> reader) {
+        current = new ArrayList<>(batchSize);
+        try {
+            reader.accept(item -> {
+                if (stopped)
+                    throw new Stopped();
+                current.add(item);
+                if (current.size() >= batchSize) {
+                    publish(current);
+                    current = new ArrayList<>(batchSize);
+                }
+            });
+            if (!current.isEmpty())
+                publish(current);
+        } catch (Throwable e) {
+            if (!stopped)
+                failure = e;
+        } finally {
+            try {
+                publish(END);
+            } catch (Stopped ignored) {
+            }
+        }
+    }
+
+    private void publish(List<Object> batch) {
+        try {
+            while (!queue.offer(batch, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+                if (stopped)
+                    throw new Stopped();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Stopped();
+        }
+    }
+
+    private static void join(Thread producer) {
+        boolean interrupted = false;
+        while (producer.isAlive()) {
+            try {
+                producer.join();
+            } catch (InterruptedException e) {
+                // The connection of the producer should be closed before returning
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private static final class Stopped extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        Stopped() {
+            super(null, null, false, false);
+        }
+    }
+}
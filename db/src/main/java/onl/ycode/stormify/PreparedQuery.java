@@ -0,0 +1,132 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A query that is parsed once, and can be executed many times with different parameters. Use it for queries that
+ * are executed frequently, to avoid parsing the query, or looking it up in the cache of parsed queries, on every
+ * execution.
+ * <p>
+ * Prepared queries are created with {@link StormifyManager#prepare(Class, String)}. They are thread safe, and they
+ * are not bound to a specific connection or transaction.
+ *
+ * @param <T> the type of the results of the read operations.
+ */
+public final class PreparedQuery<T> {
+    private final StormifyManager manager;
+    private final Class<T> baseClass;
+    private final SqlTemplate template;
+
+    PreparedQuery(StormifyManager manager, Class<T> baseClass, SqlTemplate template) {
+        this.manager = manager;
+        this.baseClass = baseClass;
+        this.template = template;
+    }
+
+    /**
+     * Get the query, as given when this prepared query was created.
+     *
+     * @return the query.
+     */
+    public String getQuery() {
+        return template.sql;
+    }
+
+    /**
+     * Get the base class of the results of the read operations.
+     *
+     * @return the base class.
+     */
+    public Class<T> getBaseClass() {
+        return baseClass;
+    }
+
+    /**
+     * Executes the query and returns the number of rows affected. See {@link StormifyManager#executeUpdate(String, Object...)}.
+     *
+     * @param params the parameters to be used in the query.
+     * @return the number of rows affected.
+     */
+    public int executeUpdate(Object... params) {
+        return manager.executeUpdate(template, params);
+    }
+
+    /**
+     * Executes the query and consumes the results row by row.
+     * See {@link StormifyManager#readCursor(Class, String, Consumer, Object...)}.
+     *
+     * @param consumer the consumer to be used to process the results.
+     * @param params   the parameters to be used in the query.
+     * @return the number of rows read.
+     */
+    public int readCursor(Consumer<T> consumer, Object... params) {
+        return manager.readCursor(baseClass, template, consumer, params);
+    }
+
+    /**
+     * Executes the query and consumes the results row by row, while the next rows are fetched in the background.
+     * See {@link StormifyManager#readCursorPrefetched(Class, String, int, Consumer, Object...)}.
+     *
+     * @param batchSize the number of rows passed from the background thread at once.
+     * @param consumer  the consumer to be used to process the results.
+     * @param params    the parameters to be used in the query.
+     * @return the number of rows read.
+     */
+    public int readCursorPrefetched(int batchSize, Consumer<T> consumer, Object... params) {
+        return manager.readCursorPrefetched(baseClass, template, batchSize, consumer, params);
+    }
+
+    /**
+     * Executes the query and populates the same instance for every row.
+     * See {@link StormifyManager#readCursorInto(Object, String, Consumer, Object...)}.
+     *
+     * @param target   the instance to be populated with every row.
+     * @param consumer the consumer to be used to process the results.
+     * @param params   the parameters to be used in the query.
+     * @return the number of rows read.
+     */
+    public int readCursorInto(T target, Consumer<? super T> consumer, Object... params) {
+        return manager.readCursorInto(target, template, consumer, params);
+    }
+
+    /**
+     * Executes the query and returns the list of results. See {@link StormifyManager#read(Class, String, Object...)}.
+     *
+     * @param params the parameters to be used in the query.
+     * @return the list of results. This list is never null.
+     */
+    public List<T> read(Object... params) {
+        return manager.read(baseClass, template, params);
+    }
+
+    /**
+     * Executes the query and returns the list of results, keeping only the first rows in memory.
+     * See {@link StormifyManager#readLarge(Class, int, String, Object...)}.
+     *
+     * @param inMemoryRows the number of rows to keep in memory.
+     * @param params       the parameters to be used in the query.
+     * @return the list of results, that should be closed after use.
+     */
+    public SpillingList<T> readLarge(int inMemoryRows, Object... params) {
+        return manager.readLarge(baseClass, inMemoryRows, template, params);
+    }
+
+    /**
+     * Executes the query and returns a single result. See {@link StormifyManager#readOne(Class, String, Object...)}.
+     *
+     * @param params the parameters to be used in the query.
+     * @return the single result, or null if no data is found.
+     */
+    public T readOne(Object... params) {
+        return manager.readOne(baseClass, template, params);
+    }
+
+    @Override
+    public String toString() {
+        return template.sql;
+    }
+}
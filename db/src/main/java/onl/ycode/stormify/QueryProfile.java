@@ -0,0 +1,94 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Keeps track of the queries executed in the current thread, within a transaction or an explicit profiling scope,
+ * in order to detect queries that are executed repeatedly with different parameters.
+ */
+final class QueryProfile {
+    private static final ThreadLocal<QueryProfile> threadLocal = new ThreadLocal<>();
+    private static final int MAX_CALL_SITE_DEPTH = 12;
+
+    private final int threshold;
+    private final Consumer<RepeatedQuery> listener;
+    private final Map<String, QueryStats> stats = new LinkedHashMap<>();
+    private int depth = 0;
+
+    private QueryProfile(int threshold, Consumer<RepeatedQuery> listener) {
+        this.threshold = threshold;
+        this.listener = listener;
+    }
+
+    /**
+     * Open a profiling scope, or join the scope that is already open in the current thread.
+     *
+     * @return true if a scope was opened or joined, and thus {@link #close()} should be called at the end.
+     */
+    static boolean open(int threshold, Consumer<RepeatedQuery> listener) {
+        if (threshold <= 0)
+            return false;
+        QueryProfile profile = threadLocal.get();
+        if (profile == null) {
+            profile = new QueryProfile(threshold, listener);
+            threadLocal.set(profile);
+        }
+        profile.depth++;
+        return true;
+    }
+
+    static void close() {
+        QueryProfile profile = threadLocal.get();
+        if (profile == null || --profile.depth > 0)
+            return;
+        threadLocal.remove();
+        for (Map.Entry<String, QueryStats> entry : profile.stats.entrySet()) {
+            QueryStats stats = entry.getValue();
+            if (stats.callSite != null)
+                try {
+                    profile.listener.accept(new RepeatedQuery(entry.getKey(), stats.count, stats.parameters.size(), stats.callSite));
+                } catch (RuntimeException e) {
+                    StormifyManager.stormify().getLogger().error("Unable to report repeated query", e);
+                }
+        }
+    }
+
+    static void record(String query, List<Object> params) {
+        QueryProfile profile = threadLocal.get();
+        if (profile != null)
+            profile.stats.computeIfAbsent(query, k -> new QueryStats()).add(params, profile.threshold);
+    }
+
+    private static StackTraceElement[] callSite() {
+        List<StackTraceElement> result = new ArrayList<>();
+        for (StackTraceElement ste : new Throwable().getStackTrace()) {
+            String className = ste.getClassName();
+            if (className.startsWith("onl.ycode.stormify.") || className.startsWith("java.")
+                    || className.startsWith("jdk.") || className.startsWith("sun."))
+                continue;
+            result.add(ste);
+            if (result.size() >= MAX_CALL_SITE_DEPTH)
+                break;
+        }
+        return result.toArray(new StackTraceElement[0]);
+    }
+
+    private static final class QueryStats {
+        private final Set<List<Object>> parameters = new HashSet<>();
+        private int count = 0;
+        private StackTraceElement[] callSite;
+
+        private void add(List<Object> params, int threshold) {
+            count++;
+            if (callSite == null) {
+                parameters.add(params);
+                if (parameters.size() > threshold)
+                    callSite = callSite();
+            }
+        }
+    }
+}
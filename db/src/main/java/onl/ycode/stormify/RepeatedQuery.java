@@ -0,0 +1,72 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+/**
+ * A report of a query that was executed repeatedly, with different parameters, within the same transaction or
+ * profiling scope. This is the typical signature of an N+1 problem, e.g. when {@link StormifyManager#populate(Object)}
+ * or {@link StormifyManager#getDetails(Object, Class)} are called in a loop.
+ *
+ * @see StormifyManager#enableRepeatedQueryDetection(int, java.util.function.Consumer)
+ */
+public final class RepeatedQuery {
+    private final String query;
+    private final int count;
+    private final int distinctParameters;
+    private final StackTraceElement[] callSite;
+
+    RepeatedQuery(String query, int count, int distinctParameters, StackTraceElement[] callSite) {
+        this.query = query;
+        this.count = count;
+        this.distinctParameters = distinctParameters;
+        this.callSite = callSite;
+    }
+
+    /**
+     * Get the repeated query, as given by the caller, with placeholders instead of values.
+     *
+     * @return the repeated query.
+     */
+    public String getQuery() {
+        return query;
+    }
+
+    /**
+     * Get the number of times the query was executed within the scope.
+     *
+     * @return the execution count.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Get the number of different parameter sets the query was executed with. Only the first few different
+     * parameter sets are counted; the counting stops just after the detection threshold is exceeded.
+     *
+     * @return the number of different parameter sets.
+     */
+    public int getDistinctParameters() {
+        return distinctParameters;
+    }
+
+    /**
+     * Get the call site of the query, as sampled when the threshold was exceeded. Frames of Stormify itself are omitted.
+     *
+     * @return the stack trace of the call site.
+     */
+    public StackTraceElement[] getCallSite() {
+        return callSite.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder()
+                .append("Query executed ").append(count).append(" times with ")
+                .append(distinctParameters).append(" or more different parameters in the same scope: ").append(query);
+        for (StackTraceElement ste : callSite)
+            out.append("\n\tat ").append(ste);
+        return out.toString();
+    }
+}
@@ -0,0 +1,132 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.temporal.Temporal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static onl.ycode.stormify.Utils.isBaseClass;
+
+/**
+ * Collects the results of a query, while enforcing a {@link ResultLimit}.
+ */
+final class ResultGuard<T> implements Consumer<T> {
+    private final ResultLimit limit;
+    private final ClassRegistry registry;
+    private List<T> result = new ArrayList<>();
+    private List<FieldInfo> sizedFields;
+    private long bytes;
+    private boolean stopped;
+    private QueryException failure;
+
+    ResultGuard(ResultLimit limit, ClassRegistry registry) {
+        this.limit = limit;
+        this.registry = registry;
+    }
+
+    /**
+     * The maximum number of rows the statement should fetch; one more than the limit, to detect that the limit is
+     * exceeded.
+     *
+     * @return the maximum number of rows, or 0 for no limit.
+     */
+    int statementMaxRows() {
+        return limit.maxRows == 0 || limit.maxRows == Integer.MAX_VALUE ? 0 : limit.maxRows + 1;
+    }
+
+    boolean isStopped() {
+        return stopped;
+    }
+
+    boolean isTruncated() {
+        return result instanceof TruncatedList;
+    }
+
+    /**
+     * The error that stopped the query, if the limit was exceeded and the results should not be truncated.
+     */
+    QueryException getFailure() {
+        return failure;
+    }
+
+    List<T> result() {
+        return result;
+    }
+
+    @Override
+    public void accept(T item) {
+        if (stopped)
+            return;
+        if (limit.maxRows > 0 && result.size() >= limit.maxRows) {
+            exceeded(limit.maxRows + " rows");
+            return;
+        }
+        if (limit.maxBytes > 0) {
+            bytes += sizeOf(item);
+            if (bytes > limit.maxBytes) {
+                exceeded(limit.maxBytes + " bytes");
+                return;
+            }
+        }
+        result.add(item);
+    }
+
+    private void exceeded(String what) {
+        if (!limit.truncate) {
+            failure = new QueryException("The query result exceeds the limit of " + what + "; refine the query, or read the results with a cursor");
+            throw failure;
+        }
+        stopped = true;
+        List<T> truncated = new TruncatedList<>(result.size(), limit);
+        truncated.addAll(result);
+        result = truncated;
+    }
+
+    private long sizeOf(Object item) {
+        if (item == null)
+            return 0;
+        if (item instanceof Row) {
+            Row row = (Row) item;
+            long size = 16 + 8L * row.size();
+            for (int i = 0; i < row.size(); i++)
+                size += valueSize(row.get(i));
+            return size;
+        }
+        if (isBaseClass(item.getClass()))
+            return valueSize(item);
+        if (sizedFields == null) {
+            sizedFields = new ArrayList<>();
+            // Fields of lazy groups are not counted, to avoid loading them
+            for (FieldInfo field : registry.getTableInfo(item.getClass()).getFields())
+                if (field.getLazyGroup() == null)
+                    sizedFields.add(field);
+        }
+        long size = 16 + 8L * sizedFields.size();
+        for (FieldInfo field : sizedFields)
+            if (!field.isReference())
+                size += valueSize(field.getValue(item));
+        return size;
+    }
+
+    /**
+     * Estimate the memory used by a value, besides the reference to it.
+     */
+    private static long valueSize(Object value) {
+        if (value == null)
+            return 0;
+        if (value instanceof String)
+            return 40 + 2L * ((String) value).length();
+        if (value instanceof byte[])
+            return 16 + ((byte[]) value).length;
+        if (value instanceof BigDecimal || value instanceof BigInteger)
+            return 48;
+        if (value instanceof java.util.Date || value instanceof Temporal)
+            return 24;
+        return 16;
+    }
+}
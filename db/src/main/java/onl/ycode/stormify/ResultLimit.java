@@ -0,0 +1,83 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.io.Serializable;
+
+/**
+ * A limit on the number of rows, and on the approximate number of bytes, that a query result may hold in memory.
+ * The limit protects the application from queries that unexpectedly return a whole table, e.g. a {@code findAll}
+ * with a missing where clause. It applies to the methods that return all the results as a list, like
+ * {@link StormifyManager#read(Class, String, Object...)}, {@link StormifyManager#findAll(Class, String, Object...)}
+ * and {@link StormifyManager#getDetails(Object, Class)}; cursor reads are not limited.
+ * <p>
+ * A limit is set globally with {@link StormifyManager#setResultLimit(ResultLimit)}, or for a block of code with
+ * {@link StormifyManager#withResultLimit(ResultLimit, SafeSupplier)}:
+ * <pre>{@code
+ * stormify().setResultLimit(ResultLimit.failAbove(100_000, 256L << 20));
+ * }</pre>
+ * The size of the results is estimated from their values, and it is only an approximation of the memory they use.
+ */
+public final class ResultLimit implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * No limit on the results.
+     */
+    public static final ResultLimit NONE = new ResultLimit(0, 0, false);
+
+    final int maxRows;
+    final long maxBytes;
+    final boolean truncate;
+
+    private ResultLimit(int maxRows, long maxBytes, boolean truncate) {
+        if (maxRows < 0)
+            throw new QueryException("The maximum number of rows should not be negative, found " + maxRows);
+        if (maxBytes < 0)
+            throw new QueryException("The maximum number of bytes should not be negative, found " + maxBytes);
+        this.maxRows = maxRows;
+        this.maxBytes = maxBytes;
+        this.truncate = truncate;
+    }
+
+    /**
+     * Create a limit that fails the query with a {@link QueryException}, as soon as the results exceed it.
+     *
+     * @param maxRows  the maximum number of rows, or 0 for no limit on the rows.
+     * @param maxBytes the maximum approximate size of the results in bytes, or 0 for no limit on the size.
+     * @return the result limit.
+     */
+    public static ResultLimit failAbove(int maxRows, long maxBytes) {
+        return new ResultLimit(maxRows, maxBytes, false);
+    }
+
+    /**
+     * Create a limit that stops reading the results as soon as they exceed it. The results that fit in the limit
+     * are returned as a {@link TruncatedList}.
+     *
+     * @param maxRows  the maximum number of rows, or 0 for no limit on the rows.
+     * @param maxBytes the maximum approximate size of the results in bytes, or 0 for no limit on the size.
+     * @return the result limit.
+     */
+    public static ResultLimit truncateAt(int maxRows, long maxBytes) {
+        return new ResultLimit(maxRows, maxBytes, true);
+    }
+
+    /**
+     * Check if this limit does not restrict the results.
+     *
+     * @return true if there is no limit on the rows and on the size of the results.
+     */
+    public boolean isUnlimited() {
+        return maxRows == 0 && maxBytes == 0;
+    }
+
+    @Override
+    public String toString() {
+        if (isUnlimited())
+            return "ResultLimit[none]";
+        return "ResultLimit[" + (truncate ? "truncate" : "fail") + (maxRows > 0 ? ", rows=" + maxRows : "")
+                + (maxBytes > 0 ? ", bytes=" + maxBytes : "") + "]";
+    }
+}
@@ -0,0 +1,287 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+import static onl.ycode.stormify.TypeUtils.castTo;
+
+/**
+ * A row of a query result, for queries that are not mapped to an entity. All rows of the same result share the
+ * names of the columns, and every row only keeps its values, so a row is much lighter than a {@link Map}.
+ * <p>
+ * Rows are returned by {@link StormifyManager#readRows(String, Object...)}, and by all read methods when
+ * {@code Row.class} is used as the base class, for example with
+ * {@link StormifyManager#readCursor(Class, String, java.util.function.Consumer, Object...)}.
+ * <p>
+ * Columns are found by their index, starting from 0, or by their name, as defined in the query. Names are first
+ * searched case-sensitive, and then case-insensitive.
+ */
+public final class Row {
+    private final Columns columns;
+    private final Object[] values;
+
+    private Row(Columns columns, Object[] values) {
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * Get the number of columns of this row.
+     *
+     * @return the number of columns.
+     */
+    public int size() {
+        return values.length;
+    }
+
+    Columns getColumns() {
+        return columns;
+    }
+
+    /**
+     * Get the name of a column.
+     *
+     * @param column the index of the column, starting from 0.
+     * @return the name of the column.
+     */
+    public String getColumnName(int column) {
+        return columns.names[column];
+    }
+
+    /**
+     * Find the index of a column, given its name.
+     *
+     * @param name the name of the column.
+     * @return the index of the column, starting from 0, or -1 if the column was not found.
+     */
+    public int indexOf(String name) {
+        return columns.indexOf(name);
+    }
+
+    /**
+     * Get a value of this row.
+     *
+     * @param column the index of the column, starting from 0.
+     * @return the value of the column.
+     */
+    public Object get(int column) {
+        return values[column];
+    }
+
+    /**
+     * Get a value of this row.
+     *
+     * @param name the name of the column.
+     * @return the value of the column.
+     */
+    public Object get(String name) {
+        return values[columns.require(name)];
+    }
+
+    /**
+     * Get a value of this row, converted to the given type.
+     *
+     * @param column the index of the column, starting from 0.
+     * @param type   the type of the result.
+     * @param <T>    the type of the result.
+     * @return the value of the column.
+     */
+    public <T> T get(int column, Class<T> type) {
+        return castTo(type, values[column]);
+    }
+
+    /**
+     * Get a value of this row, converted to the given type.
+     *
+     * @param name the name of the column.
+     * @param type the type of the result.
+     * @param <T>  the type of the result.
+     * @return the value of the column.
+     */
+    public <T> T get(String name, Class<T> type) {
+        return castTo(type, get(name));
+    }
+
+    /**
+     * Get a value of this row as a string.
+     *
+     * @param name the name of the column.
+     * @return the value of the column.
+     */
+    public String getString(String name) {
+        return get(name, String.class);
+    }
+
+    /**
+     * Get a value of this row as an integer.
+     *
+     * @param name the name of the column.
+     * @return the value of the column.
+     */
+    public Integer getInt(String name) {
+        return get(name, Integer.class);
+    }
+
+    /**
+     * Get a value of this row as a long.
+     *
+     * @param name the name of the column.
+     * @return the value of the column.
+     */
+    public Long getLong(String name) {
+        return get(name, Long.class);
+    }
+
+    /**
+     * Get a value of this row as a double.
+     *
+     * @param name the name of the column.
+     * @return the value of the column.
+     */
+    public Double getDouble(String name) {
+        return get(name, Double.class);
+    }
+
+    /**
+     * Get a value of this row as a big decimal.
+     *
+     * @param name the name of the column.
+     * @return the value of the column.
+     */
+    public BigDecimal getBigDecimal(String name) {
+        return get(name, BigDecimal.class);
+    }
+
+    /**
+     * Get a value of this row as a boolean.
+     *
+     * @param name the name of the column.
+     * @return the value of the column.
+     */
+    public Boolean getBoolean(String name) {
+        return get(name, Boolean.class);
+    }
+
+    /**
+     * Get a read-only map view of this row. The keys of the map are the names of the columns, in the order of the
+     * query.
+     *
+     * @return the map view of this row.
+     */
+    public Map<String, Object> asMap() {
+        return new AbstractMap<String, Object>() {
+            @Override
+            public Set<Entry<String, Object>> entrySet() {
+                return new AbstractSet<Entry<String, Object>>() {
+                    @Override
+                    public Iterator<Entry<String, Object>> iterator() {
+                        return new Iterator<Entry<String, Object>>() {
+                            private int index = 0;
+
+                            @Override
+                            public boolean hasNext() {
+                                return index < values.length;
+                            }
+
+                            @Override
+                            public Entry<String, Object> next() {
+                                if (index >= values.length)
+                                    throw new NoSuchElementException();
+                                int current = index++;
+                                return new SimpleImmutableEntry<>(columns.names[current], values[current]);
+                            }
+                        };
+                    }
+
+                    @Override
+                    public int size() {
+                        return values.length;
+                    }
+                };
+            }
+
+            @Override
+            public Object get(Object key) {
+                int index = key instanceof String ? columns.indexOf((String) key) : -1;
+                return index < 0 ? null : values[index];
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return key instanceof String && columns.indexOf((String) key) >= 0;
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) return true;
+        if (!(other instanceof Row)) return false;
+        Row row = (Row) other;
+        return Arrays.equals(columns.names, row.columns.names) && Arrays.equals(values, row.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+
+    /**
+     * The names of the columns of a query result, shared by all the rows of the result.
+     */
+    static final class Columns {
+        private final String[] names;
+        private final Map<String, Integer> index = new HashMap<>();
+        private final Map<String, Integer> lowerCaseIndex = new HashMap<>();
+
+        Columns(ResultSetMetaData metaData) throws SQLException {
+            names = new String[metaData.getColumnCount()];
+            for (int i = names.length - 1; i >= 0; i--) {
+                // Iterate backwards, so that the first column wins when names are duplicated
+                names[i] = metaData.getColumnLabel(i + 1);
+                index.put(names[i], i);
+                lowerCaseIndex.put(names[i].toLowerCase(Locale.ROOT), i);
+            }
+        }
+
+        Row read(ResultSet resultSet) throws SQLException {
+            Object[] values = new Object[names.length];
+            for (int i = 0; i < values.length; i++)
+                values[i] = Lobs.materialize(resultSet.getObject(i + 1));
+            return create(values);
+        }
+
+        Row create(Object[] values) {
+            return new Row(this, values);
+        }
+
+        int size() {
+            return names.length;
+        }
+
+        int indexOf(String name) {
+            Integer found = index.get(name);
+            if (found == null)
+                found = lowerCaseIndex.get(name.toLowerCase(Locale.ROOT));
+            return found == null ? -1 : found;
+        }
+
+        int require(String name) {
+            int found = indexOf(name);
+            if (found < 0)
+                throw new QueryException("Column " + name + " not found; available columns are " + Arrays.toString(names));
+            return found;
+        }
+    }
+}
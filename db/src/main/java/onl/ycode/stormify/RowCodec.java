@@ -0,0 +1,202 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A compact binary format for the values of a row, as used by {@link SpillingList}. Every value is stored as a
+ * one-byte tag, followed by the value itself. Values of unknown types are stored with Java serialization.
+ */
+final class RowCodec {
+    /**
+     * The value was not read, and it should not be restored.
+     */
+    static final Object ABSENT = new Object();
+
+    private static final byte NULL = 0;
+    private static final byte SKIPPED = 1;
+    private static final byte INT = 2;
+    private static final byte LONG = 3;
+    private static final byte SHORT = 4;
+    private static final byte BYTE = 5;
+    private static final byte DOUBLE = 6;
+    private static final byte FLOAT = 7;
+    private static final byte TRUE = 8;
+    private static final byte FALSE = 9;
+    private static final byte CHAR = 10;
+    private static final byte STRING = 11;
+    private static final byte BYTES = 12;
+    private static final byte BIG_DECIMAL = 13;
+    private static final byte BIG_INTEGER = 14;
+    private static final byte TIMESTAMP = 15;
+    private static final byte SQL_DATE = 16;
+    private static final byte SQL_TIME = 17;
+    private static final byte DATE = 18;
+    private static final byte LOCAL_DATE = 19;
+    private static final byte LOCAL_TIME = 20;
+    private static final byte LOCAL_DATE_TIME = 21;
+    private static final byte SERIALIZED = 22;
+
+    private RowCodec() {
+    }
+
+    static void write(DataOutputStream out, Object value) throws IOException {
+        if (value == null)
+            out.writeByte(NULL);
+        else if (value == ABSENT)
+            out.writeByte(SKIPPED);
+        else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Boolean)
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeChar((Character) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            writeBytes(out, ((String) value).getBytes(UTF_8));
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            writeBytes(out, (byte[]) value);
+        } else if (value.getClass() == BigDecimal.class) {
+            out.writeByte(BIG_DECIMAL);
+            out.writeInt(((BigDecimal) value).scale());
+            writeBytes(out, ((BigDecimal) value).unscaledValue().toByteArray());
+        } else if (value.getClass() == BigInteger.class) {
+            out.writeByte(BIG_INTEGER);
+            writeBytes(out, ((BigInteger) value).toByteArray());
+        } else if (value instanceof Timestamp) {
+            out.writeByte(TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(SQL_DATE);
+            out.writeLong(((java.sql.Date) value).getTime());
+        } else if (value instanceof Time) {
+            out.writeByte(SQL_TIME);
+            out.writeLong(((Time) value).getTime());
+        } else if (value.getClass() == java.util.Date.class) {
+            out.writeByte(DATE);
+            out.writeLong(((java.util.Date) value).getTime());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(LOCAL_DATE);
+            out.writeLong(((LocalDate) value).toEpochDay());
+        } else if (value instanceof LocalTime) {
+            out.writeByte(LOCAL_TIME);
+            out.writeLong(((LocalTime) value).toNanoOfDay());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(LOCAL_DATE_TIME);
+            out.writeLong(((LocalDateTime) value).toLocalDate().toEpochDay());
+            out.writeLong(((LocalDateTime) value).toLocalTime().toNanoOfDay());
+        } else if (value instanceof Serializable) {
+            out.writeByte(SERIALIZED);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream objects = new ObjectOutputStream(bytes)) {
+                objects.writeObject(value);
+            }
+            writeBytes(out, bytes.toByteArray());
+        } else
+            throw new QueryException("Unable to store value of type " + value.getClass().getName() + " on disk");
+    }
+
+    static Object read(ByteBuffer in) {
+        byte tag = in.get();
+        switch (tag) {
+            case NULL:
+                return null;
+            case SKIPPED:
+                return ABSENT;
+            case INT:
+                return in.getInt();
+            case LONG:
+                return in.getLong();
+            case SHORT:
+                return in.getShort();
+            case BYTE:
+                return in.get();
+            case DOUBLE:
+                return in.getDouble();
+            case FLOAT:
+                return in.getFloat();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case CHAR:
+                return in.getChar();
+            case STRING:
+                return new String(readBytes(in), UTF_8);
+            case BYTES:
+                return readBytes(in);
+            case BIG_DECIMAL:
+                int scale = in.getInt();
+                return new BigDecimal(new BigInteger(readBytes(in)), scale);
+            case BIG_INTEGER:
+                return new BigInteger(readBytes(in));
+            case TIMESTAMP:
+                Timestamp timestamp = new Timestamp(in.getLong());
+                timestamp.setNanos(in.getInt());
+                return timestamp;
+            case SQL_DATE:
+                return new java.sql.Date(in.getLong());
+            case SQL_TIME:
+                return new Time(in.getLong());
+            case DATE:
+                return new java.util.Date(in.getLong());
+            case LOCAL_DATE:
+                return LocalDate.ofEpochDay(in.getLong());
+            case LOCAL_TIME:
+                return LocalTime.ofNanoOfDay(in.getLong());
+            case LOCAL_DATE_TIME:
+                LocalDate date = LocalDate.ofEpochDay(in.getLong());
+                return LocalDateTime.of(date, LocalTime.ofNanoOfDay(in.getLong()));
+            case SERIALIZED:
+                try (ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(readBytes(in)))) {
+                    return objects.readObject();
+                } catch (IOException | ClassNotFoundException e) {
+                    throw new QueryException("Unable to restore value from disk", e);
+                }
+            default:
+                throw new QueryException("Unknown stored value type " + tag);
+        }
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(ByteBuffer in) {
+        byte[] bytes = new byte[in.getInt()];
+        in.get(bytes);
+        return bytes;
+    }
+}
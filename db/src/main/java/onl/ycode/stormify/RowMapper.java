@@ -0,0 +1,185 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import onl.ycode.logger.Logger;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.*;
+
+/**
+ * The mapping of the columns of a result set to the fields of an entity. The mapping is resolved once per result
+ * set, when the first row is read, and then it is applied to every row: for every field, the typed
+ * {@link ColumnReader} that matches the type of the field and the type of the column is used.
+ * <p>
+ * References to other tables with the same primary key share the same instance, and so do equal values of
+ * {@link DbField#intern() interned} fields. To keep the memory of long cursors bounded, at most
+ * {@link #MAX_SHARED} values are remembered per table, or for all interned fields.
+ * <p>
+ * Immutable classes, see {@link ConstructorPlan}, are created with {@link #create(ResultSet)}: the constructor
+ * argument of every field is resolved together with the mapping.
+ */
+final class RowMapper {
+    static final int MAX_SHARED = 4096;
+
+    private final ClassRegistry registry;
+    private final int[] columns;
+    private final String[] columnNames;
+    private final FieldInfo[][] fields;
+    private final ColumnReader[][] readers;
+    private final boolean[] needsObject;
+    private final ConstructorPlan plan;
+    private final int[][] arguments;
+    private final boolean hasSetters;
+    private Map<Class<?>, Map<Object, Object>> references;
+    private Map<Object, Object> interned;
+
+    RowMapper(TableInfo tableInfo, ResultSetMetaData metaData, ClassRegistry registry, boolean strictMode, Logger diagnosticsLogger) throws SQLException {
+        this.registry = registry;
+        int columnCount = metaData.getColumnCount();
+        List<Integer> foundColumns = new ArrayList<>(columnCount);
+        List<FieldInfo[]> foundFields = new ArrayList<>(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            String columnName = metaData.getColumnName(i);
+            Collection<FieldInfo> columnFields = tableInfo.getDbField(columnName);
+            if (columnFields.isEmpty()) {
+                if (strictMode)
+                    throw new QueryException("Field " + columnName + " not found in " + tableInfo.getTableName());
+                else
+                    diagnosticsLogger.warn("Field " + columnName + " not found in " + tableInfo.getTableName());
+                continue;
+            }
+            foundColumns.add(i);
+            foundFields.add(columnFields.toArray(new FieldInfo[0]));
+        }
+        int size = foundColumns.size();
+        columns = new int[size];
+        columnNames = new String[size];
+        fields = foundFields.toArray(new FieldInfo[0][]);
+        readers = new ColumnReader[size][];
+        needsObject = new boolean[size];
+        plan = tableInfo.constructorPlan.get();
+        arguments = plan == null ? null : new int[size][];
+        boolean setters = false;
+        for (int i = 0; i < size; i++) {
+            int column = foundColumns.get(i);
+            columns[i] = column;
+            columnNames[i] = metaData.getColumnName(column);
+            readers[i] = new ColumnReader[fields[i].length];
+            int sqlType = metaData.getColumnType(column);
+            int scale = ColumnReader.isDecimal(sqlType) ? metaData.getScale(column) : 0;
+            for (int f = 0; f < fields[i].length; f++) {
+                FieldInfo field = fields[i][f];
+                if (!field.isReference())
+                    readers[i][f] = ColumnReader.of(field.getType(), sqlType, scale);
+                if (readers[i][f] == null && !Lobs.isStreaming(field.getType()))
+                    needsObject[i] = true;
+            }
+            if (plan != null) {
+                arguments[i] = new int[fields[i].length];
+                for (int f = 0; f < fields[i].length; f++) {
+                    arguments[i][f] = plan.indexOf(fields[i][f].getName());
+                    setters |= arguments[i][f] < 0 && fields[i][f].isWritable();
+                }
+            }
+        }
+        hasSetters = setters;
+    }
+
+    boolean isConstructed() {
+        return plan != null;
+    }
+
+    <T> T populate(T item, ResultSet resultSet) throws SQLException {
+        for (int i = 0; i < columns.length; i++) {
+            Object value = needsObject[i] ? Lobs.materialize(resultSet.getObject(columnNames[i])) : null;
+            for (int f = 0; f < fields[i].length; f++) {
+                FieldInfo field = fields[i][f];
+                field.setValue(item, read(resultSet, i, f, item, value), registry);
+                if (field.getLazyGroup() != null && item instanceof AutoTable)
+                    ((AutoTable) item).markGroupLoaded(field.getLazyGroup());
+            }
+        }
+        return item;
+    }
+
+    /**
+     * Create a new instance of an immutable class, with one constructor call. Fields that are not constructor
+     * arguments are set afterwards, if they have a setter.
+     */
+    Object create(ResultSet resultSet) throws SQLException {
+        Object[] values = plan.arguments();
+        Object[][] remaining = hasSetters ? new Object[columns.length][] : null;
+        for (int i = 0; i < columns.length; i++) {
+            Object value = needsObject[i] ? Lobs.materialize(resultSet.getObject(columnNames[i])) : null;
+            for (int f = 0; f < fields[i].length; f++) {
+                FieldInfo field = fields[i][f];
+                int argument = arguments[i][f];
+                if (argument >= 0)
+                    values[argument] = field.convert(read(resultSet, i, f, null, value), registry);
+                else if (remaining != null && field.isWritable()) {
+                    if (remaining[i] == null)
+                        remaining[i] = new Object[fields[i].length];
+                    remaining[i][f] = read(resultSet, i, f, null, value);
+                }
+            }
+        }
+        Object item = plan.newInstance(values);
+        if (item instanceof AutoTable)
+            ((AutoTable) item).markPopulated();
+        if (remaining != null)
+            for (int i = 0; i < columns.length; i++)
+                if (remaining[i] != null)
+                    for (int f = 0; f < fields[i].length; f++)
+                        if (arguments[i][f] < 0 && fields[i][f].isWritable())
+                            fields[i][f].setValue(item, remaining[i][f], registry);
+        return item;
+    }
+
+    private Object read(ResultSet resultSet, int column, int index, Object owner, Object value) throws SQLException {
+        FieldInfo field = fields[column][index];
+        ColumnReader reader = readers[column][index];
+        if (reader != null) {
+            Object read = reader.read(resultSet, columns[column]);
+            return field.isInterned() && read != null ? intern(read) : read;
+        }
+        if (Lobs.isStreaming(field.getType()))
+            return Lobs.read(field.getType(), resultSet, columns[column], owner, columnNames[column]);
+        if (field.isReference() && value != null && !field.getType().isInstance(value))
+            return reference(field, value);
+        return field.isInterned() && value != null ? intern(value) : value;
+    }
+
+    private Object reference(FieldInfo field, Object key) {
+        if (references == null)
+            references = new HashMap<>();
+        Map<Object, Object> stubs = references.computeIfAbsent(field.getType(), type -> new HashMap<>());
+        Object stub = stubs.get(key);
+        if (stub == null) {
+            try {
+                stub = field.createReference(key, registry);
+            } catch (ReflectiveOperationException e) {
+                throw new QueryException("Unable to create reference for field '" + field.getName() + "' (value=" + key + ")", e);
+            }
+            if (stubs.size() >= MAX_SHARED)
+                stubs.clear();
+            stubs.put(key, stub);
+        }
+        return stub;
+    }
+
+    private Object intern(Object value) {
+        if (interned == null)
+            interned = new HashMap<>();
+        Object found = interned.get(value);
+        if (found != null)
+            return found;
+        if (interned.size() >= MAX_SHARED)
+            interned.clear();
+        interned.put(value, value);
+        return value;
+    }
+}
@@ -0,0 +1,367 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.io.*;
+import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static onl.ycode.stormify.Utils.isBaseClass;
+
+/**
+ * A read-only list of query results, that keeps only the first rows in memory. The rest of the rows are stored in a
+ * temporary file, in a compact binary format, and they are restored every time they are accessed. This list is
+ * returned by {@link StormifyManager#readLarge(Class, int, String, Object...)}, and it protects the application from
+ * running out of memory when a query returns far more rows than expected.
+ * <p>
+ * Every call to {@link #get(int)} for a row stored on disk creates a new object. The temporary file is memory mapped,
+ * so rows are restored without system calls, and it is deleted when the list is closed:
+ * <pre>{@code
+ * try (SpillingList<Item> items = stormify().readLarge(Item.class, 10_000, "SELECT * FROM item")) {
+ *     for (Item item : items)
+ *         export(item);
+ * }
+ * }</pre>
+ * Only the values that are read from the database are stored; references to other tables are restored as
+ * references with only their primary key set. Fields with streaming types, like {@link LazyLob} or
+ * {@link InputStream}, can not be stored on disk.
+ *
+ * @param <T> the type of the results.
+ */
+public final class SpillingList<T> extends AbstractList<T> implements RandomAccess, Closeable {
+    private static final long MAX_SEGMENT_SIZE = Integer.MAX_VALUE;
+    private static final Set<Path> undeleted = ConcurrentHashMap.newKeySet();
+
+    private final List<T> memory;
+    private final Layout<T> layout;
+    private final Path file;
+    private final FileChannel channel;
+    private final long[] offsets;
+    private final int[] segmentRows;
+    private final long[] segmentOffsets;
+    private volatile ByteBuffer[] segments;
+
+    private SpillingList(List<T> memory, Layout<T> layout, Path file, long[] offsets, int[] segmentRows, long[] segmentOffsets) throws IOException {
+        this.memory = memory;
+        this.layout = layout;
+        this.file = file;
+        this.offsets = offsets;
+        this.segmentRows = segmentRows;
+        this.segmentOffsets = segmentOffsets;
+        if (file == null) {
+            channel = null;
+            segments = new ByteBuffer[0];
+        } else {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            ByteBuffer[] mapped = new ByteBuffer[segmentRows.length];
+            try {
+                for (int i = 0; i < mapped.length; i++) {
+                    long end = i + 1 < mapped.length ? segmentOffsets[i + 1] : offsets[offsets.length - 1];
+                    mapped[i] = channel.map(FileChannel.MapMode.READ_ONLY, segmentOffsets[i], end - segmentOffsets[i]);
+                }
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            segments = mapped;
+        }
+    }
+
+    @Override
+    public T get(int index) {
+        int size = size();
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        if (index < memory.size())
+            return memory.get(index);
+        ByteBuffer[] mapped = segments;
+        if (mapped == null)
+            throw new QueryException("Unable to read row " + index + ", the list is closed");
+        int row = index - memory.size();
+        int segment = Arrays.binarySearch(segmentRows, row);
+        if (segment < 0)
+            segment = -segment - 2;
+        ByteBuffer buffer = mapped[segment].duplicate();
+        buffer.position((int) (offsets[row] - segmentOffsets[segment]));
+        return layout.read(buffer);
+    }
+
+    @Override
+    public int size() {
+        return memory.size() + offsets.length - 1;
+    }
+
+    /**
+     * Get the number of rows that are stored on disk.
+     *
+     * @return the number of rows stored on disk, or 0 if all rows are kept in memory.
+     */
+    public int getSpilledSize() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Delete the temporary file of this list. Rows that are stored on disk can no longer be accessed.
+     */
+    @Override
+    public synchronized void close() {
+        boolean open = segments != null;
+        segments = null;
+        if (!open || channel == null)
+            return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+        }
+        delete(file);
+    }
+
+    private static void delete(Path file) {
+        undeleted.add(file);
+        for (Path pending : undeleted)
+            try {
+                Files.deleteIfExists(pending);
+                undeleted.remove(pending);
+            } catch (IOException ignored) {
+                // Mapped files can not be deleted on some systems, until the mapping is garbage collected; the
+                // deletion is retried when the next list is closed
+            }
+    }
+
+    /**
+     * Collects the rows of a query, keeping the first rows in memory and storing the rest in a temporary file.
+     */
+    static final class Collector<T> implements Consumer<T> {
+        private final Class<T> baseClass;
+        private final int inMemoryRows;
+        private final ClassRegistry registry;
+        private final long maxSegmentSize;
+        private final List<T> memory = new ArrayList<>();
+        private final ByteArrayOutputStream rowBytes = new ByteArrayOutputStream();
+        private final DataOutputStream rowOut = new DataOutputStream(rowBytes);
+        private Layout<T> layout;
+        private Path file;
+        private OutputStream out;
+        private long[] offsets = {0};
+        private int rows;
+        private int[] segmentRows = {0};
+        private long[] segmentOffsets = {0};
+        private int segments = 1;
+
+        Collector(Class<T> baseClass, int inMemoryRows, ClassRegistry registry) {
+            this(baseClass, inMemoryRows, registry, MAX_SEGMENT_SIZE);
+        }
+
+        Collector(Class<T> baseClass, int inMemoryRows, ClassRegistry registry, long maxSegmentSize) {
+            if (inMemoryRows < 0)
+                throw new QueryException("The number of rows in memory should not be negative, found " + inMemoryRows);
+            this.baseClass = baseClass;
+            this.inMemoryRows = inMemoryRows;
+            this.registry = registry;
+            this.maxSegmentSize = maxSegmentSize;
+        }
+
+        @Override
+        public void accept(T item) {
+            if (memory.size() < inMemoryRows) {
+                memory.add(item);
+                return;
+            }
+            try {
+                if (layout == null) {
+                    layout = layout(item);
+                    file = Files.createTempFile("stormify-rows", ".tmp");
+                    out = new BufferedOutputStream(Files.newOutputStream(file));
+                }
+                rowBytes.reset();
+                layout.write(rowOut, item);
+                rowOut.flush();
+                long start = offsets[rows];
+                long end = start + rowBytes.size();
+                if (end - segmentOffsets[segments - 1] > maxSegmentSize && start > segmentOffsets[segments - 1]) {
+                    if (segments == segmentRows.length) {
+                        segmentRows = Arrays.copyOf(segmentRows, segments * 2);
+                        segmentOffsets = Arrays.copyOf(segmentOffsets, segments * 2);
+                    }
+                    segmentRows[segments] = rows;
+                    segmentOffsets[segments] = start;
+                    segments++;
+                }
+                rowBytes.writeTo(out);
+                if (rows + 1 == offsets.length)
+                    offsets = Arrays.copyOf(offsets, offsets.length * 2);
+                offsets[++rows] = end;
+            } catch (IOException e) {
+                throw new QueryException("Unable to store row " + (memory.size() + rows) + " on disk", e);
+            }
+        }
+
+        SpillingList<T> build() {
+            try {
+                if (out != null) {
+                    out.close();
+                    out = null;
+                }
+                return new SpillingList<>(memory, layout, file, Arrays.copyOf(offsets, rows + 1),
+                        Arrays.copyOf(segmentRows, file == null ? 0 : segments), Arrays.copyOf(segmentOffsets, file == null ? 0 : segments));
+            } catch (IOException e) {
+                discard();
+                throw new QueryException("Unable to map stored rows", e);
+            }
+        }
+
+        void discard() {
+            if (out != null)
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            if (file != null)
+                delete(file);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Layout<T> layout(T first) {
+            if (first instanceof Row)
+                return (Layout<T>) new RowLayout(((Row) first).getColumns());
+            if (isBaseClass(baseClass))
+                return new ValueLayout<>();
+            return new EntityLayout<>(baseClass, registry);
+        }
+    }
+
+    private interface Layout<T> {
+        void write(DataOutputStream out, T item) throws IOException;
+
+        T read(ByteBuffer in);
+    }
+
+    private static final class ValueLayout<T> implements Layout<T> {
+        @Override
+        public void write(DataOutputStream out, T item) throws IOException {
+            RowCodec.write(out, item);
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T read(ByteBuffer in) {
+            return (T) RowCodec.read(in);
+        }
+    }
+
+    private static final class RowLayout implements Layout<Row> {
+        private final Row.Columns columns;
+
+        RowLayout(Row.Columns columns) {
+            this.columns = columns;
+        }
+
+        @Override
+        public void write(DataOutputStream out, Row item) throws IOException {
+            for (int i = 0; i < item.size(); i++)
+                RowCodec.write(out, item.get(i));
+        }
+
+        @Override
+        public Row read(ByteBuffer in) {
+            Object[] values = new Object[columns.size()];
+            for (int i = 0; i < values.length; i++)
+                values[i] = RowCodec.read(in);
+            return columns.create(values);
+        }
+    }
+
+    private static final class EntityLayout<T> implements Layout<T> {
+        private final Constructor<T> constructor;
+        private final ConstructorPlan plan;
+        private final FieldInfo[] fields;
+        private final int[] arguments;
+        private final FieldInfo[] referenceKeys;
+        private final ClassRegistry registry;
+
+        EntityLayout(Class<T> baseClass, ClassRegistry registry) {
+            this.registry = registry;
+            TableInfo tableInfo = registry.getTableInfo(baseClass);
+            plan = tableInfo.constructorPlan.get();
+            if (plan == null)
+                try {
+                    constructor = baseClass.getDeclaredConstructor();
+                } catch (NoSuchMethodException e) {
+                    throw new QueryException("Class " + baseClass.getName() + " has no default constructor", e);
+                }
+            else
+                constructor = null;
+            List<FieldInfo> stored = new ArrayList<>();
+            for (FieldInfo field : tableInfo.getFields())
+                if (field.isWritable() || plan != null && plan.indexOf(field.getName()) >= 0)
+                    stored.add(field);
+            fields = stored.toArray(new FieldInfo[0]);
+            arguments = new int[fields.length];
+            referenceKeys = new FieldInfo[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                arguments[i] = plan == null ? -1 : plan.indexOf(fields[i].getName());
+                if (fields[i].isReference()) try {
+                    referenceKeys[i] = registry.getTableInfo(fields[i].getType()).getPrimaryKey();
+                } catch (QueryException e) {
+                    // Not a table, e.g. an array; the value is stored as is
+                }
+            }
+        }
+
+        @Override
+        public void write(DataOutputStream out, T item) throws IOException {
+            for (int i = 0; i < fields.length; i++) {
+                FieldInfo field = fields[i];
+                Object value;
+                if (field.getLazyGroup() != null && item instanceof AutoTable && !((AutoTable) item).isGroupLoaded(field.getLazyGroup()))
+                    value = RowCodec.ABSENT;    // Do not trigger the population of the group
+                else {
+                    value = field.getValue(item);
+                    if (value != null && referenceKeys[i] != null)
+                        value = referenceKeys[i].getValue(value);
+                }
+                RowCodec.write(out, value);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public T read(ByteBuffer in) {
+            Object[] values = new Object[fields.length];
+            for (int i = 0; i < fields.length; i++)
+                values[i] = RowCodec.read(in);
+            T item;
+            if (plan != null) {
+                Object[] constructorArguments = plan.arguments();
+                for (int i = 0; i < fields.length; i++)
+                    if (arguments[i] >= 0 && values[i] != RowCodec.ABSENT)
+                        constructorArguments[arguments[i]] = fields[i].convert(values[i], registry);
+                item = (T) plan.newInstance(constructorArguments);
+            } else
+                try {
+                    item = constructor.newInstance();
+                } catch (ReflectiveOperationException e) {
+                    throw new QueryException("Unable to create instance of " + constructor.getDeclaringClass().getName(), e);
+                }
+            if (item instanceof AutoTable)
+                ((AutoTable) item).markPopulated();
+            for (int i = 0; i < fields.length; i++) {
+                FieldInfo field = fields[i];
+                if (values[i] == RowCodec.ABSENT || arguments[i] >= 0)
+                    continue;
+                field.setValue(item, values[i], registry);
+                if (field.getLazyGroup() != null && item instanceof AutoTable)
+                    ((AutoTable) item).markGroupLoaded(field.getLazyGroup());
+            }
+            return item;
+        }
+    }
+}
@@ -24,51 +24,51 @@ public enum SqlDialect {
     /**
      * The MariaDB dialect for versions older than 10.3.
      */
-    MARIA_DB_OLD(s -> null, getOrderById(), getFormatterLimitOffset(), BY_INDEX),
+    MARIA_DB_OLD(s -> null, getOrderById(), getFormatterLimitOffset(), BY_INDEX, null, getChunkLimit()),
     /**
      * The MariaDB dialect for versions 10.3 and newer.
      */
-    MARIA_DB_NEW(getSequenceNextValueFor(), getOrderById(), getFormatterLimitOffset(), BY_INDEX),
+    MARIA_DB_NEW(getSequenceNextValueFor(), getOrderById(), getFormatterLimitOffset(), BY_INDEX, getTreeWith(true), getChunkLimit()),
     /**
      * The MySQL dialect for versions older than 8.
      */
-    MYSQL_OLD(s -> null, getOrderById(), getFormatterLimitOffset(), BY_INDEX),
+    MYSQL_OLD(s -> null, getOrderById(), getFormatterLimitOffset(), BY_INDEX, null, getChunkLimit()),
     /**
      * The MySQL dialect for versions 8 and newer.
      */
-    MYSQL_NEW(getSequenceNextValueFor(), getOrderById(), getFormatterLimitOffset(), BY_INDEX),
+    MYSQL_NEW(s -> null, getOrderById(), getFormatterLimitOffset(), BY_INDEX, getTreeWith(true), getChunkLimit()),
     /**
      * The Oracle dialect for versions 12 and newer.
      */
-    ORACLE_NEW(getSequenceFromDual(), getOrderByCase(), getFormatterRowsFetch(), NONE),
+    ORACLE_NEW(getSequenceFromDual(), getOrderByCase(), getFormatterRowsFetch(), NONE, getTreeWith(false), getChunkRowNum()),
     /**
      * The Oracle dialect for versions older than 12.
      */
-    ORACLE_OLD(getSequenceFromDual(), getOrderByCase(), getFormatterRowNumber(), NONE),
+    ORACLE_OLD(getSequenceFromDual(), getOrderByCase(), getFormatterRowNumber(), NONE, getTreeConnectBy(), getChunkRowNum()),
     /**
      * The PostgreSQL dialect.
      */
-    POSTGRESQL(getSequenceNextval(), getOrderById(), getFormatterLimitOffset(), BY_NAME),
+    POSTGRESQL(getSequenceNextval(), getOrderById(), getFormatterLimitOffset(), BY_NAME, getTreeWith(true), getChunkCtid()),
     /**
      * The SQL Server dialect for versions 2012 and newer.
      */
-    SQL_SERVER_NEW(getSequenceNextValueFor(), getOrderByCase(), getFormatterRowsFetch(), BY_NAME),
+    SQL_SERVER_NEW(getSequenceNextValueFor(), getOrderByCase(), getFormatterRowsFetch(), BY_NAME, getTreeWithMaxRecursion(), getChunkTop()),
     /**
      * The SQL Server dialect for versions older than 2012.
      */
-    SQL_SERVER_OLD(getSequenceNextValueFor(), getOrderByCase(), getFormatterRowNumber(), BY_NAME),
+    SQL_SERVER_OLD(getSequenceNextValueFor(), getOrderByCase(), getFormatterRowNumber(), BY_NAME, getTreeWithMaxRecursion(), getChunkTop()),
     /**
      * The SQLite dialect.
      */
-    SQLITE(s -> null, getOrderById(), getFormatterLimitOffset(), BY_INDEX),
+    SQLITE(s -> null, getOrderById(), getFormatterLimitOffset(), BY_INDEX, getTreeWith(true), getChunkSubquery("rowid")),
     /**
      * The dialect that is used when the database product name cannot be determined.
      */
-    UNKNOWN(s -> null, getOrderByCase(), getFormatterLimitOffset(), NONE),
+    UNKNOWN(s -> null, getOrderByCase(), getFormatterLimitOffset(), NONE, getTreeWith(true), getChunkSubquery(null)),
     /**
      * A failsafe dialect, mostly in case of an error.
      */
-    FAILSAFE(s -> null, getOrderByCase(), getFormatterLimitOffset(), NONE);
+    FAILSAFE(s -> null, getOrderByCase(), getFormatterLimitOffset(), NONE, null, getChunkSubquery(null));
 
     /**
      * A query builder for various SQL dialects. The main purpose of this interface is to be able
@@ -89,6 +89,31 @@ public enum SqlDialect {
         String apply(String distinct, String tableName, String constraints, String sorting, int lowBound, int upperBound);
     }
 
+    /**
+     * A query builder for loading a hierarchy of a self-referencing table with one query. The query has two
+     * parameters: the primary key of the root row, and the maximum depth of the hierarchy.
+     */
+    interface TreeFormatter {
+        String apply(String columns, String tableName, String primaryKey, String parentColumn);
+    }
+
+    /**
+     * A query builder for mutations that affect at most a given number of rows.
+     */
+    interface ChunkFormatter {
+        /**
+         * Generate a chunked DELETE or UPDATE query.
+         *
+         * @param tableName  The name of the table.
+         * @param setClause  The SET part of an update, without the SET keyword, or null for a delete.
+         * @param condition  The condition of the affected rows, without the WHERE keyword; it may be empty.
+         * @param primaryKey The primary key column, or null if the table does not have a single primary key.
+         * @param chunkSize  The maximum number of affected rows.
+         * @return The generated SQL query.
+         */
+        String apply(String tableName, String setClause, String condition, String primaryKey, int chunkSize);
+    }
+
     enum GeneratedKeyRetrieval {
         BY_INDEX, BY_NAME, NONE
     }
@@ -115,53 +140,84 @@ public enum SqlDialect {
     public final QueryFormatter queryFormatter;
 
     final GeneratedKeyRetrieval generatedKeyRetrieval;
+    /**
+     * The formatter of hierarchical queries, or null if the database does not support them. In this case, the
+     * hierarchy is loaded with one query per level.
+     */
+    final TreeFormatter treeFormatter;
+    /**
+     * The formatter of mutations that affect at most a given number of rows.
+     */
+    final ChunkFormatter chunkFormatter;
+
+    /**
+     * Check if the generated keys of all the rows of a batch insert are returned, in the order of the rows.
+     */
+    boolean hasBatchGeneratedKeys() {
+        switch (this) {
+            case MARIA_DB_OLD:
+            case MARIA_DB_NEW:
+            case MYSQL_OLD:
+            case MYSQL_NEW:
+            case POSTGRESQL:
+                return true;
+            default:
+                return false;
+        }
+    }
 
     SqlDialect(UnaryOperator<String> sequenceDialect,
                BiFunction<String, BigDecimal, String> orderByIdDialect,
                QueryFormatter queryFormatter,
-               GeneratedKeyRetrieval generatedKeyRetrieval
+               GeneratedKeyRetrieval generatedKeyRetrieval,
+               TreeFormatter treeFormatter,
+               ChunkFormatter chunkFormatter
     ) {
         this.sequenceDialect = sequenceDialect;
         this.orderByIdDialect = orderByIdDialect;
         this.queryFormatter = queryFormatter;
         this.generatedKeyRetrieval = generatedKeyRetrieval;
+        this.treeFormatter = treeFormatter;
+        this.chunkFormatter = chunkFormatter;
     }
 
     static SqlDialect findDialect() {
         try (Connection conn = stormify().getDataSource().getConnection()) {
             DatabaseMetaData metadata = conn.getMetaData();
-            String productName = metadata.getDatabaseProductName().toLowerCase();
-            String productVersion = metadata.getDatabaseProductVersion().toLowerCase();
-            int majorVersion = metadata.getDatabaseMajorVersion();
-            int minorVersion = metadata.getDatabaseMinorVersion();
-            if (productName.contains("oracle"))
-                return majorVersion >= 12 ? ORACLE_NEW : ORACLE_OLD;
-            else if (productName.contains("sqlserver") || productName.contains("sql server"))
-                return majorVersion >= 11 ? SQL_SERVER_NEW : SQL_SERVER_OLD;
-            else if (productName.contains("postgresql"))
-                return POSTGRESQL;
-            else if (productName.contains("sqlite"))
-                return SQLITE; // SQLite does not support sequences natively
-            else if (productName.contains("mysql")) {
-                if (productVersion.contains("mariadb")) {
-                    if (majorVersion > 10 || (majorVersion == 10 && minorVersion >= 3))
-                        return MARIA_DB_NEW;
-                    else
-                        return MARIA_DB_OLD;
-                } else {
-                    if (majorVersion >= 8)
-                        return MYSQL_OLD;
-                    else
-                        return MYSQL_NEW;
-                }
-            } else
-                return UNKNOWN;
+            return findDialect(metadata.getDatabaseProductName(), metadata.getDatabaseProductVersion(),
+                    metadata.getDatabaseMajorVersion(), metadata.getDatabaseMinorVersion());
         } catch (Exception e) {
             stormify().getLogger().error("Unable to determine SQL dialect", e);
             return FAILSAFE;
         }
     }
 
+    static SqlDialect findDialect(String productName, String productVersion, int majorVersion, int minorVersion) {
+        String name = productName.toLowerCase();
+        if (name.contains("oracle"))
+            return majorVersion >= 12 ? ORACLE_NEW : ORACLE_OLD;
+        else if (name.contains("sqlserver") || name.contains("sql server"))
+            return majorVersion >= 11 ? SQL_SERVER_NEW : SQL_SERVER_OLD;
+        else if (name.contains("postgresql"))
+            return POSTGRESQL;
+        else if (name.contains("sqlite"))
+            return SQLITE; // SQLite does not support sequences natively
+        else if (name.contains("mysql")) {
+            if (productVersion.toLowerCase().contains("mariadb")) {
+                if (majorVersion > 10 || (majorVersion == 10 && minorVersion >= 3))
+                    return MARIA_DB_NEW;
+                else
+                    return MARIA_DB_OLD;
+            } else {
+                if (majorVersion >= 8)
+                    return MYSQL_NEW;
+                else
+                    return MYSQL_OLD;
+            }
+        } else
+            return UNKNOWN;
+    }
+
     /********************************************************************
      * This part defines the sequence dialects for different databases. *
      ********************************************************************/
@@ -194,6 +250,69 @@ public enum SqlDialect {
                 + ") b WHERE b.rn > " + lowBound + " AND b.rn <= " + upperBound + " ORDER BY rn";
     }
 
+    /************************************************************************
+     * This part defines the hierarchical queries for different databases. *
+     ************************************************************************/
+    private static TreeFormatter getTreeWith(boolean recursiveKeyword) {
+        return (columns, tableName, primaryKey, parentColumn) -> "WITH " + (recursiveKeyword ? "RECURSIVE " : "") +
+                "stormify_tree (node_id, node_depth) AS (SELECT " + primaryKey + ", 0 FROM " + tableName + " WHERE " + primaryKey + " = ?" +
+                " UNION ALL SELECT c." + primaryKey + ", p.node_depth + 1 FROM " + tableName + " c JOIN stormify_tree p ON c." + parentColumn + " = p.node_id" +
+                " WHERE p.node_depth < ?) SELECT " + columns + " FROM " + tableName + " WHERE " + primaryKey + " IN (SELECT node_id FROM stormify_tree)";
+    }
+
+    private static TreeFormatter getTreeWithMaxRecursion() {
+        // SQL Server stops recursion at 100 levels by default; the depth is already limited by the query
+        TreeFormatter tree = getTreeWith(false);
+        return (columns, tableName, primaryKey, parentColumn) -> tree.apply(columns, tableName, primaryKey, parentColumn) + " OPTION (MAXRECURSION 0)";
+    }
+
+    private static TreeFormatter getTreeConnectBy() {
+        return (columns, tableName, primaryKey, parentColumn) -> "SELECT " + columns + " FROM " + tableName + " WHERE " + primaryKey +
+                " IN (SELECT " + primaryKey + " FROM " + tableName + " START WITH " + primaryKey + " = ? CONNECT BY NOCYCLE PRIOR " + primaryKey +
+                " = " + parentColumn + " AND LEVEL <= ? + 1)";
+    }
+
+    /********************************************************************
+     * This part defines the chunked mutations for different databases. *
+     ********************************************************************/
+    private static ChunkFormatter getChunkLimit() {
+        return (tableName, setClause, condition, primaryKey, chunkSize) -> mutation(tableName, setClause) + where(condition) + " LIMIT " + chunkSize;
+    }
+
+    private static ChunkFormatter getChunkRowNum() {
+        return (tableName, setClause, condition, primaryKey, chunkSize) -> mutation(tableName, setClause) + " WHERE " +
+                (condition.isEmpty() ? "" : "(" + condition + ") AND ") + "ROWNUM <= " + chunkSize;
+    }
+
+    private static ChunkFormatter getChunkTop() {
+        return (tableName, setClause, condition, primaryKey, chunkSize) -> (setClause == null
+                ? "DELETE TOP (" + chunkSize + ") FROM " + tableName
+                : "UPDATE TOP (" + chunkSize + ") " + tableName + " SET " + setClause) + where(condition);
+    }
+
+    private static ChunkFormatter getChunkCtid() {
+        return (tableName, setClause, condition, primaryKey, chunkSize) -> mutation(tableName, setClause) +
+                " WHERE ctid = ANY(ARRAY(SELECT ctid FROM " + tableName + where(condition) + " LIMIT " + chunkSize + "))";
+    }
+
+    private static ChunkFormatter getChunkSubquery(String rowId) {
+        return (tableName, setClause, condition, primaryKey, chunkSize) -> {
+            String key = rowId == null ? primaryKey : rowId;
+            if (key == null)
+                throw new QueryException("Table " + tableName + " should have exactly one primary key for chunked mutations");
+            return mutation(tableName, setClause) + " WHERE " + key + " IN (SELECT " + key + " FROM " + tableName +
+                    where(condition) + " LIMIT " + chunkSize + ")";
+        };
+    }
+
+    private static String mutation(String tableName, String setClause) {
+        return setClause == null ? "DELETE FROM " + tableName : "UPDATE " + tableName + " SET " + setClause;
+    }
+
+    private static String where(String condition) {
+        return condition.isEmpty() ? "" : " WHERE " + condition;
+    }
+
     /***********************************************************************
      * This part defines the order by Id dialects for different databases. *
      ***********************************************************************/
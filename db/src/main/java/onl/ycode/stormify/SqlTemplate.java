@@ -0,0 +1,216 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The parsed form of a SQL query: the text fragments between the parameter placeholders, and the names of the
+ * placeholders, if named parameters are used.
+ * <p>
+ * Both positional ({@code ?}) and named ({@code :name}) placeholders are supported, but not in the same query: names
+ * are only recognized in queries without positional placeholders, so that texts like the {@code :new} record of
+ * PL/SQL triggers remain untouched in positional queries. Placeholders inside string literals, quoted identifiers and
+ * comments are ignored, as well as the PostgreSQL operators {@code ?|}, {@code ?&} and the escaped question mark
+ * {@code ??}. Casts like {@code ::text} and array slices like {@code arr[1:n]} are not considered named parameters.
+ * <p>
+ * Parsed queries are cached, keyed by the query string, so that every query is parsed only once. The cache is cleared
+ * when it grows too large, and it is refilled by the queries still in use; queries that are generated with literal
+ * values, like the pages of a paged list, should be compiled with {@link #compile(String)} instead, so that they do
+ * not fill the cache.
+ */
+final class SqlTemplate {
+    private static final int MAX_CACHED = 4096;
+    private static final Map<String, SqlTemplate> cache = new ConcurrentHashMap<>();
+
+    /**
+     * The query, as given by the caller.
+     */
+    final String sql;
+    /**
+     * The query, as sent to the database: named placeholders are replaced by positional ones.
+     */
+    final String jdbcSql;
+    private final String[] fragments;
+    private final String[] names;
+
+    private SqlTemplate(String sql, List<String> fragments, List<String> names) {
+        this.sql = sql;
+        this.fragments = fragments.toArray(new String[0]);
+        this.names = names == null ? null : names.toArray(new String[0]);
+        this.jdbcSql = names == null ? sql : String.join("?", fragments);
+    }
+
+    /**
+     * Get the parsed form of a query, from the cache if possible.
+     *
+     * @param sql the query to parse
+     * @return the parsed query
+     */
+    static SqlTemplate parse(String sql) {
+        SqlTemplate template = cache.get(sql);
+        if (template == null) {
+            // A query that is parsed twice concurrently is just stored twice
+            template = compile(sql);
+            if (cache.size() >= MAX_CACHED)
+                cache.clear();
+            cache.put(sql, template);
+        }
+        return template;
+    }
+
+    /**
+     * Parse a query, without using the cache.
+     *
+     * @param sql the query to parse
+     * @return the parsed query
+     */
+    static SqlTemplate compile(String sql) {
+        // The positions of the placeholders, as pairs of start and end offsets
+        List<Integer> positional = new ArrayList<>();
+        List<Integer> named = new ArrayList<>();
+        int brackets = 0;
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            char next = i + 1 < length ? sql.charAt(i + 1) : 0;
+            if (c == '\'') {
+                boolean backslashEscapes = i > 0 && (sql.charAt(i - 1) == 'E' || sql.charAt(i - 1) == 'e')
+                        && (i < 2 || !isIdentifierPart(sql.charAt(i - 2)));
+                i = skipQuoted(sql, i, '\'', backslashEscapes);
+            } else if (c == '"' || c == '`')
+                i = skipQuoted(sql, i, c, false);
+            else if (c == '-' && next == '-')
+                i = skipUntil(sql, i + 2, "\n");
+            else if (c == '/' && next == '*')
+                i = skipUntil(sql, i + 2, "*/");
+            else if (c == '$' && (i == 0 || !isIdentifierPart(sql.charAt(i - 1))))
+                i = skipDollarQuoted(sql, i);
+            else if (c == '?') {
+                // A parameter followed by the || concatenation operator is not the ?| operator
+                if (next == '?' || next == '&' || next == '|' && (i + 2 >= length || sql.charAt(i + 2) != '|'))
+                    i += 2;
+                else {
+                    positional.add(i);
+                    positional.add(++i);
+                }
+            } else if (c == ':') {
+                if (next == ':')
+                    i += 2;
+                else if (brackets == 0 && Character.isJavaIdentifierStart(next) && next != '$') {
+                    int end = i + 2;
+                    while (end < length && isIdentifierPart(sql.charAt(end)))
+                        end++;
+                    named.add(i);
+                    named.add(end);
+                    i = end;
+                } else
+                    i++;
+            } else {
+                if (c == '[')
+                    brackets++;
+                else if (c == ']' && brackets > 0)
+                    brackets--;
+                i++;
+            }
+        }
+        boolean isNamed = positional.isEmpty() && !named.isEmpty();
+        List<Integer> placeholders = isNamed ? named : positional;
+        List<String> fragments = new ArrayList<>(placeholders.size() / 2 + 1);
+        List<String> names = isNamed ? new ArrayList<>(placeholders.size() / 2) : null;
+        int start = 0;
+        for (int p = 0; p < placeholders.size(); p += 2) {
+            fragments.add(sql.substring(start, placeholders.get(p)));
+            if (isNamed)
+                names.add(sql.substring(placeholders.get(p) + 1, placeholders.get(p + 1)));
+            start = placeholders.get(p + 1);
+        }
+        fragments.add(sql.substring(start));
+        return new SqlTemplate(sql, fragments, names);
+    }
+
+    /**
+     * Get the number of placeholders of the query.
+     *
+     * @return the number of placeholders
+     */
+    int placeholders() {
+        return fragments.length - 1;
+    }
+
+    /**
+     * Get the text before a placeholder. The text after the last placeholder is the fragment with index equal to
+     * {@link #placeholders()}.
+     *
+     * @param index the index of the fragment
+     * @return the text of the fragment
+     */
+    String fragment(int index) {
+        return fragments[index];
+    }
+
+    /**
+     * Check if the query uses named parameters.
+     *
+     * @return true if the placeholders are named
+     */
+    boolean isNamed() {
+        return names != null;
+    }
+
+    /**
+     * Get the name of a placeholder.
+     *
+     * @param index the index of the placeholder
+     * @return the name of the placeholder
+     */
+    String name(int index) {
+        return names[index];
+    }
+
+    private static boolean isIdentifierPart(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+
+    private static int skipQuoted(String sql, int from, char quote, boolean backslashEscapes) {
+        int i = from + 1;
+        int length = sql.length();
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (backslashEscapes && c == '\\')
+                i += 2;
+            else if (c == quote) {
+                if (i + 1 < length && sql.charAt(i + 1) == quote)
+                    i += 2;    // Escaped quote
+                else
+                    return i + 1;
+            } else
+                i++;
+        }
+        return length;
+    }
+
+    private static int skipUntil(String sql, int from, String terminator) {
+        int found = sql.indexOf(terminator, from);
+        return found < 0 ? sql.length() : found + terminator.length();
+    }
+
+    private static int skipDollarQuoted(String sql, int from) {
+        // PostgreSQL dollar-quoted string, e.g. $$text$$ or $tag$text$tag$
+        int end = from + 1;
+        while (end < sql.length() && sql.charAt(end) != '$') {
+            char c = sql.charAt(end);
+            if (!(Character.isLetter(c) || c == '_' || (end > from + 1 && Character.isDigit(c))))
+                return from + 1;    // Not a dollar quote, e.g. a $1 parameter
+            end++;
+        }
+        if (end >= sql.length())
+            return from + 1;
+        return skipUntil(sql, end + 1, sql.substring(from, end + 1));
+    }
+}
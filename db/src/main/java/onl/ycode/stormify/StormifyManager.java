@@ -6,21 +6,32 @@ package onl.ycode.stormify;
 
 import onl.ycode.logger.LogManager;
 import onl.ycode.logger.Logger;
+import onl.ycode.logger.RateLimitedLogger;
+import onl.ycode.stormify.ExecutionMonitor.Span;
 import onl.ycode.stormify.FieldInfo.FieldContext;
 import onl.ycode.stormify.SqlDialect.GeneratedKeyRetrieval;
 
 import javax.sql.DataSource;
 import java.io.Closeable;
+import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.math.BigInteger;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.BiPredicate;
 import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
 
 import static java.util.Collections.emptyList;
 import static java.util.Objects.requireNonNull;
@@ -46,9 +57,19 @@ public class StormifyManager {
     private volatile DataSource dataSource;
     private volatile SqlDialect sqlDialect = null;
     private boolean strictMode = false;
+    private volatile ExecutionMonitor executionMonitor = ExecutionMonitor.NONE;
+    private volatile int repeatedQueryThreshold = 0;
+    private volatile Consumer<RepeatedQuery> repeatedQueryListener;
+    private volatile InListStrategy inListStrategy = InListStrategy.EXPAND;
+    private volatile int inListThreshold = 1000;
+    private volatile ResultLimit resultLimit = ResultLimit.NONE;
+    private final ThreadLocal<ResultLimit> scopedResultLimit = new ThreadLocal<>();
 
     private final ClassRegistry registry = new ClassRegistry();
+    private final ConnectionTracker connectionTracker = new ConnectionTracker();
+    private final Map<Class<?>, List<Function<Object, ? extends Iterable<?>>>> detailAccessors = new ConcurrentHashMap<>();
     private Logger logger = LogManager.getLogger("Stormify");
+    private Logger diagnosticsLogger = new RateLimitedLogger(logger);
     private final Collection<Runnable> onInit = new ArrayList<>();
     private final AtomicBoolean isInitialized = new AtomicBoolean(false);
 
@@ -159,6 +180,228 @@ public class StormifyManager {
     public void setLogger(Logger logger) {
         requireNonNull(logger, "Logger cannot be null");
         this.logger = logger;
+        this.diagnosticsLogger = new RateLimitedLogger(logger);
+    }
+
+    /**
+     * Returns a rate-limited view of the logger used by the controller. Repeated messages sent through this logger
+     * are suppressed for a while and reported as a summary afterward. It should be used for diagnostics that may be
+     * emitted once per row or once per call, like unmapped columns or failed page fetches.
+     *
+     * @return the rate-limited logger.
+     */
+    public Logger getDiagnosticsLogger() {
+        return diagnosticsLogger;
+    }
+
+    /**
+     * Returns the execution monitor of the controller. See {@link #setExecutionMonitor(ExecutionMonitor)}.
+     *
+     * @return the execution monitor of the controller. It is never null.
+     */
+    public ExecutionMonitor getExecutionMonitor() {
+        return executionMonitor;
+    }
+
+    /**
+     * Sets the execution monitor, that will be notified about queries, connection requests and transactions.
+     * By default, no monitoring is performed.
+     *
+     * @param executionMonitor the execution monitor to use, or null to disable monitoring.
+     */
+    public void setExecutionMonitor(ExecutionMonitor executionMonitor) {
+        this.executionMonitor = executionMonitor == null ? ExecutionMonitor.NONE : executionMonitor;
+    }
+
+    /**
+     * Enables the detection of queries that are executed repeatedly, with different parameters, within the same
+     * transaction or profiling scope (see {@link #profileQueries(SafeRunnable)}). This is the typical signature of
+     * N+1 problems, e.g. when {@link #populate(Object)} or {@link #getDetails(Object, Class)} are called in a loop.
+     * <p>
+     * The queries are grouped by the query string, as provided by the caller. When a scope is over, every query
+     * that was executed with more than {@code threshold} different parameter sets is reported, together with a
+     * sample of its call site.
+     * <p>
+     * Since tracking has a cost, this feature is meant to be used while testing or in staging environments.
+     *
+     * @param threshold the number of different parameter sets a query is allowed to have, within a scope.
+     * @param listener  the listener of the reports, or null to log them as warnings.
+     */
+    public void enableRepeatedQueryDetection(int threshold, Consumer<RepeatedQuery> listener) {
+        if (threshold < 1)
+            throw new QueryException("Repeated query threshold should be at least 1");
+        this.repeatedQueryListener = listener == null ? it -> logger.warn(it.toString()) : listener;
+        this.repeatedQueryThreshold = threshold;
+    }
+
+    /**
+     * Disables the detection of repeated queries. See {@link #enableRepeatedQueryDetection(int, Consumer)}.
+     */
+    public void disableRepeatedQueryDetection() {
+        this.repeatedQueryThreshold = 0;
+    }
+
+    /**
+     * Executes the given block of code as a profiling scope for repeated query detection. Transactions are always
+     * profiling scopes; use this method to define a scope outside of transactions. Nested scopes are merged with
+     * the outermost scope.
+     * <p>
+     * If repeated query detection is not enabled, the block of code is just executed.
+     *
+     * @param block the block of code to be executed.
+     * @see #enableRepeatedQueryDetection(int, Consumer)
+     */
+    public void profileQueries(SafeRunnable block) {
+        requireNonNull(block, "Block cannot be null");
+        boolean profiled = openQueryProfile();
+        try {
+            block.run();
+        } catch (QueryException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new QueryException("Unable to execute profiled block", e);
+        } finally {
+            if (profiled)
+                QueryProfile.close();
+        }
+    }
+
+    /**
+     * Sets the limit of the results that are held in memory, for all queries that return their results as a list.
+     * See {@link ResultLimit}.
+     *
+     * @param limit the result limit, or {@link ResultLimit#NONE} for no limit.
+     */
+    public void setResultLimit(ResultLimit limit) {
+        requireNonNull(limit, "Result limit cannot be null");
+        this.resultLimit = limit;
+    }
+
+    /**
+     * Returns the limit of the results that are held in memory, as set with {@link #setResultLimit(ResultLimit)}.
+     *
+     * @return the result limit.
+     */
+    public ResultLimit getResultLimit() {
+        return resultLimit;
+    }
+
+    /**
+     * Executes the given block of code with a different result limit, e.g. to allow a known large query, or to
+     * restrict the queries of a specific request. The limit is applied to the queries of the current thread only,
+     * and it replaces the global limit until the block is over.
+     *
+     * @param limit the result limit of the block.
+     * @param block the block of code to be executed.
+     * @param <T>   the type of the result of the block.
+     * @return the result of the block.
+     */
+    public <T> T withResultLimit(ResultLimit limit, SafeSupplier<T> block) {
+        requireNonNull(limit, "Result limit cannot be null");
+        requireNonNull(block, "Block cannot be null");
+        ResultLimit previous = scopedResultLimit.get();
+        scopedResultLimit.set(limit);
+        try {
+            return block.get();
+        } catch (QueryException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new QueryException("Unable to execute block with result limit " + limit, e);
+        } finally {
+            if (previous == null)
+                scopedResultLimit.remove();
+            else
+                scopedResultLimit.set(previous);
+        }
+    }
+
+    boolean openQueryProfile() {
+        return QueryProfile.open(repeatedQueryThreshold, repeatedQueryListener);
+    }
+
+    /**
+     * Returns the strategy used to pass collection parameters to the database. See {@link #setInListStrategy(InListStrategy)}.
+     *
+     * @return the strategy for collection parameters.
+     */
+    public InListStrategy getInListStrategy() {
+        return inListStrategy;
+    }
+
+    /**
+     * Sets the strategy used to pass collection parameters to the database, e.g. in {@code IN ?} clauses. By default,
+     * every value gets its own placeholder ({@link InListStrategy#EXPAND}). The strategy of a single parameter can be
+     * overridden with {@link InList#of(Iterable, InListStrategy)}.
+     *
+     * @param strategy the strategy for collection parameters.
+     */
+    public void setInListStrategy(InListStrategy strategy) {
+        requireNonNull(strategy, "Strategy cannot be null");
+        this.inListStrategy = strategy;
+    }
+
+    /**
+     * Sets the size above which a collection parameter is staged into a temporary table, when the
+     * {@link InListStrategy#AUTO} strategy is used. The default value is 1000.
+     *
+     * @param threshold the maximum size of a collection parameter that is passed as separate values.
+     */
+    public void setInListThreshold(int threshold) {
+        if (threshold < 1)
+            throw new QueryException("In-list threshold should be at least 1");
+        this.inListThreshold = threshold;
+    }
+
+    /**
+     * Sets the time a connection is allowed to be held by the application, before a warning is logged.
+     * Connections that are held for longer, e.g. by a slow {@link #readCursor(Class, String, Consumer, Object...)}
+     * consumer or a transaction that is left open, are reported while still being held, and once more when they are
+     * released. This works with any data source, since only the connections handed out by Stormify are tracked.
+     * <p>
+     * By default, no warnings are logged.
+     *
+     * @param threshold the maximum hold time, or 0 to disable the warnings.
+     * @param unit      the time unit of the threshold.
+     * @see #setConnectionStackSampling(int)
+     */
+    public void setConnectionHoldWarning(long threshold, TimeUnit unit) {
+        requireNonNull(unit, "Time unit cannot be null");
+        connectionTracker.setWarnThreshold(unit.toMillis(threshold));
+    }
+
+    /**
+     * Sets how often the stack trace of the code that acquires a connection is recorded. The stack trace is part of
+     * the hold time warnings and of {@link #getConnectionHolders()}, and helps to locate the code that holds the
+     * connection. Since recording a stack trace is expensive, only one every {@code rate} acquisitions is sampled.
+     * <p>
+     * By default, no stack traces are recorded.
+     *
+     * @param rate the sampling rate: 1 to record every acquisition, or 0 to disable sampling.
+     */
+    public void setConnectionStackSampling(int rate) {
+        connectionTracker.setStackSamplingRate(rate);
+    }
+
+    /**
+     * Returns the connections that are currently held by the application, the longest held first.
+     *
+     * @return a snapshot of the current connection holders.
+     */
+    public List<ConnectionHolder> getConnectionHolders() {
+        return connectionTracker.getHolders();
+    }
+
+    /**
+     * Returns the histogram of the time connections were held by the application, since the controller was created.
+     *
+     * @return a snapshot of the hold time histogram.
+     */
+    public ConnectionHoldHistogram getConnectionHoldHistogram() {
+        return connectionTracker.getHistogram();
+    }
+
+    ConnectionTracker getConnectionTracker() {
+        return connectionTracker;
     }
 
     /**
@@ -174,6 +417,22 @@ public class StormifyManager {
         registry.registerPrimaryKeyResolver(priority, resolver);
     }
 
+    /**
+     * Registers the details of a parent class, so that they are persisted together with their parent by
+     * {@link #persistGraph(Object)}. More than one accessor can be registered for the same class.
+     *
+     * @param parentClass the class of the parent objects.
+     * @param details     the function that returns the details of a parent object; it may return null if there are
+     *                    no details.
+     * @param <M>         the type of the parent objects.
+     */
+    @SuppressWarnings("unchecked")
+    public <M> void registerDetails(Class<M> parentClass, Function<? super M, ? extends Iterable<?>> details) {
+        requireNonNull(parentClass, "Parent class cannot be null");
+        requireNonNull(details, "Details accessor cannot be null");
+        detailAccessors.computeIfAbsent(parentClass, it -> new CopyOnWriteArrayList<>()).add((Function<Object, ? extends Iterable<?>>) details);
+    }
+
     /**
      * Sets the naming policy to be used by the controller. By default, the naming policy is
      * {@link NamingPolicy#lowerCaseWithUnderscores} (snake_case). Note that the policy will only update the tables and
@@ -198,54 +457,210 @@ public class StormifyManager {
     private StormifyManager() {
     }
 
-    private static final class FixedParams {
+    static final class FixedParams {
         final String query;
         final List<Object> params;
+        final List<InLists.StagedValues> staged;
 
         private FixedParams(String query, List<Object> params) {
+            this(query, params, null);
+        }
+
+        private FixedParams(String query, List<Object> params, List<InLists.StagedValues> staged) {
             this.query = query;
             this.params = params;
+            this.staged = staged;
         }
     }
 
-    private FixedParams fixParams(String givenQuery, Object[] args) {
-        if (args == null)
-            return new FixedParams(givenQuery, emptyList());
-        List<Object> params = new ArrayList<>(args.length);
-        StringBuilder query = new StringBuilder(givenQuery.length());
-        int countQuestionMarks = 0;
-        for (int i = 0; i < givenQuery.length(); i++) {
-            // Have to parse the whole query in case Iterables are used as parameters
-            if (givenQuery.charAt(i) == '?') {
-                if (countQuestionMarks >= args.length)
-                    throw new QueryException("The number of placeholders (" + count(givenQuery, '?') + ") in query '" + givenQuery + "' exceeds the number of parameters (" + args.length + ")");
-                Object arg = sqlData(args[countQuestionMarks++], true);
-                if (arg instanceof List) {
-                    query.append("(").append(nCopies("?", ", ", ((List<?>) arg).size())).append(")");
-                    params.addAll((List<?>) arg);
-                } else {
-                    query.append("?");
-                    params.add(arg);
+    FixedParams fixParams(String givenQuery, Object[] args) {
+        return fixParams(SqlTemplate.parse(givenQuery), args);
+    }
+
+    FixedParams fixParams(SqlTemplate template, Object[] args) {
+        // Without parameters, names are plain text, like the :new record in the body of a PL/SQL trigger
+        if (args == null || args.length == 0 && template.isNamed())
+            return new FixedParams(template.sql, emptyList());
+        Object[] values = template.isNamed() ? namedValues(template, args) : args;
+        int placeholders = template.placeholders();
+        if (placeholders > values.length)
+            throw new QueryException("The number of placeholders (" + placeholders + ") in query '" + template.sql + "' exceeds the number of parameters (" + values.length + ")");
+        if (placeholders < values.length)
+            throw new QueryException("The number of placeholders (" + placeholders + ") in query '" + template.sql + "' is less than the number of parameters (" + values.length + ")");
+        List<Object> params = new ArrayList<>(values.length);
+        // The query is only rebuilt when Iterables are used as parameters
+        StringBuilder query = null;
+        List<InLists.StagedValues> staged = null;
+        for (int i = 0; i < placeholders; i++) {
+            Object value = values[i];
+            InListStrategy strategy = inListStrategy;
+            if (value instanceof InList) {
+                strategy = ((InList) value).strategy;
+                value = ((InList) value).values;
+            }
+            Object arg = sqlData(value, true);
+            if (arg instanceof List) {
+                if (query == null) {
+                    query = new StringBuilder(template.jdbcSql.length() + 16);
+                    for (int j = 0; j < i; j++)
+                        query.append(template.fragment(j)).append('?');
+                    staged = new ArrayList<>(0);
                 }
-            } else
-                query.append(givenQuery.charAt(i));
+                List<?> list = (List<?>) arg;
+                SqlDialect dialect = strategy == InListStrategy.EXPAND ? null : getSqlDialect();
+                strategy = dialect == null ? strategy : InLists.resolve(strategy, dialect, list, inListThreshold);
+                InLists.append(query, template.fragment(i), list, strategy, dialect, params, staged);
+            } else {
+                if (query != null)
+                    query.append(template.fragment(i)).append('?');
+                params.add(arg);
+            }
         }
-        if (countQuestionMarks != args.length)
-            throw new QueryException("The number of placeholders (" + count(givenQuery, '?') + ") in query '" + givenQuery + "' is less than the number of parameters (" + args.length + ")");
-        return new FixedParams(query.toString(), params);
+        if (query == null)
+            return new FixedParams(template.jdbcSql, params);
+        return new FixedParams(query.append(template.fragment(placeholders)).toString(), params, staged.isEmpty() ? null : staged);
     }
 
-    private <T> T performQuery(String givenQuery, Object[] givenParams, boolean generatedKeys, QueryEnvironment<T> code) throws QueryException {
-        FixedParams params = fixParams(givenQuery, givenParams);
-        dbLog(params.query, params.params.toArray());
-        return initConnection(connection -> {
-            try (PreparedStatement statement = generatedKeys ? connection.prepareStatement(params.query, Statement.RETURN_GENERATED_KEYS) : connection.prepareStatement(params.query)) {
-                for (int i = 0; i < params.params.size(); i++)
-                    statement.setObject(i + 1, params.params.get(i));
-                return code.execute(statement);
-            } catch (Exception e) {
-                throw new QueryException("Unable to execute query '" + params.query + "'", e);
+    private Object[] namedValues(SqlTemplate template, Object[] args) {
+        if (args.length != 1 || args[0] == null)
+            throw new QueryException("Query '" + template.sql + "' uses named parameters and expects a single Map or bean as parameter");
+        Object source = args[0];
+        Object[] values = new Object[template.placeholders()];
+        if (source instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) source;
+            for (int i = 0; i < values.length; i++) {
+                String name = template.name(i);
+                if (!map.containsKey(name))
+                    throw new QueryException("Named parameter '" + name + "' of query '" + template.sql + "' not found");
+                values[i] = map.get(name);
+            }
+        } else {
+            TableInfo info = registry.getTableInfo(source.getClass());
+            for (int i = 0; i < values.length; i++) {
+                String name = template.name(i);
+                FieldInfo field = info.getField(name);
+                if (field == null)
+                    throw new QueryException("Named parameter '" + name + "' of query '" + template.sql + "' not found in " + source.getClass().getName());
+                values[i] = field.getValue(source);
             }
+        }
+        return values;
+    }
+
+    private <T> T performQuery(String table, String givenQuery, Object[] givenParams, boolean generatedKeys, QueryEnvironment<T> code) throws QueryException {
+        return performQuery(table, SqlTemplate.parse(givenQuery), givenParams, null, generatedKeys, code);
+    }
+
+    private <T> T performQuery(String table, String givenQuery, Object[] givenParams, ParamBinder[] binders, boolean generatedKeys, QueryEnvironment<T> code) throws QueryException {
+        return performQuery(table, SqlTemplate.parse(givenQuery), givenParams, binders, generatedKeys, code);
+    }
+
+    private <T> T performQuery(String table, SqlTemplate template, Object[] givenParams, boolean generatedKeys, QueryEnvironment<T> code) throws QueryException {
+        return performQuery(table, template, givenParams, null, generatedKeys, code);
+    }
+
+    /**
+     * Execute a query.
+     *
+     * @param binders the typed binders of the parameters, or null to bind all parameters as objects. They are used
+     *                only when the number of parameters is not changed by collection parameters.
+     */
+    private <T> T performQuery(String table, SqlTemplate template, Object[] givenParams, ParamBinder[] binders, boolean generatedKeys, QueryEnvironment<T> code) throws QueryException {
+        FixedParams params = fixParams(template, givenParams);
+        dbLog(params.query, params.params.toArray());
+        QueryProfile.record(template.sql, params.params);
+        try (Lobs.Closer streams = new Lobs.Closer()) {
+            List<Object> values = Lobs.open(params.params, streams);
+            ParamBinder[] typed = binders != null && binders.length == values.size() ? binders : null;
+            return initConnection(connection -> {
+                Span span = executionMonitor.queryStarted(params.query, table);
+                T result;
+                List<InLists.StagedValues> created = params.staged == null ? null : new ArrayList<>(params.staged.size());
+                try {
+                    try {
+                        InLists.stage(connection, params.staged, created);
+                        try (PreparedStatement statement = generatedKeys ? connection.prepareStatement(params.query, Statement.RETURN_GENERATED_KEYS) : connection.prepareStatement(params.query)) {
+                            bind(connection, statement, values, typed, streams);
+                            result = code.execute(statement);
+                        }
+                    } finally {
+                        InLists.drop(connection, created);
+                    }
+                } catch (Exception e) {
+                    if (span != null)
+                        span.finish(-1, e);
+                    throw new QueryException("Unable to execute query '" + params.query + "'", e);
+                }
+                if (span != null)
+                    span.finish(result instanceof Integer ? (Integer) result : -1, null);
+                return result;
+            });
+        }
+    }
+
+    /**
+     * Execute a query once for every set of parameters, with one batch.
+     *
+     * @param rows the parameters of every execution.
+     */
+    private <T> T performBatch(String table, String givenQuery, List<Object[]> rows, ParamBinder[] binders, boolean generatedKeys, QueryEnvironment<T> code) throws QueryException {
+        SqlTemplate template = SqlTemplate.parse(givenQuery);
+        List<List<Object>> batch = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            FixedParams params = fixParams(template, row);
+            if (params.staged != null || !params.query.equals(template.jdbcSql))
+                throw new QueryException("Collection parameters are not supported in batch query '" + template.sql + "'");
+            dbLog(params.query, params.params.toArray());
+            batch.add(params.params);
+        }
+        QueryProfile.record(template.sql, batch.get(0));
+        try (Lobs.Closer streams = new Lobs.Closer()) {
+            List<List<Object>> opened = map(batch, params -> Lobs.open(params, streams));
+            return initConnection(connection -> {
+                Span span = executionMonitor.queryStarted(template.jdbcSql, table);
+                T result;
+                try (PreparedStatement statement = generatedKeys ? connection.prepareStatement(template.jdbcSql, Statement.RETURN_GENERATED_KEYS) : connection.prepareStatement(template.jdbcSql)) {
+                    for (List<Object> values : opened) {
+                        bind(connection, statement, values, binders != null && binders.length == values.size() ? binders : null, streams);
+                        statement.addBatch();
+                    }
+                    result = code.execute(statement);
+                } catch (Exception e) {
+                    if (span != null)
+                        span.finish(-1, e);
+                    throw new QueryException("Unable to execute batch query '" + template.jdbcSql + "'", e);
+                }
+                if (span != null)
+                    span.finish(result instanceof Integer ? (Integer) result : -1, null);
+                return result;
+            });
+        }
+    }
+
+    private static void bind(Connection connection, PreparedStatement statement, List<Object> values, ParamBinder[] typed, Lobs.Closer streams) throws SQLException, IOException {
+        for (int i = 0; i < values.size(); i++) {
+            Object param = values.get(i);
+            if (typed != null && typed[i] != null)
+                typed[i].bind(statement, i + 1, param);
+            else if (param instanceof InLists.ArrayValue)
+                statement.setArray(i + 1, ((InLists.ArrayValue) param).create(connection));
+            else if (!Lobs.bind(statement, i + 1, param, streams))
+                statement.setObject(i + 1, param);
+        }
+    }
+
+    Object fetchLob(Object owner, String column, boolean character) {
+        EntityData<Object> info = new EntityData<>(owner, registry);
+        if (info.status != EntityData.ID_FOUND)
+            throw new QueryException("Unable to load large object " + column + " of " + info.itemClass.getName() + " without a primary key");
+        Object[] params = info.idValues.toArray();
+        String query = "SELECT " + column + " FROM " + info.table + " WHERE " + listOfIds(info.idFields);
+        return performQuery(info.table, query, params, info.tableInfo.idBinders.get(), false, statement -> {
+            ResultSet rs = statement.executeQuery();
+            if (!rs.next())
+                throw new QueryException("No data found for " + info.table + " with id" + (params.length == 1 ? "" : "s") + " "
+                        + (info.idFields.size() == 1 ? params[0] : Arrays.toString(params)));
+            return character ? Lobs.spool(rs.getCharacterStream(1)) : Lobs.spool(rs.getBinaryStream(1));
         });
     }
 
@@ -282,7 +697,11 @@ public class StormifyManager {
      */
     public int executeUpdate(String query, Object... params) {
         requireNonNull(query, "Query cannot be null");
-        return performQuery(query, params, false, PreparedStatement::executeUpdate);
+        return executeUpdate(SqlTemplate.parse(query), params);
+    }
+
+    int executeUpdate(SqlTemplate template, Object... params) {
+        return performQuery(null, template, params, false, PreparedStatement::executeUpdate);
     }
 
     /**
@@ -298,22 +717,179 @@ public class StormifyManager {
      * @return the number of rows affected.
      */
     public <T> int readCursor(Class<T> baseClass, String query, Consumer<T> consumer, Object... params) {
+        requireNonNull(query, "Query cannot be null");
+        return readCursor(baseClass, SqlTemplate.parse(query), consumer, params);
+    }
+
+    <T> int readCursor(Class<T> baseClass, SqlTemplate template, Consumer<T> consumer, Object... params) {
+        return readGuarded(baseClass, template, consumer, null, null, params);
+    }
+
+    /**
+     * Executes a read operation, that stops early if the guard of the results is stopped.
+     *
+     * @param guard     the guard of the results, or null to read all results.
+     * @param executing notified with the statement just before it is executed, or null.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> int readGuarded(Class<T> baseClass, SqlTemplate template, Consumer<T> consumer, ResultGuard<T> guard,
+                                Consumer<? super Statement> executing, Object[] params) {
         requireNonNull(baseClass, "Base class cannot be null");
+        requireNonNull(consumer, "Consumer cannot be null");
+        boolean isRow = baseClass == Row.class;
+        boolean isBaseClass = !isRow && isBaseClass(baseClass);
+        TableInfo tableInfo = isBaseClass || isRow ? null : registry.getTableInfo(baseClass);
+        String table = tableInfo == null ? null : tableInfo.getTableName();
+        return performQuery(table, template, params, false, statement -> {
+            Constructor<T> constructor = tableInfo == null || tableInfo.constructorPlan.get() != null ? null : baseClass.getDeclaredConstructor();
+            if (guard != null && guard.statementMaxRows() > 0)
+                statement.setMaxRows(guard.statementMaxRows());
+            if (executing != null)
+                executing.accept(statement);
+            ResultSet rs = statement.executeQuery();
+            RowMapper mapper = null;
+            ColumnReader reader = null;
+            Row.Columns columns = null;
+            int count = 0;
+            while ((guard == null || !guard.isStopped()) && rs.next()) {
+                count++;
+                if (isRow) {
+                    if (columns == null)
+                        columns = new Row.Columns(rs.getMetaData());
+                    consumer.accept((T) columns.read(rs));
+                } else if (isBaseClass) {
+                    if (count == 1)
+                        reader = valueReader(baseClass, rs);
+                    consumer.accept(reader == null ? readValue(baseClass, rs) : (T) reader.read(rs, 1));
+                } else {
+                    if (mapper == null)
+                        mapper = rowMapper(baseClass, rs);
+                    consumer.accept(mapper.isConstructed() ? (T) mapper.create(rs) : forcePopulate(constructor.newInstance(), rs, mapper));
+                }
+            }
+            return count;
+        });
+    }
+
+    /**
+     * Executes a read operation and returns the results as a list, that keeps only the first rows in memory. The
+     * rest of the rows are stored in a temporary file, and they are restored when they are accessed. Use this method
+     * instead of {@link #read(Class, String, Object...)} when a query might return more rows than the memory can hold.
+     * <p>
+     * The returned list should be closed, to delete the temporary file. See {@link SpillingList} for details.
+     *
+     * @param <T>          the type of the results.
+     * @param baseClass    the base class of the results.
+     * @param inMemoryRows the number of rows to keep in memory.
+     * @param query        the query to be executed.
+     * @param params       the parameters to be used in the query.
+     * @return the list of results.
+     */
+    public <T> SpillingList<T> readLarge(Class<T> baseClass, int inMemoryRows, String query, Object... params) {
+        requireNonNull(query, "Query cannot be null");
+        return readLarge(baseClass, inMemoryRows, SqlTemplate.parse(query), params);
+    }
+
+    <T> SpillingList<T> readLarge(Class<T> baseClass, int inMemoryRows, SqlTemplate template, Object... params) {
+        requireNonNull(baseClass, "Base class cannot be null");
+        SpillingList.Collector<T> collector = new SpillingList.Collector<>(baseClass, inMemoryRows, registry);
+        try {
+            readCursor(baseClass, template, collector, params);
+        } catch (RuntimeException | Error e) {
+            collector.discard();
+            throw e;
+        }
+        return collector.build();
+    }
+
+    /**
+     * Executes a read operation, where the rows are fetched in a background thread while the consumer processes the
+     * rows that are already fetched. Use this method instead of {@link #readCursor(Class, String, Consumer, Object...)}
+     * when both fetching and processing the rows take considerable time, e.g. when exporting data.
+     * <p>
+     * The rows are passed from the background thread in batches of the given size, and at most a few batches are
+     * kept in memory. The consumer is always called in the calling thread. If the consumer throws an exception, or the
+     * calling thread is interrupted, the statement is cancelled with {@link Statement#cancel()} and its connection is
+     * closed before the exception is propagated. Inside a transaction the
+     * rows are fetched by the calling thread, since the connection of the transaction is not shared with other
+     * threads.
+     *
+     * @param <T>       the type of the results.
+     * @param baseClass the base class of the results.
+     * @param query     the query to be executed.
+     * @param batchSize the number of rows passed from the background thread at once.
+     * @param consumer  the consumer to be used to process the results. Every new row is passed to this consumer.
+     * @param params    the parameters to be used in the query.
+     * @return the number of rows processed.
+     */
+    public <T> int readCursorPrefetched(Class<T> baseClass, String query, int batchSize, Consumer<T> consumer, Object... params) {
+        requireNonNull(query, "Query cannot be null");
+        return readCursorPrefetched(baseClass, SqlTemplate.parse(query), batchSize, consumer, params);
+    }
+
+    <T> int readCursorPrefetched(Class<T> baseClass, SqlTemplate template, int batchSize, Consumer<T> consumer, Object... params) {
+        requireNonNull(baseClass, "Base class cannot be null");
+        requireNonNull(consumer, "Consumer cannot be null");
+        if (TransactionContext.isActive())
+            return readCursor(baseClass, template, consumer, params);
+        Prefetcher<T> prefetcher = new Prefetcher<>(batchSize);
+        return prefetcher.run(rows -> readGuarded(baseClass, template, rows, null, prefetcher::executing, params), consumer);
+    }
+
+    /**
+     * Executes a read operation, populating the same entity instance for every row. This avoids creating a new
+     * object for every row, and is suitable when the rows are only aggregated or transformed.
+     * <p>
+     * The instance is only valid inside the consumer: its fields are overwritten when the next row is read, so it
+     * should not be kept or passed to other threads.
+     *
+     * @param <T>      the type of the entity.
+     * @param target   the instance to be populated with every row.
+     * @param query    the query to be executed.
+     * @param consumer the consumer to be used to process the results. The same instance is passed for every row.
+     * @param params   the parameters to be used in the query.
+     * @return the number of rows read.
+     */
+    public <T> int readCursorInto(T target, String query, Consumer<? super T> consumer, Object... params) {
         requireNonNull(query, "Query cannot be null");
+        return readCursorInto(target, SqlTemplate.parse(query), consumer, params);
+    }
+
+    <T> int readCursorInto(T target, SqlTemplate template, Consumer<? super T> consumer, Object... params) {
+        requireNonNull(target, "Target cannot be null");
         requireNonNull(consumer, "Consumer cannot be null");
-        boolean isBaseClass = isBaseClass(baseClass);
-        return performQuery(query, params, false, statement -> {
-            Constructor<T> constructor = isBaseClass ? null : baseClass.getDeclaredConstructor();
+        Class<?> targetClass = target.getClass();
+        if (isBaseClass(targetClass) || target instanceof Row)
+            throw new QueryException("Only entities can be reused when reading, found " + targetClass.getName());
+        TableInfo tableInfo = registry.getTableInfo(targetClass);
+        if (tableInfo.constructorPlan.get() != null)
+            throw new QueryException("Instances of the immutable class " + targetClass.getName() + " can not be reused when reading");
+        String table = tableInfo.getTableName();
+        return performQuery(table, template, params, false, statement -> {
             ResultSet rs = statement.executeQuery();
+            RowMapper mapper = null;
             int count = 0;
             while (rs.next()) {
                 count++;
-                consumer.accept(isBaseClass ? castTo(baseClass, rs.getObject(1)) : forcePopulate(constructor.newInstance(), rs));
+                if (mapper == null)
+                    mapper = rowMapper(targetClass, rs);
+                consumer.accept(forcePopulate(target, rs, mapper));
             }
             return count;
         });
     }
 
+    private static ColumnReader valueReader(Class<?> baseClass, ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int sqlType = metaData.getColumnType(1);
+        return ColumnReader.of(baseClass, sqlType, ColumnReader.isDecimal(sqlType) ? metaData.getScale(1) : 0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T readValue(Class<T> baseClass, ResultSet rs) throws SQLException {
+        return Lobs.isStreaming(baseClass) ? (T) Lobs.read(baseClass, rs, 1, null, null) : castTo(baseClass, rs.getObject(1));
+    }
+
     /**
      * Executes a read operation and returns the list of results.
      *
@@ -324,9 +900,30 @@ public class StormifyManager {
      * @return the list of results. This list is never null.
      */
     public <T> List<T> read(Class<T> baseClass, String query, Object... params) {
-        List<T> result = new ArrayList<>();
-        readCursor(baseClass, query, result::add, params);
-        return result;
+        requireNonNull(query, "Query cannot be null");
+        return read(baseClass, SqlTemplate.parse(query), params);
+    }
+
+    <T> List<T> read(Class<T> baseClass, SqlTemplate template, Object... params) {
+        ResultLimit limit = scopedResultLimit.get();
+        if (limit == null)
+            limit = resultLimit;
+        if (limit.isUnlimited()) {
+            List<T> result = new ArrayList<>();
+            readCursor(baseClass, template, result::add, params);
+            return result;
+        }
+        ResultGuard<T> guard = new ResultGuard<>(limit, registry);
+        try {
+            readGuarded(baseClass, template, guard, guard, null, params);
+        } catch (QueryException e) {
+            // Report the exceeded limit directly, instead of a failed query
+            throw guard.getFailure() == null ? e : guard.getFailure();
+        }
+        if (guard.isTruncated())
+            // The number of results is left out, so that repeated truncations of the same query are rate limited together
+            diagnosticsLogger.warn("Query '" + template.sql + "' was truncated, due to " + limit);
+        return guard.result();
     }
 
     private static class Reference<T> {
@@ -344,15 +941,102 @@ public class StormifyManager {
      * @return the single result. This result can be null if no data is found.
      */
     public <T> T readOne(Class<T> baseClass, String query, Object... params) {
+        requireNonNull(query, "Query cannot be null");
+        return readOne(baseClass, SqlTemplate.parse(query), params);
+    }
+
+    <T> T readOne(Class<T> baseClass, SqlTemplate template, Object... params) {
         Reference<T> result = new Reference<>();
-        readCursor(baseClass, query, it -> {
+        readCursor(baseClass, template, it -> {
             if (result.item != null)
-                throw new QueryException("Multiple results found for query '" + query + "'");
+                throw new QueryException("Multiple results found for query '" + template.sql + "'");
             result.item = it;
         }, params);
         return result.item;
     }
 
+    /**
+     * Executes a read operation and returns the results as rows, without mapping them to an entity. See
+     * {@link Row}. This is the same as {@code read(Row.class, query, params)}.
+     *
+     * @param query  the query to be executed.
+     * @param params the parameters to be used in the query.
+     * @return the list of rows. This list is never null.
+     */
+    public List<Row> readRows(String query, Object... params) {
+        return read(Row.class, query, params);
+    }
+
+    /**
+     * Executes a read operation and returns the results by column, see {@link ColumnBatch}. All rows are kept in a
+     * single batch.
+     *
+     * @param query  the query to be executed.
+     * @param params the parameters to be used in the query.
+     * @return the results of the query.
+     */
+    public ColumnBatch readColumns(String query, Object... params) {
+        requireNonNull(query, "Query cannot be null");
+        return performQuery(null, query, params, false, statement -> {
+            ResultSet rs = statement.executeQuery();
+            ColumnBatch.Collector collector = new ColumnBatch.Collector(rs.getMetaData(), 1024);
+            while (rs.next())
+                collector.add(rs);
+            return collector.build();
+        });
+    }
+
+    /**
+     * Executes a read operation and returns the results by column, in batches of the given size, see
+     * {@link ColumnBatch}. Use this method for results that are too large to be kept in memory at once; every
+     * batch is passed to the consumer as soon as it is filled.
+     *
+     * @param query     the query to be executed.
+     * @param batchSize the maximum number of rows of every batch.
+     * @param consumer  the consumer of the batches.
+     * @param params    the parameters to be used in the query.
+     * @return the total number of rows.
+     */
+    public int readColumnBatches(String query, int batchSize, Consumer<ColumnBatch> consumer, Object... params) {
+        requireNonNull(query, "Query cannot be null");
+        requireNonNull(consumer, "Consumer cannot be null");
+        if (batchSize < 1)
+            throw new QueryException("Batch size should be positive, found " + batchSize);
+        return performQuery(null, query, params, false, statement -> {
+            statement.setFetchSize(Math.min(batchSize, 10_000));
+            ResultSet rs = statement.executeQuery();
+            ColumnBatch.Collector collector = new ColumnBatch.Collector(rs.getMetaData(), batchSize);
+            int count = 0;
+            while (rs.next()) {
+                collector.add(rs);
+                count++;
+                if (collector.size() == batchSize)
+                    consumer.accept(collector.build());
+            }
+            if (collector.size() > 0)
+                consumer.accept(collector.build());
+            return count;
+        });
+    }
+
+    /**
+     * Prepares a query for repeated execution. The query is parsed once, when this method is called, so that
+     * frequently executed queries skip the parsing step, and even the lookup of the parsed query in the cache.
+     * <p>
+     * Queries may use positional ({@code ?}) or named ({@code :name}) parameters. Named parameters are bound from
+     * a single {@link Map} or bean parameter, by key or by property name respectively.
+     *
+     * @param <T>       the type of the results.
+     * @param baseClass the base class of the results of read operations.
+     * @param query     the query to be prepared.
+     * @return the prepared query.
+     */
+    public <T> PreparedQuery<T> prepare(Class<T> baseClass, String query) {
+        requireNonNull(baseClass, "Base class cannot be null");
+        requireNonNull(query, "Query cannot be null");
+        return new PreparedQuery<>(this, baseClass, SqlTemplate.compile(query));
+    }
+
     <T> void forcePopulate(T entity) {
         EntityData<T> info = new EntityData<>(entity, registry);
         if (info.status == EntityData.NO_ID_FIELDS)
@@ -360,8 +1044,8 @@ public class StormifyManager {
         else if (info.status == NULL_ID_FIELDS)
             return;
         Object[] params = info.idValues.toArray();
-        String query = "SELECT * FROM " + info.table + " WHERE " + listOfIds(info.idFields);
-        performQuery(query, params, false, statement -> {
+        String query = "SELECT " + info.tableInfo.selectFieldNames.get() + " FROM " + info.table + " WHERE " + listOfIds(info.idFields);
+        performQuery(info.table, query, params, info.tableInfo.idBinders.get(), false, statement -> {
             ResultSet rs = statement.executeQuery();
             if (rs.next())
                 return forcePopulate(entity, rs);
@@ -371,6 +1055,26 @@ public class StormifyManager {
         });
     }
 
+    <T> void forcePopulate(T entity, String group) {
+        EntityData<T> info = new EntityData<>(entity, registry);
+        if (info.status == EntityData.NO_ID_FIELDS)
+            throw new QueryException("No primary key found when populating object " + info.itemClass);
+        else if (info.status == NULL_ID_FIELDS)
+            return;
+        Object[] params = info.idValues.toArray();
+        String query = "SELECT " + info.tableInfo.getGroupFieldNames(group) + " FROM " + info.table + " WHERE " + listOfIds(info.idFields);
+        performQuery(info.table, query, params, info.tableInfo.idBinders.get(), false, statement -> {
+            ResultSet rs = statement.executeQuery();
+            if (rs.next())
+                return rowMapper(entity.getClass(), rs).populate(entity, rs);
+            else
+                throw new QueryException("No data found for " + info.table + " with id" + (params.length == 1 ? "" : "s") + " "
+                        + (info.idFields.size() == 1 ? params[0] : Arrays.toString(params)));
+        });
+        if (entity instanceof AutoTable)
+            ((AutoTable) entity).markGroupLoaded(group);
+    }
+
     /**
      * Populates the entity with the data from the database.
      *
@@ -387,6 +1091,25 @@ public class StormifyManager {
         return entity;
     }
 
+    /**
+     * Populates the fields of a lazy group of the entity with the data from the database. See
+     * {@link DbField#lazyGroup()}.
+     *
+     * @param entity the entity to be populated.
+     * @param group  the name of the lazy group.
+     * @param <T>    the type of the entity.
+     * @return the populated entity. This is the same entity that was passed as an argument.
+     */
+    public <T> T populate(T entity, String group) {
+        requireNonNull(entity, "Entity cannot be null");
+        requireNonNull(group, "Group cannot be null");
+        if (entity instanceof AutoTable)
+            ((AutoTable) entity).autoPopulate(group);
+        else
+            forcePopulate(entity, group);
+        return entity;
+    }
+
     /**
      * Returns the SQL dialect used by the controller. See {@link SqlDialect}.
      *
@@ -411,6 +1134,10 @@ public class StormifyManager {
 
     /**
      * Creates a new entity in the database.
+     * <p>
+     * Primary keys without a value are taken from their sequence, or are retrieved as generated keys. Such keys
+     * should have a setter; for immutable classes, like records, the key should be provided before the entity is
+     * created, otherwise an exception is thrown.
      *
      * @param createdItem the entity to be created.
      * @param <T>         the type of the entity.
@@ -421,43 +1148,156 @@ public class StormifyManager {
         EntityData<T> info = new EntityData<>(createdItem, registry);
         if (info.status == NULL_ID_FIELDS)
             for (int i = 0; i < info.idFields.size(); i++)
-                if (info.idValues.get(i) == null && info.idFields.get(i).getSequence() != null)
-                    info.idFields.get(i).setValue(createdItem, getNextSequence(info.idFields.get(i).getSequence()), registry);
+                if (info.idValues.get(i) == null)
+                    assignKey(info.idFields.get(i), createdItem);
         String fieldNames = info.tableInfo.createFieldNames.get();
         String placeholders = info.tableInfo.createPlaceholders.get();
         Object[] params = mapToArray(info.tableInfo.getFields(FieldContext.CREATE), it -> it.getValue(createdItem), null);
         String query = "INSERT INTO " + info.table + " (" + fieldNames + ") " + "VALUES (" + placeholders + ")";
         boolean supportsGeneratedKeys = getSqlDialect().generatedKeyRetrieval != GeneratedKeyRetrieval.NONE;
-        performQuery(query, params, supportsGeneratedKeys, statement -> {
+        performQuery(info.table, query, params, info.tableInfo.createBinders.get(), supportsGeneratedKeys, statement -> {
             int affectedRows = statement.executeUpdate();
             if (supportsGeneratedKeys && affectedRows > 0) try (ResultSet rs = statement.getGeneratedKeys()) {
-                if (rs.next()) {
-                    if (getSqlDialect().generatedKeyRetrieval == GeneratedKeyRetrieval.BY_INDEX)
-                        info.tableInfo.getPrimaryKey().setValue(createdItem, rs.getObject(1), registry);
-                    else {
-                        ResultSetMetaData metaData = rs.getMetaData();
-                        int columnCount = metaData.getColumnCount();
-                        for (int i = 1; i <= columnCount; i++) {
-                            String columnName = metaData.getColumnName(i);
-                            for (FieldInfo fieldInfo : info.tableInfo.getDbField(columnName))
-                                fieldInfo.setValue(createdItem, rs.getObject(columnName), registry);
-                        }
-                    }
-                }
+                if (rs.next())
+                    setGeneratedKeys(rs, createdItem, info.tableInfo);
             }
             return affectedRows;
         });
         return createdItem;
     }
 
+    /**
+     * Assign a missing primary key from its sequence, if it has one. Keys without a setter can receive neither a
+     * sequence value nor a generated key, so the entity is rejected before anything is fetched or inserted.
+     *
+     * @return true if the key should be generated by the database.
+     */
+    private boolean assignKey(FieldInfo idField, Object item) {
+        if (!idField.isWritable())
+            throw new QueryException("Primary key " + idField.getName() + " of immutable " + item.getClass().getName()
+                    + " has no value and can not be assigned; provide the key before creating the object");
+        if (idField.getSequence() == null)
+            return true;
+        idField.setValue(item, getNextSequence(idField.getSequence()), registry);
+        return false;
+    }
+
+    private void setGeneratedKeys(ResultSet rs, Object createdItem, TableInfo tableInfo) throws SQLException {
+        if (getSqlDialect().generatedKeyRetrieval == GeneratedKeyRetrieval.BY_INDEX)
+            tableInfo.getPrimaryKey().setValue(createdItem, rs.getObject(1), registry);
+        else {
+            ResultSetMetaData metaData = rs.getMetaData();
+            int columnCount = metaData.getColumnCount();
+            for (int i = 1; i <= columnCount; i++) {
+                String columnName = metaData.getColumnName(i);
+                for (FieldInfo fieldInfo : tableInfo.getDbField(columnName))
+                    fieldInfo.setValue(createdItem, rs.getObject(columnName), registry);
+            }
+        }
+    }
+
+    /**
+     * Creates a graph of new entities in the database, with one transaction. Starting from the given root entity,
+     * the graph is walked through the reference fields of new entities, and through the details registered with
+     * {@link #registerDetails(Class, Function)}. Entities with a primary key value are considered to already exist,
+     * and they are not written; entities without a primary key value are created. The details of existing entities
+     * are not walked, except for the details of the root entity, so that new details can be added to an existing
+     * parent.
+     * <p>
+     * The new entities are created in the order of their foreign key dependencies, so that referenced entities are
+     * created first, and the entities of the same table are created with one batch, instead of one round trip per
+     * entity. Primary keys are assigned from sequences, or are retrieved as generated keys. For databases that can
+     * not return the generated keys of a batch, entities that need them are created one by one.
+     * <p>
+     * New details that do not reference their parent yet get the parent assigned, if only one of their fields has
+     * the type of the parent.
+     *
+     * @param root the root entity of the graph.
+     * @param <T>  the type of the root entity.
+     * @return the root entity.
+     */
+    public <T> T persistGraph(T root) {
+        requireNonNull(root, "Root entity cannot be null");
+        transaction(() -> {
+            for (List<Object> batch : new EntityGraph(registry, this::detailsOf).batches(root))
+                createBatch(batch);
+        });
+        return root;
+    }
+
+    private List<Iterable<?>> detailsOf(Object parent) {
+        List<Iterable<?>> result = new ArrayList<>();
+        for (Map.Entry<Class<?>, List<Function<Object, ? extends Iterable<?>>>> entry : detailAccessors.entrySet())
+            if (entry.getKey().isInstance(parent))
+                for (Function<Object, ? extends Iterable<?>> accessor : entry.getValue())
+                    result.add(accessor.apply(parent));
+        return result;
+    }
+
+    /**
+     * Creates new entities of the same class, with one batch.
+     */
+    private void createBatch(List<Object> items) {
+        if (items.size() == 1) {
+            create(items.get(0));
+            return;
+        }
+        TableInfo tableInfo = registry.getTableInfo(items.get(0).getClass());
+        List<FieldInfo> idFields = tableInfo.getPrimaryKeys();
+        boolean needsKeys = false;
+        for (Object item : items)
+            for (FieldInfo idField : idFields)
+                if (idField.getValue(item) == null)
+                    needsKeys |= assignKey(idField, item);
+        SqlDialect dialect = getSqlDialect();
+        boolean supportsGeneratedKeys = needsKeys && dialect.generatedKeyRetrieval != GeneratedKeyRetrieval.NONE;
+        if (supportsGeneratedKeys && !dialect.hasBatchGeneratedKeys()) {
+            for (Object item : items)
+                create(item);
+            return;
+        }
+        List<FieldInfo> fields = tableInfo.getFields(FieldContext.CREATE);
+        List<Object[]> rows = map(items, item -> mapToArray(fields, it -> it.getValue(item), null));
+        String query = "INSERT INTO " + tableInfo.getTableName() + " (" + tableInfo.createFieldNames.get() + ") " + "VALUES (" + tableInfo.createPlaceholders.get() + ")";
+        performBatch(tableInfo.getTableName(), query, rows, tableInfo.createBinders.get(), supportsGeneratedKeys, statement -> {
+            int affectedRows = 0;
+            for (int count : statement.executeBatch())
+                affectedRows += count == Statement.SUCCESS_NO_INFO ? 1 : count;
+            if (supportsGeneratedKeys) try (ResultSet rs = statement.getGeneratedKeys()) {
+                for (int i = 0; i < items.size() && rs.next(); i++)
+                    setGeneratedKeys(rs, items.get(i), tableInfo);
+            }
+            return affectedRows;
+        });
+    }
+
     /**
      * Updates an entity in the database.
+     * <p>
+     * Fields of lazy groups (see {@link DbField#lazyGroup()}) are only written back for entities extending
+     * {@link AutoTable}, and only when their group has been populated. For other entities, it is not possible to
+     * know whether a lazy field was populated, and thus lazy fields are never written; use
+     * {@link #update(Object, String)} to write them explicitly. When there is no field to write, no statement is
+     * executed.
      *
      * @param updatedItem the entity to be updated.
      * @param <T>         the type of the entity.
      * @return the updated entity.
      */
     public <T> T update(T updatedItem) {
+        return update(updatedItem, null);
+    }
+
+    /**
+     * Updates an entity in the database, together with the fields of the given lazy group, whether the group has
+     * been populated or not. See {@link #update(Object)} and {@link DbField#lazyGroup()}.
+     *
+     * @param updatedItem the entity to be updated.
+     * @param group       the name of the lazy group whose fields should also be written.
+     * @param <T>         the type of the entity.
+     * @return the updated entity.
+     */
+    public <T> T update(T updatedItem, String group) {
         requireNonNull(updatedItem, "Updated item cannot be null");
         EntityData<T> info = new EntityData<>(updatedItem, registry);
         if (info.status == NO_ID_FIELDS)
@@ -465,12 +1305,39 @@ public class StormifyManager {
         else if (info.status == NULL_ID_FIELDS)
             throw new QueryException("Primary key value is null when updating object " + info.itemClass);
         String fields = info.tableInfo.updateFieldNames.get();
-        Object[] params = mapToArray(info.tableInfo.getFields(FieldContext.UPDATE), it -> it.getValue(updatedItem), info.idValues);
+        List<FieldInfo> updateFields = info.tableInfo.getFields(FieldContext.UPDATE);
+        ParamBinder[] binders = info.tableInfo.updateBinders.get();
+        if (info.tableInfo.hasLazyFields() || info.tableInfo.hasLazyLobs()
+                || updatedItem instanceof AutoTable && ((AutoTable) updatedItem).isPartiallyLoaded()) {
+            updateFields = filter(updateFields, it -> isWritten(it, updatedItem, group));
+            fields = String.join(", ", map(updateFields, it -> it.getDbName() + " = ?"));
+            binders = TableInfo.binders(updateFields, info.idFields);
+        }
+        if (updateFields.isEmpty())
+            return updatedItem;
+        Object[] params = mapToArray(updateFields, it -> it.getValue(updatedItem), info.idValues);
         String query = "UPDATE " + info.table + " SET " + fields + " WHERE " + listOfIds(info.idFields);
-        performQuery(query, params, false, PreparedStatement::executeUpdate);
+        performQuery(info.table, query, params, binders, false, PreparedStatement::executeUpdate);
         return updatedItem;
     }
 
+    /**
+     * Check if a field should be written when an entity is updated. Fields of lazy groups that have not been loaded,
+     * and fields that were not fetched by a projection, are not written back, since their values are not known.
+     * Neither are the large objects loaded with the entity, since writing them back would only transfer their
+     * unchanged content.
+     */
+    private static boolean isWritten(FieldInfo field, Object item, String group) {
+        AutoTable table = item instanceof AutoTable ? (AutoTable) item : null;
+        String lazyGroup = field.getLazyGroup();
+        if (lazyGroup != null) {
+            if (!lazyGroup.equals(group) && (table == null || !table.isGroupLoaded(lazyGroup)))
+                return false;
+        } else if (table != null && !table.isColumnLoaded(field.getDbName()))
+            return false;
+        return !LazyLob.isUnmodified(field.getValue(item), item, field.getDbName());
+    }
+
     /**
      * Deletes an entity from the database.
      *
@@ -485,36 +1352,132 @@ public class StormifyManager {
             throw new QueryException("Primary key value is null when deleting object " + info.itemClass);
         Object[] params = info.idValues.toArray();
         String query = "DELETE FROM " + info.table + " WHERE " + listOfIds(info.idFields);
-        performQuery(query, params, false, PreparedStatement::executeUpdate);
+        performQuery(info.table, query, params, info.tableInfo.idBinders.get(), false, PreparedStatement::executeUpdate);
+    }
+
+    /**
+     * Deletes the entities of the given class that match a condition, in chunks of at most {@code chunkSize} rows.
+     * See {@link #deleteWhereChunked(Class, int, long, IntConsumer, String, Object...)}.
+     *
+     * @param clazz     the class of the entities.
+     * @param chunkSize the maximum number of rows deleted by every statement.
+     * @param condition the condition of the deleted rows, without the WHERE keyword. The condition can be empty or
+     *                  null, to delete all rows.
+     * @param arguments the arguments to be used in the condition.
+     * @param <T>       the type of the entities.
+     * @return the total number of deleted rows.
+     */
+    public <T> int deleteWhereChunked(Class<T> clazz, int chunkSize, String condition, Object... arguments) {
+        return deleteWhereChunked(clazz, chunkSize, 0, null, condition, arguments);
+    }
+
+    /**
+     * Deletes the entities of the given class that match a condition, in chunks of at most {@code chunkSize} rows.
+     * Every chunk is a separate statement that is committed on its own, so that locks are held only for a short time
+     * and other transactions can proceed between the chunks. Chunks are deleted until a chunk affects fewer rows
+     * than the chunk size.
+     * <p>
+     * The statements are formed according to the SQL dialect, e.g. with {@code LIMIT} for MySQL, with a {@code ctid}
+     * subquery for PostgreSQL and with {@code ROWNUM} for Oracle. Since every chunk is committed separately, this
+     * method can not be called inside a transaction.
+     *
+     * @param clazz       the class of the entities.
+     * @param chunkSize   the maximum number of rows deleted by every statement.
+     * @param pauseMillis the pause between two chunks, in milliseconds, or 0 for no pause.
+     * @param progress    the listener of the progress, or null; it receives the total number of deleted rows after
+     *                    every chunk.
+     * @param condition   the condition of the deleted rows, without the WHERE keyword. The condition can be empty or
+     *                    null, to delete all rows.
+     * @param arguments   the arguments to be used in the condition.
+     * @param <T>         the type of the entities.
+     * @return the total number of deleted rows.
+     */
+    public <T> int deleteWhereChunked(Class<T> clazz, int chunkSize, long pauseMillis, IntConsumer progress, String condition, Object... arguments) {
+        return mutateChunked(clazz, null, chunkSize, pauseMillis, progress, condition, arguments);
+    }
+
+    /**
+     * Updates the entities of the given class that match a condition, in chunks of at most {@code chunkSize} rows.
+     * See {@link #updateWhereChunked(Class, int, long, IntConsumer, String, String, Object...)}.
+     *
+     * @param clazz     the class of the entities.
+     * @param chunkSize the maximum number of rows updated by every statement.
+     * @param setClause the assignments of the update, without the SET keyword.
+     * @param condition the condition of the updated rows, without the WHERE keyword.
+     * @param arguments the arguments to be used in the assignments and the condition, in this order.
+     * @param <T>       the type of the entities.
+     * @return the total number of updated rows.
+     */
+    public <T> int updateWhereChunked(Class<T> clazz, int chunkSize, String setClause, String condition, Object... arguments) {
+        return updateWhereChunked(clazz, chunkSize, 0, null, setClause, condition, arguments);
+    }
+
+    /**
+     * Updates the entities of the given class that match a condition, in chunks of at most {@code chunkSize} rows.
+     * Every chunk is a separate statement that is committed on its own, as with
+     * {@link #deleteWhereChunked(Class, int, long, IntConsumer, String, Object...)}.
+     * <p>
+     * The update should change the rows so that they no longer match the condition, e.g.
+     * {@code "archived = 1", "archived = 0 AND created < ?"}; otherwise the same rows are updated again and again.
+     *
+     * @param clazz       the class of the entities.
+     * @param chunkSize   the maximum number of rows updated by every statement.
+     * @param pauseMillis the pause between two chunks, in milliseconds, or 0 for no pause.
+     * @param progress    the listener of the progress, or null; it receives the total number of updated rows after
+     *                    every chunk.
+     * @param setClause   the assignments of the update, without the SET keyword.
+     * @param condition   the condition of the updated rows, without the WHERE keyword.
+     * @param arguments   the arguments to be used in the assignments and the condition, in this order.
+     * @param <T>         the type of the entities.
+     * @return the total number of updated rows.
+     */
+    public <T> int updateWhereChunked(Class<T> clazz, int chunkSize, long pauseMillis, IntConsumer progress, String setClause, String condition, Object... arguments) {
+        requireNonNull(setClause, "Set clause cannot be null");
+        return mutateChunked(clazz, setClause, chunkSize, pauseMillis, progress, condition, arguments);
+    }
+
+    private int mutateChunked(Class<?> clazz, String setClause, int chunkSize, long pauseMillis, IntConsumer progress, String condition, Object[] arguments) {
+        requireNonNull(clazz, "Class cannot be null");
+        if (chunkSize < 1)
+            throw new QueryException("Chunk size should be at least 1, found " + chunkSize);
+        if (pauseMillis < 0)
+            throw new QueryException("Pause between chunks should not be negative, found " + pauseMillis);
+        if (TransactionContext.isActive())
+            throw new QueryException("Chunked mutations commit every chunk separately, and can not be executed inside a transaction");
+        TableInfo info = getTableInfo(clazz);
+        List<FieldInfo> primaryKeys = info.getPrimaryKeys();
+        SqlTemplate template = SqlTemplate.compile(getSqlDialect().chunkFormatter.apply(info.getTableName(), setClause,
+                condition == null ? "" : condition, primaryKeys.size() == 1 ? primaryKeys.get(0).getDbName() : null, chunkSize));
+        int total = 0;
+        while (true) {
+            int affected = performQuery(info.getTableName(), template, arguments, false, PreparedStatement::executeUpdate);
+            total += affected;
+            if (progress != null)
+                progress.accept(total);
+            if (affected < chunkSize)
+                return total;
+            if (pauseMillis > 0)
+                try {
+                    Thread.sleep(pauseMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new QueryException("Chunked mutation interrupted after " + total + " rows", e);
+                }
+        }
     }
 
     <T> T forcePopulate(T item, ResultSet resultSet) throws SQLException {
-        TableInfo tableInfo = registry.getTableInfo(item.getClass());
-        ResultSetMetaData metaData = resultSet.getMetaData();
-        int columnCount = metaData.getColumnCount();
+        return forcePopulate(item, resultSet, rowMapper(item.getClass(), resultSet));
+    }
+
+    <T> T forcePopulate(T item, ResultSet resultSet, RowMapper mapper) throws SQLException {
         if (item instanceof AutoTable)
             ((AutoTable) item).markPopulated();
-        for (int i = 1; i <= columnCount; i++) {
-            String columnName = metaData.getColumnName(i);
-            Collection<FieldInfo> fields = tableInfo.getDbField(columnName);
-            if (fields.isEmpty()) {
-                if (strictMode)
-                    throw new QueryException("Field " + columnName + " not found in " + tableInfo.getTableName());
-                else
-                    logger.warn("Field " + columnName + " not found in " + tableInfo.getTableName());
-                continue;
-            }
-            Object value = resultSet.getObject(columnName);
-            if (value != null) {
-                if (Clob.class.isAssignableFrom(value.getClass()))
-                    value = ((Clob) value).getSubString(1, (int) ((Clob) value).length());
-                if (Blob.class.isAssignableFrom(value.getClass()))
-                    value = ((Blob) value).getBytes(1, (int) ((Blob) value).length());
-            }
-            for (FieldInfo field : fields)
-                field.setValue(item, value, registry);
-        }
-        return item;
+        return mapper.populate(item, resultSet);
+    }
+
+    RowMapper rowMapper(Class<?> itemClass, ResultSet resultSet) throws SQLException {
+        return new RowMapper(registry.getTableInfo(itemClass), resultSet.getMetaData(), registry, strictMode, diagnosticsLogger);
     }
 
     /**
@@ -601,7 +1564,7 @@ public class StormifyManager {
                     " in class " + detailsClass.getSimpleName());
         Object parentPrimaryKeyValue = parentPrimaryKeys.iterator().next().getValue(parent);
         List<D> details = stormify().read(
-                detailsClass, "SELECT * FROM " + detailInfo.getTableName() + " WHERE " + field.getDbName() + " = ?",
+                detailsClass, "SELECT " + detailInfo.selectFieldNames.get() + " FROM " + detailInfo.getTableName() + " WHERE " + field.getDbName() + " = ?",
                 parentPrimaryKeyValue
         );
         for (D detail : details)
@@ -609,6 +1572,63 @@ public class StormifyManager {
         return details;
     }
 
+    /**
+     * Loads a hierarchy of entities of a self-referencing table, like categories or organization charts. The
+     * hierarchy is loaded with one recursive query, instead of one query per node; for databases without
+     * hierarchical queries, one query per level of the hierarchy is used.
+     * <p>
+     * The parent property can be a reference to the same class, or the primary key of the parent. When it is a
+     * reference, it is set to the actual parent entity of the hierarchy.
+     *
+     * @param clazz          the class of the entities.
+     * @param rootId         the primary key of the root entity.
+     * @param parentProperty the name of the property with the parent of an entity. If null or empty, the only
+     *                       property with the type of the class is used.
+     * @param maxDepth       the maximum depth of the hierarchy, where the root entity has depth 0.
+     * @param <T>            the type of the entities.
+     * @return the root node of the hierarchy, or null if the root entity is not found.
+     */
+    public <T> TreeNode<T> loadTree(Class<T> clazz, Object rootId, String parentProperty, int maxDepth) {
+        requireNonNull(clazz, "Class cannot be null");
+        requireNonNull(rootId, "Root ID cannot be null");
+        if (maxDepth < 0)
+            throw new QueryException("Maximum depth should not be negative, found " + maxDepth);
+        TableInfo info = getTableInfo(clazz);
+        FieldInfo primaryKey = info.getPrimaryKey();
+        if (parentProperty == null || parentProperty.isEmpty())
+            parentProperty = findFieldByType(info, clazz);
+        FieldInfo parentField = info.getField(parentProperty);
+        if (parentField == null)
+            throw new QueryException("Field " + parentProperty + " not found in class " + clazz.getSimpleName());
+        if (parentField.isReference() && !parentField.getType().equals(clazz))
+            throw new QueryException("Field " + parentProperty + " is not of type " + clazz.getSimpleName());
+
+        String columns = info.selectFieldNames.get();
+        SqlDialect.TreeFormatter formatter = getSqlDialect().treeFormatter;
+        List<T> entities;
+        if (formatter != null)
+            entities = read(clazz, formatter.apply(columns, info.getTableName(), primaryKey.getDbName(), parentField.getDbName()), rootId, maxDepth);
+        else {
+            entities = read(clazz, "SELECT " + columns + " FROM " + info.getTableName() + " WHERE " + primaryKey.getDbName() + " = ?", rootId);
+            List<T> level = entities;
+            Set<Object> visited = new HashSet<>();
+            for (int depth = 0; depth < maxDepth && !level.isEmpty(); depth++) {
+                List<Object> ids = new ArrayList<>(level.size());
+                for (T entity : level) {
+                    Object id = primaryKey.getValue(entity);
+                    if (visited.add(id))
+                        ids.add(id);
+                }
+                if (ids.isEmpty())
+                    break;
+                level = read(clazz, "SELECT " + columns + " FROM " + info.getTableName() + " WHERE " + parentField.getDbName() + " IN ?", ids);
+                level.removeIf(entity -> visited.contains(primaryKey.getValue(entity)));
+                entities.addAll(level);
+            }
+        }
+        return TreeNode.link(entities, primaryKey, parentField, rootId, registry);
+    }
+
     /**
      * Finds all the entities of the given class, while applying the given where clause.
      *
@@ -620,8 +1640,37 @@ public class StormifyManager {
      */
     public <T> List<T> findAll(Class<T> clazz, String whereClause, Object... arguments) {
         requireNonNull(clazz, "Class cannot be null");
-        return read(clazz, "SELECT * FROM " + getTableInfo(clazz).getTableName()
+        TableInfo info = getTableInfo(clazz);
+        return read(clazz, "SELECT " + info.selectFieldNames.get() + " FROM " + info.getTableName()
+                + (whereClause == null || whereClause.isEmpty() ? "" : " " + whereClause), arguments);
+    }
+
+    /**
+     * Finds all the entities of the given class, while applying the given where clause. Only the given fields, and
+     * the primary keys, are fetched from the database; all other fields are left to their default values.
+     * <p>
+     * The returned entities are partially populated. When entities extending {@link AutoTable} are updated, only the
+     * fetched fields are written back. Other entities do not keep track of the fetched fields, and thus they should
+     * not be used to update the database.
+     *
+     * @param clazz       the class of the entities.
+     * @param fields      the fields to fetch, either by their Java name or by their database name.
+     * @param whereClause the where clause to be applied. The clause can be empty or null. It should contain the WHERE keyword.
+     * @param arguments   the arguments to be used in the where clause, if the where clause exists.
+     * @param <T>         the type of the entities.
+     * @return the list of entities.
+     */
+    public <T> List<T> findAll(Class<T> clazz, Collection<String> fields, String whereClause, Object... arguments) {
+        requireNonNull(clazz, "Class cannot be null");
+        requireNonNull(fields, "Fields cannot be null");
+        TableInfo info = getTableInfo(clazz);
+        Set<String> columns = info.getSelectedColumns(fields);
+        List<T> result = read(clazz, "SELECT " + String.join(", ", columns) + " FROM " + info.getTableName()
                 + (whereClause == null || whereClause.isEmpty() ? "" : " " + whereClause), arguments);
+        if (AutoTable.class.isAssignableFrom(clazz))
+            for (T item : result)
+                ((AutoTable) item).markColumnsLoaded(columns);
+        return result;
     }
 
     /**
@@ -635,7 +1684,7 @@ public class StormifyManager {
     public <T> T findById(Class<T> clazz, Object id) {
         requireNonNull(clazz, "Class cannot be null");
         requireNonNull(id, "ID cannot be null");
-        return readOne(clazz, "SELECT * FROM " + getTableInfo(clazz).getTableName() + " WHERE " + getTableInfo(clazz).getPrimaryKey().getDbName() + " = ?", id);
+        return readOne(clazz, "SELECT " + getTableInfo(clazz).selectFieldNames.get() + " FROM " + getTableInfo(clazz).getTableName() + " WHERE " + getTableInfo(clazz).getPrimaryKey().getDbName() + " = ?", id);
     }
 
     /**
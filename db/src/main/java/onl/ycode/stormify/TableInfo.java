@@ -6,6 +6,7 @@ package onl.ycode.stormify;
 import onl.ycode.stormify.FieldInfo.FieldContext;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static onl.ycode.stormify.StormifyManager.stormify;
 import static onl.ycode.stormify.Utils.*;
@@ -24,9 +25,17 @@ public class TableInfo {
     private final LazyProperty<Map<String, FieldInfo>> objFields;
     private final LazyProperty<List<FieldInfo>> createFields;
     private final LazyProperty<List<FieldInfo>> updateFields;
+    private final LazyProperty<Map<String, List<FieldInfo>>> lazyGroups;
+    private final LazyProperty<Boolean> lazyLobs;
+    private final Map<String, Set<String>> projections = new ConcurrentHashMap<>();
     final LazyProperty<String> createFieldNames;
     final LazyProperty<String> updateFieldNames;
     final LazyProperty<String> createPlaceholders;
+    final LazyProperty<String> selectFieldNames;
+    final LazyProperty<ParamBinder[]> createBinders;
+    final LazyProperty<ParamBinder[]> updateBinders;
+    final LazyProperty<ParamBinder[]> idBinders;
+    final LazyProperty<ConstructorPlan> constructorPlan;
 
     TableInfo(Class<?> classType, String tableName, Collection<FieldInfo> fields) {
         this.classType = classType;
@@ -50,6 +59,27 @@ public class TableInfo {
         this.createFieldNames = new LazyProperty<>(() -> String.join(", ", map(createFields.get(), FieldInfo::getDbName)));
         this.updateFieldNames = new LazyProperty<>(() -> String.join(", ", map(updateFields.get(), fieldInfo -> fieldInfo.getDbName() + " = ?")));
         this.createPlaceholders = new LazyProperty<>(() -> nCopies("?", ", ", updateFields.get().size()));
+        this.createBinders = new LazyProperty<>(() -> binders(createFields.get(), null));
+        this.updateBinders = new LazyProperty<>(() -> binders(updateFields.get(), primaryKeys));
+        this.idBinders = new LazyProperty<>(() -> binders(primaryKeys, null));
+        this.constructorPlan = new LazyProperty<>(() -> ConstructorPlan.of(classType));
+        this.lazyGroups = new LazyProperty<>(() -> {
+            Map<String, List<FieldInfo>> result = new LinkedHashMap<>();
+            for (FieldInfo field : fields)
+                if (field.getLazyGroup() != null)
+                    result.computeIfAbsent(field.getLazyGroup(), k -> new ArrayList<>()).add(field);
+            return result;
+        });
+        this.lazyLobs = new LazyProperty<>(() -> !filter(fields, it -> it.getType() == LazyLob.class).isEmpty());
+        this.selectFieldNames = new LazyProperty<>(() -> {
+            if (lazyGroups.get().isEmpty())
+                return "*";
+            Collection<String> columns = new LinkedHashSet<>();
+            for (FieldInfo field : fields)
+                if (field.getLazyGroup() == null)
+                    columns.add(field.getDbName());
+            return String.join(", ", columns);
+        });
     }
 
     /**
@@ -133,6 +163,78 @@ public class TableInfo {
         return objFields.get().get(name);
     }
 
+    /**
+     * Get the names of the lazy groups of the table. See {@link DbField#lazyGroup()}.
+     *
+     * @return The names of the lazy groups.
+     */
+    public Set<String> getLazyGroups() {
+        return lazyGroups.get().keySet();
+    }
+
+    boolean hasLazyFields() {
+        return !lazyGroups.get().isEmpty();
+    }
+
+    boolean hasLazyLobs() {
+        return lazyLobs.get();
+    }
+
+    /**
+     * Get the columns of a lazy group, together with the primary keys, as used in a SELECT statement.
+     */
+    String getGroupFieldNames(String group) {
+        List<FieldInfo> groupFields = lazyGroups.get().get(group);
+        if (groupFields == null)
+            throw new QueryException("Lazy group '" + group + "' not found in table " + tableName);
+        return String.join(", ", projections.computeIfAbsent("\u0000" + group, k -> projection(groupFields)));
+    }
+
+    /**
+     * Get the columns of the given fields, together with the primary keys, in the order of a SELECT statement. The
+     * fields can be given either by their Java name, or by their database name.
+     */
+    Set<String> getSelectedColumns(Collection<String> names) {
+        String key = String.join(",", names);
+        Set<String> result = projections.get(key);
+        if (result == null) {
+            List<FieldInfo> selected = new ArrayList<>();
+            for (String name : names) {
+                FieldInfo field = getField(name);
+                if (field != null)
+                    selected.add(field);
+                else {
+                    Collection<FieldInfo> dbField = getDbField(name);
+                    if (dbField.isEmpty())
+                        throw new QueryException("Field " + name + " not found in table " + tableName);
+                    selected.add(dbField.iterator().next());
+                }
+            }
+            result = projection(selected);
+            projections.putIfAbsent(key, result);
+        }
+        return result;
+    }
+
+    static ParamBinder[] binders(List<FieldInfo> fields, List<FieldInfo> additional) {
+        ParamBinder[] result = new ParamBinder[fields.size() + (additional == null ? 0 : additional.size())];
+        for (int i = 0; i < fields.size(); i++)
+            result[i] = fields.get(i).getBinder();
+        if (additional != null)
+            for (int i = 0; i < additional.size(); i++)
+                result[fields.size() + i] = additional.get(i).getBinder();
+        return result;
+    }
+
+    private Set<String> projection(Collection<FieldInfo> selected) {
+        Set<String> columns = new LinkedHashSet<>();
+        for (FieldInfo field : primaryKeys)
+            columns.add(field.getDbName());
+        for (FieldInfo field : selected)
+            columns.add(field.getDbName());
+        return Collections.unmodifiableSet(columns);
+    }
+
     @Override
     public String toString() {
         return tableName + "{" +
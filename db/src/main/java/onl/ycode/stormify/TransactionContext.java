@@ -3,6 +3,9 @@
 
 package onl.ycode.stormify;
 
+import onl.ycode.stormify.ExecutionMonitor.Span;
+import onl.ycode.stormify.ExecutionMonitor.TransactionAction;
+
 import java.io.Closeable;
 import java.sql.Connection;
 import java.sql.SQLException;
@@ -20,66 +23,104 @@ class TransactionContext implements Closeable {
 
     private final List<Savepoint> savepoints = new ArrayList<>();
     private final Connection connection;
+    private final ConnectionTracker.Lease lease;
+    private boolean profiled;
 
     static TransactionContext begin() throws SQLException {
         TransactionContext mgr = threadLocal.get();
         if (mgr == null) {
             // New transaction
-            mgr = new TransactionContext();
+            Span span = stormify().getExecutionMonitor().transactionAction(TransactionAction.BEGIN, 0);
+            try {
+                mgr = new TransactionContext();
+            } catch (RuntimeException e) {
+                finish(span, e);
+                throw e;
+            }
             threadLocal.set(mgr);
+            mgr.profiled = stormify().openQueryProfile();
             stormify().dbLog("Start transaction", null);
+            finish(span, null);
             return mgr;
         }
         // Nested transaction
+        Span span = stormify().getExecutionMonitor().transactionAction(TransactionAction.BEGIN, mgr.savepoints.size() + 1);
         String sp = "stormify_" + System.currentTimeMillis() + "_" + counter.incrementAndGet();
-        mgr.savepoints.add(mgr.connection.setSavepoint(sp));
+        try {
+            mgr.savepoints.add(mgr.connection.setSavepoint(sp));
+        } catch (SQLException e) {
+            finish(span, e);
+            throw e;
+        }
         stormify().dbLog("Start inner transaction #" + mgr.savepoints.size(), null);
+        finish(span, null);
         return mgr;
     }
 
     TransactionContext() {
+        connection = getOrThrow(() -> acquireConnection(true), () -> "No connection found");
         try {
-            connection = getOrThrow(() -> stormify().getDataSource().getConnection(), () -> "No connection found");
             connection.setAutoCommit(false);
         } catch (SQLException e) {
+            try {
+                connection.close();
+            } catch (SQLException closeError) {
+                e.addSuppressed(closeError);
+            }
             throw new QueryException("Unable to initialize connection", e);
         }
+        // The connection is tracked only when it is ready, so that a failed initialization is not reported as held
+        lease = stormify().getConnectionTracker().acquired(true);
     }
 
     void commit() {
-        if (!savepoints.isEmpty()) {
-            stormify().dbLog("Commit inner transaction #" + savepoints.size(), null);
-            try {
-                connection.releaseSavepoint(savepoints.get(savepoints.size() - 1));
-            } catch (SQLException e) {
-                throw new QueryException("Unable to release savepoint", e);
-            }
-        } else {
-            stormify().dbLog("Commit transaction", null);
-            try {
-                connection.commit();
-            } catch (SQLException e) {
-                throw new QueryException("Unable to commit transaction", e);
+        Span span = stormify().getExecutionMonitor().transactionAction(TransactionAction.COMMIT, savepoints.size());
+        try {
+            if (!savepoints.isEmpty()) {
+                stormify().dbLog("Commit inner transaction #" + savepoints.size(), null);
+                try {
+                    connection.releaseSavepoint(savepoints.get(savepoints.size() - 1));
+                } catch (SQLException e) {
+                    throw new QueryException("Unable to release savepoint", e);
+                }
+            } else {
+                stormify().dbLog("Commit transaction", null);
+                try {
+                    connection.commit();
+                } catch (SQLException e) {
+                    throw new QueryException("Unable to commit transaction", e);
+                }
             }
+        } catch (QueryException e) {
+            finish(span, e);
+            throw e;
         }
+        finish(span, null);
     }
 
     void failed() {
-        if (!savepoints.isEmpty()) {
-            stormify().dbLog("Rollback inner transaction #" + savepoints.size(), null);
-            try {
-                connection.rollback(savepoints.get(savepoints.size() - 1));
-            } catch (SQLException e) {
-                throw new QueryException("Unable to rollback to savepoint", e);
-            }
-        } else {
-            stormify().dbLog("Rollback transaction", null);
-            try {
-                connection.rollback();
-            } catch (SQLException e) {
-                throw new QueryException("Unable to rollback transaction", e);
+        Span span = stormify().getExecutionMonitor().transactionAction(TransactionAction.ROLLBACK, savepoints.size());
+        try {
+            if (!savepoints.isEmpty()) {
+                stormify().dbLog("Rollback inner transaction #" + savepoints.size(), null);
+                try {
+                    connection.rollback(savepoints.get(savepoints.size() - 1));
+                } catch (SQLException e) {
+                    throw new QueryException("Unable to rollback to savepoint", e);
+                }
+            } else {
+                stormify().dbLog("Rollback transaction", null);
+                try {
+                    connection.rollback();
+                } catch (SQLException e) {
+                    throw new QueryException("Unable to rollback transaction", e);
+                }
             }
+        } catch (QueryException e) {
+            finish(span, e);
+            throw e;
         }
+        finish(span, null);
     }
 
 
@@ -94,16 +135,41 @@ class TransactionContext implements Closeable {
                 connection.close();
             } catch (SQLException e) {
                 throw new QueryException("Unable to close connection", e);
+            } finally {
+                stormify().getConnectionTracker().released(lease);
+                if (profiled)
+                    QueryProfile.close();
             }
         }
     }
 
+    static boolean isActive() {
+        return threadLocal.get() != null;
+    }
+
     static TransactionalConnection getConnection() throws SQLException {
         TransactionContext mgr = threadLocal.get();
         if (mgr == null)
-            return new TransactionalConnection(stormify().getDataSource().getConnection(), false);
+            return new TransactionalConnection(acquireConnection(false), false, stormify().getConnectionTracker().acquired(false));
         if (mgr.connection == null)
             throw new QueryException("Unable to initialize connection");
-        return new TransactionalConnection(mgr.connection, true);
+        return new TransactionalConnection(mgr.connection, true, null);
+    }
+
+    private static Connection acquireConnection(boolean transactional) throws SQLException {
+        Span span = stormify().getExecutionMonitor().connectionRequested(transactional);
+        try {
+            Connection connection = stormify().getDataSource().getConnection();
+            finish(span, null);
+            return connection;
+        } catch (SQLException | RuntimeException e) {
+            finish(span, e);
+            throw e;
+        }
+    }
+
+    private static void finish(Span span, Throwable error) {
+        if (span != null)
+            span.finish(-1, error);
     }
 }
@@ -6,13 +6,17 @@ package onl.ycode.stormify;
 import java.sql.Connection;
 import java.sql.SQLException;
 
+import static onl.ycode.stormify.StormifyManager.stormify;
+
 class TransactionalConnection implements AutoCloseable {
     private final Connection connection;
     private final boolean inTransaction;
+    private final ConnectionTracker.Lease lease;
 
-    TransactionalConnection(Connection connection, boolean inTransaction) {
+    TransactionalConnection(Connection connection, boolean inTransaction, ConnectionTracker.Lease lease) {
         this.connection = connection;
         this.inTransaction = inTransaction;
+        this.lease = lease;
     }
 
     Connection get() {
@@ -26,6 +30,8 @@ class TransactionalConnection implements AutoCloseable {
                 connection.close();
             } catch (SQLException e) {
                 throw new QueryException("Unable to close connection", e);
+            } finally {
+                stormify().getConnectionTracker().released(lease);
             }
         }
     }
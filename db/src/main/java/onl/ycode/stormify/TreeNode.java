@@ -0,0 +1,144 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.math.BigDecimal;
+import java.util.*;
+
+/**
+ * A node of a hierarchy of entities, as loaded by
+ * {@link StormifyManager#loadTree(Class, Object, String, int)}. Every node holds one entity, together with the nodes
+ * of its parent and its children.
+ *
+ * @param <T> the type of the entities.
+ */
+public final class TreeNode<T> {
+    private final T value;
+    private final List<TreeNode<T>> children = new ArrayList<>();
+    private TreeNode<T> parent;
+    private int depth;
+
+    private TreeNode(T value) {
+        this.value = value;
+    }
+
+    /**
+     * Get the entity of this node.
+     *
+     * @return the entity.
+     */
+    public T getValue() {
+        return value;
+    }
+
+    /**
+     * Get the parent node of this node.
+     *
+     * @return the parent node, or null if this is the root node.
+     */
+    public TreeNode<T> getParent() {
+        return parent;
+    }
+
+    /**
+     * Get the child nodes of this node, in the order of their primary keys.
+     *
+     * @return the child nodes; the list is empty for leaf nodes.
+     */
+    public List<TreeNode<T>> getChildren() {
+        return Collections.unmodifiableList(children);
+    }
+
+    /**
+     * Get the depth of this node.
+     *
+     * @return the depth of this node, where the root node has depth 0.
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Get the entities of this node and all its descendants, in depth-first order.
+     *
+     * @return the list of entities.
+     */
+    public List<T> toList() {
+        List<T> result = new ArrayList<>();
+        Deque<TreeNode<T>> pending = new ArrayDeque<>();
+        pending.push(this);
+        while (!pending.isEmpty()) {
+            TreeNode<T> node = pending.pop();
+            result.add(node.value);
+            for (int i = node.children.size() - 1; i >= 0; i--)
+                pending.push(node.children.get(i));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "TreeNode[" + value + ", " + children.size() + " children]";
+    }
+
+    /**
+     * Link the given entities to a tree.
+     *
+     * @param entities    the entities of the tree, in any order.
+     * @param primaryKey  the primary key of the entities.
+     * @param parentField the field with the parent of an entity, either as a reference or as the parent primary key.
+     * @param rootId      the primary key of the root entity.
+     * @return the root node, or null if the root entity is not found.
+     */
+    static <T> TreeNode<T> link(List<T> entities, FieldInfo primaryKey, FieldInfo parentField, Object rootId, ClassRegistry registry) {
+        Map<Object, TreeNode<T>> nodes = new HashMap<>(entities.size() * 2);
+        for (T entity : entities)
+            nodes.put(key(primaryKey.getValue(entity)), new TreeNode<>(entity));
+        TreeNode<T> root = nodes.get(key(rootId));
+        if (root == null)
+            return null;
+        for (TreeNode<T> node : nodes.values()) {
+            if (node == root)
+                continue;
+            Object parentValue = parentField.getValue(node.value);
+            if (parentValue != null && parentField.isReference())
+                parentValue = primaryKey.getValue(parentValue);
+            TreeNode<T> parent = nodes.get(key(parentValue));
+            if (parent == null)
+                continue;
+            node.parent = parent;
+            parent.children.add(node);
+            // Replace the reference with only the primary key set, with the actual parent
+            if (parentField.isReference() && parentField.isWritable())
+                parentField.setValue(node.value, parent.value, registry);
+        }
+        Deque<TreeNode<T>> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            TreeNode<T> node = pending.pop();
+            node.children.sort(Comparator.comparing(child -> key(primaryKey.getValue(child.value)), TreeNode::compareKeys));
+            for (TreeNode<T> child : node.children) {
+                child.depth = node.depth + 1;
+                pending.push(child);
+            }
+        }
+        return root;
+    }
+
+    /**
+     * Normalize a key, so that equal numbers of different types are found as the same key.
+     */
+    private static Object key(Object value) {
+        if (value instanceof Number && !(value instanceof BigDecimal))
+            value = new BigDecimal(value.toString());
+        return value instanceof BigDecimal ? ((BigDecimal) value).stripTrailingZeros() : value;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compareKeys(Object first, Object second) {
+        if (first instanceof Comparable && second != null && first.getClass() == second.getClass())
+            return ((Comparable) first).compareTo(second);
+        return 0;
+    }
+}
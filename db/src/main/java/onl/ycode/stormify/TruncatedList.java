@@ -0,0 +1,33 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify;
+
+import java.util.ArrayList;
+
+/**
+ * The results of a query that exceeded a {@link ResultLimit} created with
+ * {@link ResultLimit#truncateAt(int, long)}. The list holds only the results that fit in the limit; use
+ * {@code instanceof TruncatedList} to find out if a result was truncated.
+ *
+ * @param <T> the type of the results.
+ */
+public final class TruncatedList<T> extends ArrayList<T> {
+    private static final long serialVersionUID = 1L;
+
+    private final ResultLimit limit;
+
+    TruncatedList(int initialCapacity, ResultLimit limit) {
+        super(initialCapacity);
+        this.limit = limit;
+    }
+
+    /**
+     * Get the limit that the query exceeded.
+     *
+     * @return the result limit.
+     */
+    public ResultLimit getLimit() {
+        return limit;
+    }
+}
@@ -3,6 +3,9 @@
 
 package onl.ycode.stormify;
 
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -91,6 +94,8 @@ final class Utils {
     static boolean isBaseClass(Class<?> request) {
         if (request == null)
             return true;
+        if (request == LazyLob.class || Path.class.isAssignableFrom(request) || InputStream.class.isAssignableFrom(request) || Reader.class.isAssignableFrom(request))
+            return true;
         if (request.isArray() || Iterable.class.isAssignableFrom(request) || Map.class.isAssignableFrom(request))
             return false;
         return request.isPrimitive() || request.getName().startsWith("java.") || request.getName().startsWith("javax.");
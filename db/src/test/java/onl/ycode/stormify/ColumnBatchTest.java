@@ -0,0 +1,174 @@
+package onl.ycode.stormify;
+
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+import onl.ycode.stormify.ColumnBatch.ColumnType;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ColumnBatchTest {
+
+    private static final String[] NAMES = {"id", "amount", "code", "price", "huge", "plain", "weight", "name", "flag"};
+    private static final int[] TYPES = {Types.INTEGER, Types.BIGINT, Types.NUMERIC, Types.DECIMAL, Types.NUMERIC,
+            Types.NUMERIC, Types.DOUBLE, Types.VARCHAR, Types.BOOLEAN};
+    private static final int[] PRECISIONS = {10, 19, 12, 10, 30, 0, 15, 100, 1};
+    private static final int[] SCALES = {0, 0, 0, 2, 0, 0, 0, 0, 0};
+
+    private static final Object[][] ROWS = {
+            {1, 10L, new BigDecimal("100"), new BigDecimal("1.25"), new BigDecimal("123456789012345678901234567890"), new BigDecimal("7"), 1.5, "red", true},
+            {2, null, null, null, null, null, null, "green", null},
+            {null, 30L, new BigDecimal("300"), new BigDecimal("3.75"), new BigDecimal("3"), new BigDecimal("0.1"), 0.0, "red", false},
+            {4, 0L, new BigDecimal("0"), new BigDecimal("0.00"), new BigDecimal("0"), new BigDecimal("0"), 4.5, null, true},
+    };
+
+    private static ResultSetMetaData metaData() {
+        return (ResultSetMetaData) Proxy.newProxyInstance(ColumnBatchTest.class.getClassLoader(), new Class[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getColumnCount":
+                    return NAMES.length;
+                case "getColumnLabel":
+                case "getColumnName":
+                    return NAMES[(Integer) args[0] - 1];
+                case "getColumnType":
+                    return TYPES[(Integer) args[0] - 1];
+                case "getPrecision":
+                    return PRECISIONS[(Integer) args[0] - 1];
+                case "getScale":
+                    return SCALES[(Integer) args[0] - 1];
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static ResultSet resultSet() {
+        int[] row = {-1};
+        Object[] last = {null};
+        return (ResultSet) Proxy.newProxyInstance(ColumnBatchTest.class.getClassLoader(), new Class[]{ResultSet.class}, (proxy, method, args) -> {
+            if (method.getName().equals("next"))
+                return ++row[0] < ROWS.length;
+            if (method.getName().equals("wasNull"))
+                return last[0] == null;
+            Object value = last[0] = ROWS[row[0]][(Integer) args[0] - 1];
+            switch (method.getName()) {
+                case "getInt":
+                    return value == null ? 0 : ((Number) value).intValue();
+                case "getLong":
+                    return value == null ? 0L : ((Number) value).longValue();
+                case "getDouble":
+                    return value == null ? 0.0 : ((Number) value).doubleValue();
+                case "getBigDecimal":
+                    return value;
+                case "getString":
+                    return value == null ? null : value.toString();
+                case "getObject":
+                    // Like some drivers, return numeric values with fractional digits as doubles
+                    return value instanceof BigDecimal ? (Object) ((BigDecimal) value).doubleValue() : value;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static ColumnBatch read(int initialCapacity) throws SQLException {
+        ResultSet resultSet = resultSet();
+        ColumnBatch.Collector collector = new ColumnBatch.Collector(metaData(), initialCapacity);
+        while (resultSet.next())
+            collector.add(resultSet);
+        return collector.build();
+    }
+
+    @Test
+    void typeMapping() throws SQLException {
+        ColumnBatch batch = read(16);
+        assertEquals(ColumnType.INT, batch.getColumnType(0));
+        assertEquals(ColumnType.LONG, batch.getColumnType(1));
+        assertEquals(ColumnType.LONG, batch.getColumnType(2));
+        assertEquals(ColumnType.OBJECT, batch.getColumnType(3));
+        assertEquals(ColumnType.OBJECT, batch.getColumnType(4));
+        assertEquals(ColumnType.OBJECT, batch.getColumnType(5));
+        assertEquals(ColumnType.DOUBLE, batch.getColumnType(6));
+        assertEquals(ColumnType.STRING, batch.getColumnType(7));
+        assertEquals(ColumnType.OBJECT, batch.getColumnType(8));
+        assertThrows(QueryException.class, () -> batch.getLongs(0));
+    }
+
+    @Test
+    void values() throws SQLException {
+        ColumnBatch batch = read(1);
+        assertEquals(4, batch.size());
+        assertEquals(NAMES.length, batch.getColumnCount());
+        assertArrayEquals(new int[]{1, 2, 0, 4}, batch.getInts(0));
+        assertArrayEquals(new long[]{10, 0, 30, 0}, batch.getLongs(1));
+        assertArrayEquals(new long[]{100, 0, 300, 0}, batch.getLongs(2));
+        assertArrayEquals(new double[]{1.5, 0, 0, 4.5}, batch.getDoubles(6));
+        assertEquals(Boolean.TRUE, batch.getObject(8, 0));
+        assertEquals(30L, batch.getObject(1, 2));
+    }
+
+    @Test
+    void decimalsKeepTheirPrecision() throws SQLException {
+        ColumnBatch batch = read(16);
+        assertEquals(new BigDecimal("1.25"), batch.getObject(3, 0));
+        assertEquals(new BigDecimal("123456789012345678901234567890"), batch.getObject(4, 0));
+        assertEquals(new BigDecimal("0.1"), batch.getObject(5, 2));
+        assertNull(batch.getObject(3, 1));
+    }
+
+    @Test
+    void nulls() throws SQLException {
+        ColumnBatch batch = read(16);
+        assertTrue(batch.isNull(0, 2));
+        assertFalse(batch.isNull(0, 0));
+        assertFalse(batch.isNull(1, 3));
+        assertTrue(batch.isNull(1, 1));
+        assertFalse(batch.isNull(6, 2));
+        assertTrue(batch.isNull(7, 3));
+        assertTrue(batch.isNull(8, 1));
+        assertFalse(batch.isNull(8, 2));
+        for (int column = 1; column < NAMES.length; column++)
+            assertEquals(column != 7, batch.isNull(column, 1));
+        assertNull(batch.getObject(0, 2));
+        assertNull(batch.getString(7, 3));
+    }
+
+    @Test
+    void dictionary() throws SQLException {
+        ColumnBatch batch = read(16);
+        assertArrayEquals(new Object[]{"red", "green"}, batch.getDictionary(7));
+        int[] codes = batch.getCodes(7);
+        assertEquals(codes[0], codes[2]);
+        assertEquals("red", batch.getString(7, 2));
+        assertEquals("green", batch.getObject(7, 1));
+        assertEquals(7, batch.indexOf("NAME"));
+        assertEquals(-1, batch.indexOf("missing"));
+    }
+
+    @Test
+    void collectorStartsNewBatches() throws SQLException {
+        ResultSet resultSet = resultSet();
+        ColumnBatch.Collector collector = new ColumnBatch.Collector(metaData(), 2);
+        resultSet.next();
+        collector.add(resultSet);
+        ColumnBatch first = collector.build();
+        assertEquals(0, collector.size());
+        while (resultSet.next())
+            collector.add(resultSet);
+        ColumnBatch second = collector.build();
+        assertEquals(1, first.size());
+        assertEquals(3, second.size());
+        assertArrayEquals(new Object[]{"red"}, first.getDictionary(7));
+        assertArrayEquals(new Object[]{"green", "red"}, second.getDictionary(7));
+        assertTrue(second.isNull(0, 1));
+        assertFalse(first.isNull(0, 0));
+    }
+}
@@ -0,0 +1,157 @@
+package onl.ycode.stormify;
+
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InListsTest {
+
+    private static List<Integer> range(int size) {
+        List<Integer> result = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++)
+            result.add(i);
+        return result;
+    }
+
+    private static String append(String fragment, List<?> values, InListStrategy strategy, SqlDialect dialect, List<Object> params) {
+        StringBuilder query = new StringBuilder();
+        InLists.append(query, fragment, values, strategy, dialect, params, new ArrayList<>());
+        return query.toString();
+    }
+
+    @Test
+    void resolveStrategies() {
+        List<Integer> small = range(3);
+        for (SqlDialect dialect : SqlDialect.values()) {
+            assertEquals(InListStrategy.EXPAND, InLists.resolve(InListStrategy.EXPAND, dialect, small, 100));
+            assertEquals(InListStrategy.PADDED, InLists.resolve(InListStrategy.PADDED, dialect, small, 100));
+        }
+        assertEquals(InListStrategy.ARRAY, InLists.resolve(InListStrategy.ARRAY, SqlDialect.POSTGRESQL, small, 100));
+        assertEquals(InListStrategy.PADDED, InLists.resolve(InListStrategy.ARRAY, SqlDialect.MYSQL_NEW, small, 100));
+        assertEquals(InListStrategy.PADDED, InLists.resolve(InListStrategy.TEMPORARY_TABLE, SqlDialect.UNKNOWN, small, 100));
+        assertEquals(InListStrategy.TEMPORARY_TABLE, InLists.resolve(InListStrategy.TEMPORARY_TABLE, SqlDialect.SQLITE, small, 100));
+    }
+
+    @Test
+    void resolveAuto() {
+        assertEquals(InListStrategy.ARRAY, InLists.resolve(InListStrategy.AUTO, SqlDialect.POSTGRESQL, range(500), 100));
+        assertEquals(InListStrategy.PADDED, InLists.resolve(InListStrategy.AUTO, SqlDialect.SQL_SERVER_NEW, range(100), 100));
+        assertEquals(InListStrategy.TEMPORARY_TABLE, InLists.resolve(InListStrategy.AUTO, SqlDialect.SQL_SERVER_NEW, range(101), 100));
+        assertEquals(InListStrategy.PADDED, InLists.resolve(InListStrategy.AUTO, SqlDialect.FAILSAFE, range(101), 100));
+        assertEquals(InListStrategy.TEMPORARY_TABLE, InLists.resolve(InListStrategy.AUTO, SqlDialect.ORACLE_NEW, range(1001), Integer.MAX_VALUE));
+        assertEquals(InListStrategy.PADDED, InLists.resolve(InListStrategy.AUTO, SqlDialect.ORACLE_NEW, range(1000), Integer.MAX_VALUE));
+    }
+
+    @Test
+    void arrayOnlyForKnownTypes() {
+        assertEquals("integer", InLists.arrayType(Arrays.asList(null, 1, 2)));
+        assertEquals("bigint", InLists.arrayType(Collections.singletonList(1L)));
+        assertEquals("numeric", InLists.arrayType(Collections.singletonList(BigDecimal.ONE)));
+        assertEquals("varchar", InLists.arrayType(Collections.singletonList("a")));
+        assertNull(InLists.arrayType(Collections.singletonList(UUID.randomUUID())));
+        assertNull(InLists.arrayType(Arrays.asList(null, null)));
+        assertNull(InLists.arrayType(Collections.emptyList()));
+
+        List<UUID> uuids = Collections.singletonList(UUID.randomUUID());
+        assertEquals(InListStrategy.PADDED, InLists.resolve(InListStrategy.ARRAY, SqlDialect.POSTGRESQL, uuids, 100));
+        assertEquals(InListStrategy.PADDED, InLists.resolve(InListStrategy.AUTO, SqlDialect.POSTGRESQL, uuids, 100));
+        assertEquals(InListStrategy.TEMPORARY_TABLE, InLists.resolve(InListStrategy.AUTO, SqlDialect.POSTGRESQL,
+                Collections.nCopies(101, UUID.randomUUID()), 100));
+    }
+
+    @Test
+    void stagingKeepsPrecision() {
+        List<BigDecimal> decimals = Arrays.asList(new BigDecimal("12345.1"), null, new BigDecimal("0.12345678901234"), new BigDecimal("1E+5"));
+        assertEquals("DECIMAL(20, 14)", InLists.columnType(SqlDialect.POSTGRESQL, decimals));
+        assertNull(InLists.columnType(SqlDialect.POSTGRESQL, Collections.singletonList(new BigDecimal("1E-31"))));
+        assertNull(InLists.columnType(SqlDialect.POSTGRESQL, Collections.singletonList(new BigDecimal("1E+38"))));
+        assertEquals("BIGINT", InLists.columnType(SqlDialect.MYSQL_NEW, Collections.singletonList(BigInteger.valueOf(Long.MAX_VALUE))));
+        assertNull(InLists.columnType(SqlDialect.MYSQL_NEW, Collections.singletonList(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE))));
+
+        char[] text = new char[4000];
+        Arrays.fill(text, 'a');
+        assertEquals("NVARCHAR(4000)", InLists.columnType(SqlDialect.SQL_SERVER_NEW, Collections.singletonList(new String(text))));
+        List<String> longText = Arrays.asList("a", new String(text) + "a");
+        assertNull(InLists.columnType(SqlDialect.SQL_SERVER_NEW, longText));
+        assertEquals(InListStrategy.PADDED, InLists.resolve(InListStrategy.TEMPORARY_TABLE, SqlDialect.SQL_SERVER_NEW, longText, 100));
+        assertEquals(InListStrategy.PADDED, InLists.resolve(InListStrategy.AUTO, SqlDialect.SQL_SERVER_NEW,
+                Collections.nCopies(101, new BigDecimal("0.1234567890123456789012345678901")), 100));
+        assertEquals(InListStrategy.TEMPORARY_TABLE, InLists.resolve(InListStrategy.TEMPORARY_TABLE, SqlDialect.ORACLE_NEW, longText, 100));
+    }
+
+    @Test
+    void expand() {
+        List<Object> params = new ArrayList<>();
+        assertEquals("id IN (?, ?, ?)", append("id IN ", range(3), InListStrategy.EXPAND, null, params));
+        assertEquals(Arrays.asList(1, 2, 3), params);
+    }
+
+    @Test
+    void padding() {
+        List<Object> params = new ArrayList<>();
+        assertEquals("id IN (?)", append("id IN ", range(1), InListStrategy.PADDED, SqlDialect.MYSQL_NEW, params));
+        assertEquals(Collections.singletonList(1), params);
+
+        params.clear();
+        assertEquals("id IN (?, ?)", append("id IN ", range(2), InListStrategy.PADDED, SqlDialect.MYSQL_NEW, params));
+
+        params.clear();
+        assertEquals("id IN (?, ?, ?, ?)", append("id IN ", range(3), InListStrategy.PADDED, SqlDialect.MYSQL_NEW, params));
+        assertEquals(Arrays.asList(1, 2, 3, 3), params);
+
+        params.clear();
+        append("id IN ", range(5), InListStrategy.PADDED, SqlDialect.MYSQL_NEW, params);
+        assertEquals(8, params.size());
+        assertEquals(5, params.get(7));
+
+        params.clear();
+        append("id IN ", range(8), InListStrategy.PADDED, SqlDialect.MYSQL_NEW, params);
+        assertEquals(range(8), params);
+    }
+
+    @Test
+    void paddingRespectsOracleLimit() {
+        List<Object> params = new ArrayList<>();
+        append("id IN ", range(600), InListStrategy.PADDED, SqlDialect.ORACLE_NEW, params);
+        assertEquals(1000, params.size());
+
+        params.clear();
+        append("id IN ", range(600), InListStrategy.PADDED, SqlDialect.POSTGRESQL, params);
+        assertEquals(1024, params.size());
+    }
+
+    @Test
+    void array() {
+        List<Object> params = new ArrayList<>();
+        assertEquals("id = ANY(?)", append("id IN ", range(3), InListStrategy.ARRAY, SqlDialect.POSTGRESQL, params));
+        assertEquals(1, params.size());
+        assertTrue(params.get(0) instanceof InLists.ArrayValue);
+        assertEquals("[1, 2, 3]", params.get(0).toString());
+
+        params.clear();
+        assertEquals("id <> ALL(?)", append("id not in ", range(3), InListStrategy.ARRAY, SqlDialect.POSTGRESQL, params));
+    }
+
+    @Test
+    void temporaryTable() {
+        List<Object> params = new ArrayList<>();
+        List<InLists.StagedValues> staged = new ArrayList<>();
+        StringBuilder query = new StringBuilder();
+        InLists.append(query, "id IN ", range(3), InListStrategy.TEMPORARY_TABLE, SqlDialect.SQL_SERVER_NEW, params, staged);
+        assertTrue(query.toString().matches("id IN \\(SELECT v FROM #stormify_in_\\d+\\)"), query.toString());
+        assertTrue(params.isEmpty());
+        assertEquals(1, staged.size());
+
+        params.clear();
+        assertEquals("id IN (SELECT ? FROM dual UNION ALL SELECT ? FROM dual)",
+                append("id IN ", range(2), InListStrategy.TEMPORARY_TABLE, SqlDialect.ORACLE_NEW, params));
+        assertEquals(Arrays.asList(1, 2), params);
+    }
+}
@@ -0,0 +1,121 @@
+package onl.ycode.stormify;
+
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RowCodecTest {
+
+    private static ByteBuffer encode(Object... values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Object value : values)
+            RowCodec.write(out, value);
+        out.flush();
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static Object roundTrip(Object value) throws IOException {
+        ByteBuffer in = encode(value);
+        Object result = RowCodec.read(in);
+        assertFalse(in.hasRemaining());
+        return result;
+    }
+
+    @Test
+    void primitives() throws IOException {
+        assertNull(roundTrip(null));
+        assertSame(RowCodec.ABSENT, roundTrip(RowCodec.ABSENT));
+        assertEquals(Integer.MIN_VALUE, roundTrip(Integer.MIN_VALUE));
+        assertEquals(Long.MAX_VALUE, roundTrip(Long.MAX_VALUE));
+        assertEquals((short) -12, roundTrip((short) -12));
+        assertEquals((byte) 7, roundTrip((byte) 7));
+        assertEquals(-0.125, roundTrip(-0.125));
+        assertEquals(Float.NaN, roundTrip(Float.NaN));
+        assertEquals(Boolean.TRUE, roundTrip(true));
+        assertEquals(Boolean.FALSE, roundTrip(false));
+        assertEquals('€', roundTrip('€'));
+    }
+
+    @Test
+    void textAndBytes() throws IOException {
+        assertEquals("", roundTrip(""));
+        assertEquals("café € 😀", roundTrip("café € 😀"));
+        assertArrayEquals(new byte[]{0, -1, 127, -128}, (byte[]) roundTrip(new byte[]{0, -1, 127, -128}));
+        assertArrayEquals(new byte[0], (byte[]) roundTrip(new byte[0]));
+    }
+
+    @Test
+    void numbers() throws IOException {
+        BigDecimal decimal = new BigDecimal("-12345678901234567890.0012300");
+        BigDecimal restored = (BigDecimal) roundTrip(decimal);
+        assertEquals(decimal, restored);
+        assertEquals(decimal.scale(), restored.scale());
+        assertEquals(new BigDecimal("1E+5"), roundTrip(new BigDecimal("1E+5")));
+        assertEquals(new BigInteger("-98765432109876543210"), roundTrip(new BigInteger("-98765432109876543210")));
+    }
+
+    @Test
+    void dates() throws IOException {
+        Timestamp timestamp = Timestamp.valueOf("2024-02-29 13:45:10.123456789");
+        Object restored = roundTrip(timestamp);
+        assertEquals(Timestamp.class, restored.getClass());
+        assertEquals(timestamp, restored);
+        assertEquals(123456789, ((Timestamp) restored).getNanos());
+
+        java.sql.Date sqlDate = java.sql.Date.valueOf("2024-02-29");
+        assertEquals(java.sql.Date.class, roundTrip(sqlDate).getClass());
+        assertEquals(sqlDate, roundTrip(sqlDate));
+
+        Time time = Time.valueOf("23:59:58");
+        assertEquals(Time.class, roundTrip(time).getClass());
+        assertEquals(time, roundTrip(time));
+
+        java.util.Date date = new java.util.Date(1700000000123L);
+        assertEquals(java.util.Date.class, roundTrip(date).getClass());
+        assertEquals(date, roundTrip(date));
+
+        assertEquals(LocalDate.of(1969, 12, 31), roundTrip(LocalDate.of(1969, 12, 31)));
+        assertEquals(LocalTime.of(0, 0, 0, 1), roundTrip(LocalTime.of(0, 0, 0, 1)));
+        assertEquals(LocalDateTime.of(2024, 2, 29, 23, 59, 59, 999999999), roundTrip(LocalDateTime.of(2024, 2, 29, 23, 59, 59, 999999999)));
+    }
+
+    @Test
+    void serialized() throws IOException {
+        UUID uuid = UUID.randomUUID();
+        assertEquals(uuid, roundTrip(uuid));
+        assertThrows(QueryException.class, () -> encode(new Object()));
+    }
+
+    @Test
+    void sequenceOfValues() throws IOException {
+        ByteBuffer in = encode(1, null, "a", RowCodec.ABSENT, 2L);
+        assertEquals(1, RowCodec.read(in));
+        assertNull(RowCodec.read(in));
+        assertEquals("a", RowCodec.read(in));
+        assertSame(RowCodec.ABSENT, RowCodec.read(in));
+        assertEquals(2L, RowCodec.read(in));
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    void unknownTag() {
+        assertThrows(QueryException.class, () -> RowCodec.read(ByteBuffer.wrap(new byte[]{99})));
+    }
+}
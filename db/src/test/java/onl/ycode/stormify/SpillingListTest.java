@@ -0,0 +1,79 @@
+package onl.ycode.stormify;
+
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpillingListTest {
+
+    private static <T> SpillingList<T> collect(Class<T> type, int inMemoryRows, long maxSegmentSize, List<T> values) {
+        SpillingList.Collector<T> collector = new SpillingList.Collector<>(type, inMemoryRows, new ClassRegistry(), maxSegmentSize);
+        values.forEach(collector);
+        return collector.build();
+    }
+
+    @Test
+    void inMemoryOnly() {
+        try (SpillingList<Integer> list = collect(Integer.class, 10, Integer.MAX_VALUE, Arrays.asList(1, 2, 3))) {
+            assertEquals(3, list.size());
+            assertEquals(0, list.getSpilledSize());
+            assertEquals(Arrays.asList(1, 2, 3), new ArrayList<>(list));
+        }
+    }
+
+    @Test
+    void spilledRows() {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            values.add(i % 7 == 0 ? null : "row " + i);
+        try (SpillingList<String> list = collect(String.class, 10, Integer.MAX_VALUE, values)) {
+            assertEquals(100, list.size());
+            assertEquals(90, list.getSpilledSize());
+            assertEquals(values, new ArrayList<>(list));
+            assertEquals("row 99", list.get(99));
+            assertThrows(IndexOutOfBoundsException.class, () -> list.get(100));
+            assertThrows(IndexOutOfBoundsException.class, () -> list.get(-1));
+        }
+    }
+
+    @Test
+    void segmentLookup() {
+        // Every integer takes 5 bytes, so that every segment of at most 12 bytes holds 2 rows
+        List<Integer> values = new ArrayList<>();
+        for (int i = 0; i < 51; i++)
+            values.add(i * 1000);
+        try (SpillingList<Integer> list = collect(Integer.class, 3, 12, values)) {
+            assertEquals(48, list.getSpilledSize());
+            for (int i = 0; i < values.size(); i++)
+                assertEquals(values.get(i), list.get(i));
+            for (int i = values.size() - 1; i >= 0; i -= 3)
+                assertEquals(values.get(i), list.get(i));
+        }
+    }
+
+    @Test
+    void rowsLargerThanSegments() {
+        List<String> values = Arrays.asList("a", "a much longer value than a segment", "b", "another long value, again longer", "c");
+        try (SpillingList<String> list = collect(String.class, 0, 16, values)) {
+            assertEquals(values, new ArrayList<>(list));
+            assertEquals(values.get(1), list.get(1));
+            assertEquals(values.get(4), list.get(4));
+        }
+    }
+
+    @Test
+    void closedList() {
+        SpillingList<Integer> list = collect(Integer.class, 1, Integer.MAX_VALUE, Arrays.asList(1, 2, 3));
+        list.close();
+        assertEquals(Integer.valueOf(1), list.get(0));
+        assertThrows(QueryException.class, () -> list.get(1));
+        list.close();
+    }
+}
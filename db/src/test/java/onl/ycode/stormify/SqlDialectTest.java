@@ -0,0 +1,90 @@
+package onl.ycode.stormify;
+
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlDialectTest {
+
+    private static String delete(SqlDialect dialect, String condition) {
+        return dialect.chunkFormatter.apply("audit", null, condition, "id", 500);
+    }
+
+    private static String update(SqlDialect dialect, String condition) {
+        return dialect.chunkFormatter.apply("audit", "flag = ?", condition, "id", 500);
+    }
+
+    @Test
+    void chunkedMutationsWithLimit() {
+        for (SqlDialect dialect : new SqlDialect[]{SqlDialect.MYSQL_NEW, SqlDialect.MYSQL_OLD, SqlDialect.MARIA_DB_NEW, SqlDialect.MARIA_DB_OLD}) {
+            assertEquals("DELETE FROM audit WHERE ts < ? OR x = 1 LIMIT 500", delete(dialect, "ts < ? OR x = 1"));
+            assertEquals("DELETE FROM audit LIMIT 500", delete(dialect, ""));
+            assertEquals("UPDATE audit SET flag = ? WHERE ts < ? LIMIT 500", update(dialect, "ts < ?"));
+        }
+    }
+
+    @Test
+    void chunkedMutationsOnOracle() {
+        for (SqlDialect dialect : new SqlDialect[]{SqlDialect.ORACLE_NEW, SqlDialect.ORACLE_OLD}) {
+            assertEquals("DELETE FROM audit WHERE (ts < ? OR x = 1) AND ROWNUM <= 500", delete(dialect, "ts < ? OR x = 1"));
+            assertEquals("DELETE FROM audit WHERE ROWNUM <= 500", delete(dialect, ""));
+            assertEquals("UPDATE audit SET flag = ? WHERE ROWNUM <= 500", update(dialect, ""));
+            assertEquals("UPDATE audit SET flag = ? WHERE (ts < ?) AND ROWNUM <= 500", update(dialect, "ts < ?"));
+        }
+    }
+
+    @Test
+    void chunkedMutationsOnPostgres() {
+        assertEquals("DELETE FROM audit WHERE ctid = ANY(ARRAY(SELECT ctid FROM audit WHERE ts < ? OR x = 1 LIMIT 500))",
+                delete(SqlDialect.POSTGRESQL, "ts < ? OR x = 1"));
+        assertEquals("UPDATE audit SET flag = ? WHERE ctid = ANY(ARRAY(SELECT ctid FROM audit LIMIT 500))",
+                update(SqlDialect.POSTGRESQL, ""));
+    }
+
+    @Test
+    void chunkedMutationsOnSqlServer() {
+        for (SqlDialect dialect : new SqlDialect[]{SqlDialect.SQL_SERVER_NEW, SqlDialect.SQL_SERVER_OLD}) {
+            assertEquals("DELETE TOP (500) FROM audit WHERE ts < ? OR x = 1", delete(dialect, "ts < ? OR x = 1"));
+            assertEquals("UPDATE TOP (500) audit SET flag = ?", update(dialect, ""));
+            assertEquals("UPDATE TOP (500) audit SET flag = ? WHERE ts < ?", update(dialect, "ts < ?"));
+        }
+    }
+
+    @Test
+    void chunkedMutationsWithSubquery() {
+        assertEquals("DELETE FROM audit WHERE rowid IN (SELECT rowid FROM audit WHERE ts < ? OR x = 1 LIMIT 500)",
+                delete(SqlDialect.SQLITE, "ts < ? OR x = 1"));
+        assertEquals("DELETE FROM audit WHERE rowid IN (SELECT rowid FROM audit LIMIT 500)",
+                SqlDialect.SQLITE.chunkFormatter.apply("audit", null, "", null, 500));
+        for (SqlDialect dialect : new SqlDialect[]{SqlDialect.UNKNOWN, SqlDialect.FAILSAFE}) {
+            assertEquals("DELETE FROM audit WHERE id IN (SELECT id FROM audit WHERE ts < ? OR x = 1 LIMIT 500)",
+                    delete(dialect, "ts < ? OR x = 1"));
+            assertEquals("UPDATE audit SET flag = ? WHERE id IN (SELECT id FROM audit LIMIT 500)", update(dialect, ""));
+            assertThrows(QueryException.class, () -> dialect.chunkFormatter.apply("audit", null, "", null, 500));
+        }
+    }
+
+    @Test
+    void dialectByVersion() {
+        assertEquals(SqlDialect.MYSQL_OLD, SqlDialect.findDialect("MySQL", "5.7.44", 5, 7));
+        assertEquals(SqlDialect.MYSQL_NEW, SqlDialect.findDialect("MySQL", "8.0.36", 8, 0));
+        assertNull(SqlDialect.MYSQL_OLD.treeFormatter);
+        assertNotNull(SqlDialect.MYSQL_NEW.treeFormatter);
+        assertNull(SqlDialect.MYSQL_NEW.sequenceDialect.apply("seq"));
+        assertEquals(SqlDialect.MARIA_DB_OLD, SqlDialect.findDialect("MySQL", "5.5.5-10.2.44-MariaDB", 10, 2));
+        assertEquals(SqlDialect.MARIA_DB_NEW, SqlDialect.findDialect("MySQL", "5.5.5-10.11.6-MariaDB", 10, 11));
+        assertEquals(SqlDialect.ORACLE_OLD, SqlDialect.findDialect("Oracle", "11.2", 11, 2));
+        assertEquals(SqlDialect.SQL_SERVER_NEW, SqlDialect.findDialect("Microsoft SQL Server", "16.00", 16, 0));
+        assertEquals(SqlDialect.POSTGRESQL, SqlDialect.findDialect("PostgreSQL", "16.2", 16, 2));
+        assertEquals(SqlDialect.UNKNOWN, SqlDialect.findDialect("H2", "2.2", 2, 2));
+    }
+
+    @Test
+    void everyDialectSupportsChunks() {
+        for (SqlDialect dialect : SqlDialect.values())
+            assertNotNull(dialect.chunkFormatter, dialect.name());
+    }
+}
@@ -0,0 +1,137 @@
+package onl.ycode.stormify;
+
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static onl.ycode.stormify.StormifyManager.stormify;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlTemplateTest {
+
+    @Test
+    void positionalPlaceholders() {
+        SqlTemplate template = SqlTemplate.compile("SELECT * FROM item WHERE id = ? AND name = ?");
+        assertEquals(2, template.placeholders());
+        assertFalse(template.isNamed());
+        assertEquals("SELECT * FROM item WHERE id = ", template.fragment(0));
+        assertEquals(" AND name = ", template.fragment(1));
+        assertEquals("", template.fragment(2));
+        assertSame(template.sql, template.jdbcSql);
+    }
+
+    @Test
+    void namedPlaceholders() {
+        SqlTemplate template = SqlTemplate.compile("UPDATE item SET name = :name WHERE id = :id_1");
+        assertEquals(2, template.placeholders());
+        assertTrue(template.isNamed());
+        assertEquals("name", template.name(0));
+        assertEquals("id_1", template.name(1));
+        assertEquals("UPDATE item SET name = ? WHERE id = ?", template.jdbcSql);
+    }
+
+    @Test
+    void quotesAreSkipped() {
+        assertEquals(1, SqlTemplate.compile("SELECT '?', 'it''s ?', \"col?\", `x?` FROM t WHERE a = ?").placeholders());
+        assertEquals(0, SqlTemplate.compile("SELECT ':name', \":other\" FROM t").placeholders());
+        assertEquals(1, SqlTemplate.compile("SELECT E'\\' ?' FROM t WHERE a = ?").placeholders());
+        // An unterminated literal swallows the rest of the query
+        assertEquals(0, SqlTemplate.compile("SELECT 'abc ? FROM t").placeholders());
+    }
+
+    @Test
+    void commentsAreSkipped() {
+        SqlTemplate template = SqlTemplate.compile("SELECT a -- is it ?\nFROM t /* :name ? */ WHERE b = ?");
+        assertEquals(1, template.placeholders());
+        assertFalse(template.isNamed());
+        assertEquals(0, SqlTemplate.compile("SELECT 1 -- ?").placeholders());
+    }
+
+    @Test
+    void dollarQuotesAreSkipped() {
+        assertEquals(1, SqlTemplate.compile("SELECT $$ ? :x $$, $tag$ it's ? $tag$ FROM t WHERE a = ?").placeholders());
+        // Not dollar quotes
+        assertEquals(1, SqlTemplate.compile("SELECT price$ FROM t WHERE a = ?").placeholders());
+        assertEquals(1, SqlTemplate.compile("SELECT $1 FROM t WHERE a = ?").placeholders());
+    }
+
+    @Test
+    void castsAreNotParameters() {
+        SqlTemplate template = SqlTemplate.compile("SELECT a::text FROM t WHERE b = :value::int");
+        assertEquals(1, template.placeholders());
+        assertEquals("value", template.name(0));
+        assertEquals("SELECT a::text FROM t WHERE b = ?::int", template.jdbcSql);
+    }
+
+    @Test
+    void postgresOperatorsAreNotParameters() {
+        assertEquals(1, SqlTemplate.compile("SELECT * FROM t WHERE tags ?| array['a'] AND tags ?& array['b'] AND id = ?").placeholders());
+        assertEquals(0, SqlTemplate.compile("SELECT * FROM t WHERE doc ?? 'key'").placeholders());
+        SqlTemplate concatenation = SqlTemplate.compile("SELECT ?|| 'x' FROM t WHERE id = ?");
+        assertEquals(2, concatenation.placeholders());
+        assertEquals("SELECT ", concatenation.fragment(0));
+    }
+
+    @Test
+    void namesAreIgnoredInPositionalQueries() {
+        SqlTemplate template = SqlTemplate.compile("SELECT * FROM t WHERE a = :a AND b = ?");
+        assertFalse(template.isNamed());
+        assertEquals(1, template.placeholders());
+        assertEquals("SELECT * FROM t WHERE a = :a AND b = ", template.fragment(0));
+
+        String trigger = "CREATE TRIGGER item_audit BEFORE UPDATE ON item FOR EACH ROW " +
+                "BEGIN :new.modified := SYSDATE; :new.version := :old.version + 1; END;";
+        StormifyManager.FixedParams params = stormify().fixParams(trigger, new Object[0]);
+        assertEquals(trigger, params.query);
+        assertTrue(params.params.isEmpty());
+    }
+
+    @Test
+    void arraySlicesAreNotParameters() {
+        SqlTemplate positional = SqlTemplate.compile("SELECT arr[1:n], arr[:2] FROM t WHERE id = ?");
+        assertFalse(positional.isNamed());
+        assertEquals(1, positional.placeholders());
+
+        SqlTemplate named = SqlTemplate.compile("SELECT arr[lo:hi] FROM t WHERE id = :id AND arr[1][2:3] = :value");
+        assertTrue(named.isNamed());
+        assertEquals(2, named.placeholders());
+        assertEquals("id", named.name(0));
+        assertEquals("value", named.name(1));
+        assertEquals("SELECT arr[lo:hi] FROM t WHERE id = ? AND arr[1][2:3] = ?", named.jdbcSql);
+
+        SqlTemplate bounds = SqlTemplate.compile("SELECT arr[?:?] FROM t WHERE id = :id");
+        assertFalse(bounds.isNamed());
+        assertEquals(2, bounds.placeholders());
+    }
+
+    @Test
+    void parseUsesTheCache() {
+        String query = "SELECT * FROM t WHERE cached = ?";
+        assertSame(SqlTemplate.parse(query), SqlTemplate.parse(query));
+    }
+
+    @Test
+    void missingParameters() {
+        StormifyManager manager = stormify();
+        assertThrows(QueryException.class, () -> manager.fixParams("SELECT * FROM t WHERE a = ? AND b = ?", new Object[]{1}));
+        assertThrows(QueryException.class, () -> manager.fixParams("SELECT * FROM t WHERE a = ?", new Object[]{1, 2}));
+        assertThrows(QueryException.class, () -> manager.fixParams("SELECT * FROM t WHERE a = :a", new Object[]{Collections.emptyMap()}));
+        assertThrows(QueryException.class, () -> manager.fixParams("SELECT * FROM t WHERE a = :a", new Object[]{1, 2}));
+    }
+
+    @Test
+    void namedParametersFromMap() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("a", 1);
+        values.put("b", "x");
+        StormifyManager.FixedParams params = stormify().fixParams("SELECT * FROM t WHERE b = :b AND a = :a OR c = :a", new Object[]{values});
+        assertEquals("SELECT * FROM t WHERE b = ? AND a = ? OR c = ?", params.query);
+        assertEquals(Arrays.asList("x", 1, 1), params.params);
+    }
+}
@@ -0,0 +1,16 @@
+plugins {
+    `java-library`
+}
+
+group = parent?.group ?: IllegalStateException("Group is not defined")
+version = parent?.version ?: IllegalStateException("Version is not defined")
+description = "Stormify Flight Recorder Events"
+extra["publishable"] = "true"
+
+// JDK Flight Recorder API is available since Java 11
+java.sourceCompatibility = JavaVersion.VERSION_11
+java.targetCompatibility = JavaVersion.VERSION_11
+
+dependencies {
+    implementation(project(":db"))
+}
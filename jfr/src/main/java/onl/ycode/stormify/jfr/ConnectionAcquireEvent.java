@@ -0,0 +1,26 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A connection request to the data source. The duration of the event is the time spent waiting for the connection.
+ */
+@Name("onl.ycode.stormify.ConnectionAcquire")
+@Label("Connection Acquire")
+@Category("Stormify")
+@Description("Wait time for a connection from the data source")
+public class ConnectionAcquireEvent extends MonitorEvent {
+    @Label("Transactional")
+    @Description("Whether the connection is requested for a transaction")
+    boolean transactional;
+
+    ConnectionAcquireEvent(boolean transactional) {
+        this.transactional = transactional;
+    }
+}
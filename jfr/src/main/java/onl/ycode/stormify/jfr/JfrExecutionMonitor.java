@@ -0,0 +1,57 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify.jfr;
+
+import jdk.jfr.FlightRecorder;
+import onl.ycode.stormify.ExecutionMonitor;
+
+/**
+ * An execution monitor that emits JDK Flight Recorder events for the database activity of Stormify.
+ * <p>
+ * When no recording is active, or the specific event type is disabled, no event data are collected. To use it,
+ * register it with the controller:
+ * <pre>
+ *     stormify().setExecutionMonitor(new JfrExecutionMonitor());
+ * </pre>
+ */
+public class JfrExecutionMonitor implements ExecutionMonitor {
+
+    static {
+        FlightRecorder.register(QueryEvent.class);
+        FlightRecorder.register(ConnectionAcquireEvent.class);
+        FlightRecorder.register(TransactionEvent.class);
+        FlightRecorder.register(PopulateEvent.class);
+        FlightRecorder.register(PageFetchEvent.class);
+    }
+
+    @Override
+    public Span queryStarted(String sql, String table) {
+        QueryEvent event = new QueryEvent(sql, table);
+        return event.isEnabled() ? event.start() : null;
+    }
+
+    @Override
+    public Span connectionRequested(boolean transactional) {
+        ConnectionAcquireEvent event = new ConnectionAcquireEvent(transactional);
+        return event.isEnabled() ? event.start() : null;
+    }
+
+    @Override
+    public Span transactionAction(TransactionAction action, int savepointDepth) {
+        TransactionEvent event = new TransactionEvent(action.name(), savepointDepth);
+        return event.isEnabled() ? event.start() : null;
+    }
+
+    @Override
+    public Span populateStarted(Class<?> entityClass) {
+        PopulateEvent event = new PopulateEvent(entityClass);
+        return event.isEnabled() ? event.start() : null;
+    }
+
+    @Override
+    public Span pageFetchStarted(Class<?> entityClass, int lowBound, int upperBound) {
+        PageFetchEvent event = new PageFetchEvent(entityClass, lowBound, upperBound);
+        return event.isEnabled() ? event.start() : null;
+    }
+}
@@ -0,0 +1,37 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify.jfr;
+
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import onl.ycode.stormify.ExecutionMonitor.Span;
+
+/**
+ * The common base of all Stormify events. The event is a {@link Span} itself, so that it can be
+ * directly returned to the execution monitor callers.
+ */
+abstract class MonitorEvent extends Event implements Span {
+    @Label("Failed")
+    @Description("Whether the activity ended with an error")
+    boolean failed;
+
+    MonitorEvent start() {
+        begin();
+        return this;
+    }
+
+    void setCount(long count) {
+    }
+
+    @Override
+    public void finish(long count, Throwable error) {
+        end();
+        if (shouldCommit()) {
+            setCount(count);
+            failed = error != null;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The fetch of a page of a paged database list.
+ */
+@Name("onl.ycode.stormify.PageFetch")
+@Label("Page Fetch")
+@Category("Stormify")
+@Description("Fetch of a page of a paged database list")
+public class PageFetchEvent extends MonitorEvent {
+    @Label("Entity Class")
+    Class<?> entityClass;
+
+    @Label("Low Bound")
+    @Description("Index of the first element of the page, inclusive")
+    int lowBound;
+
+    @Label("Upper Bound")
+    @Description("Index of the last element of the page, exclusive")
+    int upperBound;
+
+    @Label("Rows")
+    @Description("Rows fetched, or -1 if the fetch failed")
+    long rows;
+
+    PageFetchEvent(Class<?> entityClass, int lowBound, int upperBound) {
+        this.entityClass = entityClass;
+        this.lowBound = lowBound;
+        this.upperBound = upperBound;
+    }
+
+    @Override
+    void setCount(long count) {
+        rows = count;
+    }
+}
@@ -0,0 +1,25 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The lazy population of an AutoTable entity.
+ */
+@Name("onl.ycode.stormify.Populate")
+@Label("AutoTable Populate")
+@Category("Stormify")
+@Description("Lazy population of an AutoTable entity")
+public class PopulateEvent extends MonitorEvent {
+    @Label("Entity Class")
+    Class<?> entityClass;
+
+    PopulateEvent(Class<?> entityClass) {
+        this.entityClass = entityClass;
+    }
+}
@@ -0,0 +1,39 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * The execution of a SQL statement, including the consumption of its results.
+ */
+@Name("onl.ycode.stormify.Query")
+@Label("Query")
+@Category("Stormify")
+@Description("Execution of a SQL statement")
+public class QueryEvent extends MonitorEvent {
+    @Label("SQL")
+    @Description("The SQL statement, with placeholders instead of values")
+    String sql;
+
+    @Label("Table")
+    String table;
+
+    @Label("Rows")
+    @Description("Rows read or affected, or -1 if unknown")
+    long rows;
+
+    QueryEvent(String sql, String table) {
+        this.sql = sql;
+        this.table = table;
+    }
+
+    @Override
+    void setCount(long count) {
+        rows = count;
+    }
+}
@@ -0,0 +1,30 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A transaction boundary: the beginning, commit or rollback of a transaction or a nested transaction.
+ */
+@Name("onl.ycode.stormify.Transaction")
+@Label("Transaction")
+@Category("Stormify")
+@Description("Transaction begin, commit or rollback")
+public class TransactionEvent extends MonitorEvent {
+    @Label("Action")
+    String action;
+
+    @Label("Savepoint Depth")
+    @Description("Depth of the nested transaction, 0 for the outer transaction")
+    int savepointDepth;
+
+    TransactionEvent(String action, int savepointDepth) {
+        this.action = action;
+        this.savepointDepth = savepointDepth;
+    }
+}
@@ -0,0 +1,10 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+/**
+ * JDK Flight Recorder integration for Stormify.
+ * <p>
+ * Register a {@link onl.ycode.stormify.jfr.JfrExecutionMonitor} to the controller, and the database activity of
+ * Stormify will appear as events under the "Stormify" category of every flight recording.
+ */
+package onl.ycode.stormify.jfr;
@@ -13,6 +13,7 @@ extra["publishable"] = "true"
 dependencies {
     implementation(project(":db"))
     implementation(project(":logger"))
+    compileOnly(project(":biglist"))
 
     testImplementation(kotlin("test-junit5"))
 
@@ -4,6 +4,9 @@
 package onl.ycode.stormify
 
 import onl.ycode.stormify.StormifyManager.stormify
+import onl.ycode.tmaker.DetailsList
+import java.util.function.IntConsumer
+import kotlin.properties.ReadOnlyProperty
 import kotlin.properties.ReadWriteProperty
 import kotlin.reflect.KClass
 import kotlin.reflect.KProperty
@@ -32,6 +35,13 @@ inline fun <reified T : Any> String.readOne(vararg arguments: Any?): T? =
 inline fun <reified T : Any> String.read(vararg arguments: Any?): List<T> =
     stormify().read(T::class.java, this, *arguments)
 
+/**
+ * Execute a read operation and return the result as a list of rows, without mapping them to a class.
+ * @param arguments The arguments to pass to the query.
+ * @return The list of rows found.
+ */
+fun String.readRows(vararg arguments: Any?): List<Row> = stormify().readRows(this, *arguments)
+
 /**
  * Execute a read operation and return the result as a cursor. Use this method when the strategy of parsing the result
  * row by row is preferred, instead of fetching all the results at once. Thus, data are consumed as they are fetched
@@ -45,6 +55,51 @@ inline fun <reified T : Any> String.read(vararg arguments: Any?): List<T> =
 inline fun <reified T : Any> String.readCursor(vararg arguments: Any?, crossinline consumer: (T) -> Unit): Int =
     stormify().readCursor(T::class.java, this, { consumer.invoke(it) }, *arguments)
 
+/**
+ * Execute a read operation and return the results as a list, that keeps only the first rows in memory. The rest of
+ * the rows are stored in a temporary file, which is deleted when the list is closed.
+ *
+ * @param inMemoryRows The number of rows to keep in memory.
+ * @param arguments The arguments to pass to the query.
+ * @return The list of results.
+ */
+inline fun <reified T : Any> String.readLarge(inMemoryRows: Int, vararg arguments: Any?): SpillingList<T> =
+    stormify().readLarge(T::class.java, inMemoryRows, this, *arguments)
+
+/**
+ * Execute a read operation as a cursor, where the rows are fetched in a background thread while the consumer
+ * processes the rows that are already fetched. The consumer is called in the calling thread.
+ *
+ * @param batchSize The number of rows passed from the background thread at once.
+ * @param arguments The arguments to pass to the query.
+ * @param consumer The consumer to process the results.
+ * @return The number of rows read.
+ */
+inline fun <reified T : Any> String.readCursorPrefetched(
+    batchSize: Int,
+    vararg arguments: Any?,
+    crossinline consumer: (T) -> Unit
+): Int = stormify().readCursorPrefetched(T::class.java, this, batchSize, { consumer.invoke(it) }, *arguments)
+
+/**
+ * Execute a read operation, populating the same object for every row. The object is only valid inside the
+ * consumer, since it is overwritten when the next row is read.
+ *
+ * @param target The object to populate with every row.
+ * @param arguments The arguments to pass to the query.
+ * @param consumer The consumer to process the results.
+ * @return The number of rows read.
+ */
+inline fun <T : Any> String.readCursorInto(target: T, vararg arguments: Any?, crossinline consumer: (T) -> Unit): Int =
+    stormify().readCursorInto(target, this, { consumer.invoke(it) }, *arguments)
+
+/**
+ * Prepare a query for repeated execution. The query is parsed only once, and the results of the read operations are
+ * of the given type.
+ * @return The prepared query.
+ */
+inline fun <reified T : Any> String.prepare(): PreparedQuery<T> = stormify().prepare(T::class.java, this)
+
 /**
  * Create a new object in the database.
  */
@@ -55,17 +110,41 @@ fun <T : Any> T.create(): T = stormify().create(this)
  */
 fun <T : Any> T.update(): T = stormify().update(this)
 
+/**
+ * Update an object in the database, together with the fields of the given lazy group.
+ */
+fun <T : Any> T.update(group: String): T = stormify().update(this, group)
+
 /**
  * Delete an object from the database.
  */
 fun <T : Any> T.delete() = stormify().delete(this)
 
+/**
+ * Create this object together with the new objects it references and its registered details, with batched inserts.
+ * See [registerDetails].
+ */
+fun <T : Any> T.persistGraph(): T = stormify().persistGraph(this)
+
+/**
+ * Register the details of a parent class, so that they are created together with their parent by [persistGraph].
+ * @param details The function that returns the details of a parent object.
+ */
+inline fun <reified M : Any> registerDetails(noinline details: (M) -> Iterable<*>?) =
+    stormify().registerDetails(M::class.java) { details(it) }
+
 /**
  * Populate an object with its details. This means that, if an object has defined only by its ID, with this method, the
  * object will be populated with all its data from the database.
  */
 fun <T : Any> T.populate(): T = stormify().populate(this)
 
+/**
+ * Populate the fields of a lazy group of an object with data from the database.
+ * @param group The name of the lazy group.
+ */
+fun <T : Any> T.populate(group: String): T = stormify().populate(this, group)
+
 /**
  * Find all objects of a specific type. Optionally, a where clause can be provided.
  * @param whereClause The where clause to use in the query.
@@ -75,6 +154,50 @@ fun <T : Any> T.populate(): T = stormify().populate(this)
 inline fun <reified T : Any> findAll(whereClause: String = "", vararg arguments: Any?): List<T> =
     stormify().findAll(T::class.java, whereClause, *arguments)
 
+/**
+ * Find all objects of a specific type, fetching only the given fields and the primary keys. Optionally, a where
+ * clause can be provided.
+ * @param fields The fields to fetch, either by their property name or by their column name.
+ * @param whereClause The where clause to use in the query.
+ * @param arguments The arguments to pass to the query.
+ * @return The list of partially populated objects found.
+ */
+inline fun <reified T : Any> findAll(fields: Collection<String>, whereClause: String = "", vararg arguments: Any?): List<T> =
+    stormify().findAll(T::class.java, fields, whereClause, *arguments)
+
+/**
+ * Delete all objects of a specific type that match a condition, in chunks of at most [chunkSize] rows. Every chunk is
+ * committed separately, so this function can not be called inside a transaction.
+ * @param chunkSize The maximum number of rows deleted by every statement.
+ * @param condition The condition of the deleted rows, without the WHERE keyword.
+ * @param arguments The arguments to pass to the condition.
+ * @param pauseMillis The pause between two chunks, in milliseconds.
+ * @param progress The listener of the total number of deleted rows, called after every chunk.
+ * @return The total number of deleted rows.
+ */
+inline fun <reified T : Any> deleteWhereChunked(
+    chunkSize: Int, condition: String, vararg arguments: Any?, pauseMillis: Long = 0, noinline progress: ((Int) -> Unit)? = null
+): Int = stormify().deleteWhereChunked(T::class.java, chunkSize, pauseMillis, progress?.let { IntConsumer(it) }, condition, *arguments)
+
+/**
+ * Update all objects of a specific type that match a condition, in chunks of at most [chunkSize] rows. The update
+ * should change the rows so that they no longer match the condition. Every chunk is committed separately, so this
+ * function can not be called inside a transaction.
+ * @param chunkSize The maximum number of rows updated by every statement.
+ * @param setClause The assignments of the update, without the SET keyword.
+ * @param condition The condition of the updated rows, without the WHERE keyword.
+ * @param arguments The arguments to pass to the assignments and the condition, in this order.
+ * @param pauseMillis The pause between two chunks, in milliseconds.
+ * @param progress The listener of the total number of updated rows, called after every chunk.
+ * @return The total number of updated rows.
+ */
+inline fun <reified T : Any> updateWhereChunked(
+    chunkSize: Int, setClause: String, condition: String, vararg arguments: Any?, pauseMillis: Long = 0,
+    noinline progress: ((Int) -> Unit)? = null
+): Int = stormify().updateWhereChunked(
+    T::class.java, chunkSize, pauseMillis, progress?.let { IntConsumer(it) }, setClause, condition, *arguments
+)
+
 /**
  * Find an object by its ID.
  * @param id The ID of the object.
@@ -82,6 +205,18 @@ inline fun <reified T : Any> findAll(whereClause: String = "", vararg arguments:
  */
 inline fun <reified T : Any> findById(id: Any): T? = stormify().findById(T::class.java, id)
 
+/**
+ * Load a hierarchy of entities of a self-referencing table with one query.
+ *
+ * @param rootId The primary key of the root entity.
+ * @param maxDepth The maximum depth of the hierarchy, where the root entity has depth 0.
+ * @param parentProperty The name of the property with the parent of an entity. If empty, the only property with the
+ * type of the class is used.
+ * @return The root node of the hierarchy, or null if the root entity is not found.
+ */
+inline fun <reified T : Any> loadTree(rootId: Any, maxDepth: Int, parentProperty: String = ""): TreeNode<T>? =
+    stormify().loadTree(T::class.java, rootId, parentProperty, maxDepth)
+
 /**
  * Find the details of a parent object. Use the parent's ID to fetch all objects that are related to the parent.
  * @param property  The name of the reference property in the details class (i.e. the foreign key property name).
@@ -98,6 +233,13 @@ inline fun <reified T : Any> Any.details(property: String = ""): List<T> =
  */
 fun transaction(block: () -> Unit) = stormify().transaction(block)
 
+/**
+ * Execute a block of code with a different limit on the results of queries, instead of the global limit.
+ * @param limit The result limit of the block.
+ * @return The result of the block.
+ */
+fun <T> withResultLimit(limit: ResultLimit, block: () -> T): T = stormify().withResultLimit(limit, block)
+
 /**
  * Execute a stored procedure.
  * @param params The parameters to pass to the stored procedure.
@@ -133,17 +275,21 @@ inline val <reified T : Any> KClass<T>.db get() = stormify().getTableInfo(T::cla
 /**
  * @suppress
  */
-class db<T>(defaultValue: T) : ReadWriteProperty<Any?, T> {
+class db<T>(defaultValue: T, private val lazyGroup: String = "") : ReadWriteProperty<Any?, T> {
     var prop: T = defaultValue
     override fun getValue(thisRef: Any?, property: KProperty<*>): T {
-        stormify().populate(thisRef)
+        populate(thisRef)
         return prop
     }
 
     override fun setValue(thisRef: Any?, property: KProperty<*>, value: T) {
-        stormify().populate(thisRef)
+        populate(thisRef)
         prop = value
     }
+
+    private fun populate(thisRef: Any?) {
+        if (lazyGroup.isEmpty()) stormify().populate(thisRef) else stormify().populate(thisRef, lazyGroup)
+    }
 }
 
 /**
@@ -176,4 +322,26 @@ class LazyDetailsProperty<T>(private val cls: Class<*>, private val propertyName
         initialized = true
         this.value = value
     }
-}
\ No newline at end of file
+}
+
+/**
+ * Define a lazy property with the details of a parent object, as a paged list. Only the rows of the current page are
+ * loaded, and the list can be further sorted and filtered. This property requires the `biglist` module.
+ * @param propertyName The name of the reference property in the details class (i.e. the foreign key property name).
+ *         If empty, the first field of the parent class that matches the details class will be used.
+ *         If more than one field matches, an exception will be thrown.
+ */
+inline fun <reified T : Any> lazyPagedDetails(propertyName: String = ""): ReadOnlyProperty<Any?, DetailsList<T>> {
+    return LazyPagedDetailsProperty(T::class.java, propertyName)
+}
+
+/**
+ * @suppress
+ */
+class LazyPagedDetailsProperty<T>(private val cls: Class<T>, private val propertyName: String) :
+    ReadOnlyProperty<Any?, DetailsList<T>> {
+    private var value: DetailsList<T>? = null
+    override fun getValue(thisRef: Any?, property: KProperty<*>): DetailsList<T> {
+        return value ?: DetailsList(thisRef!!, cls, propertyName).also { value = it }
+    }
+}
@@ -0,0 +1,29 @@
+plugins {
+    java
+    application
+}
+
+group = parent?.group ?: IllegalStateException("Group is not defined")
+version = parent?.version ?: IllegalStateException("Version is not defined")
+description = "Stormify Load Test"
+
+// HikariCP 5 requires Java 11; virtual threads are used when running on Java 21 or newer
+java.sourceCompatibility = JavaVersion.VERSION_11
+java.targetCompatibility = JavaVersion.VERSION_11
+
+dependencies {
+    implementation(project(":db"))
+    implementation(project(":logger"))
+    implementation("com.zaxxer:HikariCP:5.1.0")
+    implementation("org.hdrhistogram:HdrHistogram:2.2.2")
+    runtimeOnly("com.h2database:h2:2.2.224")
+}
+
+application {
+    mainClass.set("onl.ycode.stormify.loadtest.LoadTest")
+}
+
+tasks.named<JavaExec>("run") {
+    // Usage: ./gradlew :loadtest:run --args="path/to/loadtest.properties"
+    workingDir = rootProject.projectDir
+}
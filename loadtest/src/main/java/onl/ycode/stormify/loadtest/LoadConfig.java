@@ -0,0 +1,94 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify.loadtest;
+
+import java.io.*;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * The configuration of the load test, as read from a properties file. See the default {@code loadtest.properties}
+ * for the available options.
+ */
+final class LoadConfig {
+    final String jdbcUrl;
+    final String username;
+    final String password;
+    final int poolSize;
+    final boolean createSchema;
+    final int threads;
+    final boolean virtualThreads;
+    final int warmupSeconds;
+    final int durationSeconds;
+    final int rows;
+    final int columns;
+    final int queryRows;
+    final int transactionRows;
+    final Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+
+    private LoadConfig(Properties props) {
+        jdbcUrl = string(props, "jdbcUrl");
+        username = props.getProperty("username", "");
+        password = props.getProperty("password", "");
+        poolSize = integer(props, "poolSize", 1, Integer.MAX_VALUE);
+        createSchema = Boolean.parseBoolean(string(props, "createSchema"));
+        threads = integer(props, "threads", 1, Integer.MAX_VALUE);
+        virtualThreads = Boolean.parseBoolean(string(props, "virtualThreads"));
+        warmupSeconds = integer(props, "warmupSeconds", 0, Integer.MAX_VALUE);
+        durationSeconds = integer(props, "durationSeconds", 1, Integer.MAX_VALUE);
+        rows = integer(props, "rows", 1, Integer.MAX_VALUE);
+        columns = integer(props, "columns", 1, LoadRow.MAX_COLUMNS);
+        queryRows = integer(props, "queryRows", 1, Integer.MAX_VALUE);
+        transactionRows = integer(props, "transactionRows", 1, Integer.MAX_VALUE);
+        int total = 0;
+        for (Operation op : Operation.values()) {
+            int weight = integer(props, op.key(), 0, Integer.MAX_VALUE);
+            mix.put(op, weight);
+            total += weight;
+        }
+        if (total == 0)
+            throw new IllegalArgumentException("At least one operation should have a positive weight");
+    }
+
+    /**
+     * Load the configuration. The default configuration is loaded first, and then overridden by the given file.
+     *
+     * @param path the path of the configuration file, or null to use the default configuration
+     * @return the configuration
+     * @throws IOException if the configuration could not be read
+     */
+    static LoadConfig load(String path) throws IOException {
+        Properties props = new Properties();
+        try (InputStream in = LoadConfig.class.getResourceAsStream("/loadtest.properties")) {
+            if (in == null)
+                throw new FileNotFoundException("Default configuration not found");
+            props.load(in);
+        }
+        if (path != null)
+            try (Reader in = new FileReader(path)) {
+                props.load(in);
+            }
+        return new LoadConfig(props);
+    }
+
+    private static String string(Properties props, String key) {
+        String value = props.getProperty(key);
+        if (value == null || value.trim().isEmpty())
+            throw new IllegalArgumentException("Missing configuration option " + key);
+        return value.trim();
+    }
+
+    private static int integer(Properties props, String key, int min, int max) {
+        int value;
+        try {
+            value = Integer.parseInt(string(props, key));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Configuration option " + key + " should be a number");
+        }
+        if (value < min || value > max)
+            throw new IllegalArgumentException("Configuration option " + key + " should be between " + min + " and " + max);
+        return value;
+    }
+}
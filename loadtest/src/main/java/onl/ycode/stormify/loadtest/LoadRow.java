@@ -0,0 +1,343 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify.loadtest;
+
+import onl.ycode.stormify.DbField;
+
+/**
+ * The entity of the load test. It has {@value #MAX_COLUMNS} data columns; the columns beyond the configured width
+ * are blacklisted, so that the width of the entity can be adjusted without recompiling.
+ */
+public class LoadRow {
+    /**
+     * The maximum number of data columns.
+     */
+    public static final int MAX_COLUMNS = 32;
+
+    @DbField(primaryKey = true)
+    private Integer id;
+    private String column01;
+    private Integer column02;
+    private String column03;
+    private Integer column04;
+    private String column05;
+    private Integer column06;
+    private String column07;
+    private Integer column08;
+    private String column09;
+    private Integer column10;
+    private String column11;
+    private Integer column12;
+    private String column13;
+    private Integer column14;
+    private String column15;
+    private Integer column16;
+    private String column17;
+    private Integer column18;
+    private String column19;
+    private Integer column20;
+    private String column21;
+    private Integer column22;
+    private String column23;
+    private Integer column24;
+    private String column25;
+    private Integer column26;
+    private String column27;
+    private Integer column28;
+    private String column29;
+    private Integer column30;
+    private String column31;
+    private Integer column32;
+
+    public LoadRow() {
+    }
+
+    public LoadRow(Integer id) {
+        this.id = id;
+    }
+
+    /**
+     * Get the name of a data column.
+     *
+     * @param index the index of the column, starting from 1
+     * @return the name of the column
+     */
+    static String columnName(int index) {
+        return String.format("column%02d", index);
+    }
+
+    /**
+     * Check if a data column holds numbers or text.
+     *
+     * @param index the index of the column, starting from 1
+     * @return true if the column holds numbers
+     */
+    static boolean isNumeric(int index) {
+        return index % 2 == 0;
+    }
+
+    public Integer getId() {
+        return id;
+    }
+
+    public void setId(Integer id) {
+        this.id = id;
+    }
+
+    public String getColumn01() {
+        return column01;
+    }
+
+    public void setColumn01(String column01) {
+        this.column01 = column01;
+    }
+
+    public Integer getColumn02() {
+        return column02;
+    }
+
+    public void setColumn02(Integer column02) {
+        this.column02 = column02;
+    }
+
+    public String getColumn03() {
+        return column03;
+    }
+
+    public void setColumn03(String column03) {
+        this.column03 = column03;
+    }
+
+    public Integer getColumn04() {
+        return column04;
+    }
+
+    public void setColumn04(Integer column04) {
+        this.column04 = column04;
+    }
+
+    public String getColumn05() {
+        return column05;
+    }
+
+    public void setColumn05(String column05) {
+        this.column05 = column05;
+    }
+
+    public Integer getColumn06() {
+        return column06;
+    }
+
+    public void setColumn06(Integer column06) {
+        this.column06 = column06;
+    }
+
+    public String getColumn07() {
+        return column07;
+    }
+
+    public void setColumn07(String column07) {
+        this.column07 = column07;
+    }
+
+    public Integer getColumn08() {
+        return column08;
+    }
+
+    public void setColumn08(Integer column08) {
+        this.column08 = column08;
+    }
+
+    public String getColumn09() {
+        return column09;
+    }
+
+    public void setColumn09(String column09) {
+        this.column09 = column09;
+    }
+
+    public Integer getColumn10() {
+        return column10;
+    }
+
+    public void setColumn10(Integer column10) {
+        this.column10 = column10;
+    }
+
+    public String getColumn11() {
+        return column11;
+    }
+
+    public void setColumn11(String column11) {
+        this.column11 = column11;
+    }
+
+    public Integer getColumn12() {
+        return column12;
+    }
+
+    public void setColumn12(Integer column12) {
+        this.column12 = column12;
+    }
+
+    public String getColumn13() {
+        return column13;
+    }
+
+    public void setColumn13(String column13) {
+        this.column13 = column13;
+    }
+
+    public Integer getColumn14() {
+        return column14;
+    }
+
+    public void setColumn14(Integer column14) {
+        this.column14 = column14;
+    }
+
+    public String getColumn15() {
+        return column15;
+    }
+
+    public void setColumn15(String column15) {
+        this.column15 = column15;
+    }
+
+    public Integer getColumn16() {
+        return column16;
+    }
+
+    public void setColumn16(Integer column16) {
+        this.column16 = column16;
+    }
+
+    public String getColumn17() {
+        return column17;
+    }
+
+    public void setColumn17(String column17) {
+        this.column17 = column17;
+    }
+
+    public Integer getColumn18() {
+        return column18;
+    }
+
+    public void setColumn18(Integer column18) {
+        this.column18 = column18;
+    }
+
+    public String getColumn19() {
+        return column19;
+    }
+
+    public void setColumn19(String column19) {
+        this.column19 = column19;
+    }
+
+    public Integer getColumn20() {
+        return column20;
+    }
+
+    public void setColumn20(Integer column20) {
+        this.column20 = column20;
+    }
+
+    public String getColumn21() {
+        return column21;
+    }
+
+    public void setColumn21(String column21) {
+        this.column21 = column21;
+    }
+
+    public Integer getColumn22() {
+        return column22;
+    }
+
+    public void setColumn22(Integer column22) {
+        this.column22 = column22;
+    }
+
+    public String getColumn23() {
+        return column23;
+    }
+
+    public void setColumn23(String column23) {
+        this.column23 = column23;
+    }
+
+    public Integer getColumn24() {
+        return column24;
+    }
+
+    public void setColumn24(Integer column24) {
+        this.column24 = column24;
+    }
+
+    public String getColumn25() {
+        return column25;
+    }
+
+    public void setColumn25(String column25) {
+        this.column25 = column25;
+    }
+
+    public Integer getColumn26() {
+        return column26;
+    }
+
+    public void setColumn26(Integer column26) {
+        this.column26 = column26;
+    }
+
+    public String getColumn27() {
+        return column27;
+    }
+
+    public void setColumn27(String column27) {
+        this.column27 = column27;
+    }
+
+    public Integer getColumn28() {
+        return column28;
+    }
+
+    public void setColumn28(Integer column28) {
+        this.column28 = column28;
+    }
+
+    public String getColumn29() {
+        return column29;
+    }
+
+    public void setColumn29(String column29) {
+        this.column29 = column29;
+    }
+
+    public Integer getColumn30() {
+        return column30;
+    }
+
+    public void setColumn30(Integer column30) {
+        this.column30 = column30;
+    }
+
+    public String getColumn31() {
+        return column31;
+    }
+
+    public void setColumn31(String column31) {
+        this.column31 = column31;
+    }
+
+    public Integer getColumn32() {
+        return column32;
+    }
+
+    public void setColumn32(Integer column32) {
+        this.column32 = column32;
+    }
+}
@@ -0,0 +1,140 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify.loadtest;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import onl.ycode.logger.SilentLogger;
+import onl.ycode.stormify.ExecutionMonitor;
+import org.HdrHistogram.Histogram;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static onl.ycode.stormify.StormifyManager.stormify;
+
+/**
+ * A macro benchmark, that drives a mixed workload through Stormify from many threads, and reports throughput,
+ * latency percentiles, connection pool wait time and allocation per operation.
+ * <p>
+ * Usage: {@code LoadTest [configuration.properties]}
+ */
+public final class LoadTest {
+    private final LoadConfig config;
+    private final Statistics statistics = new Statistics();
+    private volatile long measureStart = Long.MAX_VALUE;
+    private volatile long measureEnd;
+
+    private LoadTest(LoadConfig config) {
+        this.config = config;
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = LoadConfig.load(args.length > 0 ? args[0] : null);
+        new LoadTest(config).run();
+    }
+
+    private void run() throws Exception {
+        HikariConfig poolConfig = new HikariConfig();
+        poolConfig.setJdbcUrl(config.jdbcUrl);
+        poolConfig.setUsername(config.username);
+        poolConfig.setPassword(config.password);
+        poolConfig.setMaximumPoolSize(config.poolSize);
+        stormify().setLogger(new SilentLogger());
+        stormify().setDataSource(new HikariDataSource(poolConfig));
+        try {
+            Workload workload = new Workload(config);
+            if (config.createSchema) {
+                System.out.println("Creating " + config.rows + " rows with " + config.columns + " columns");
+                workload.createSchema();
+            }
+            stormify().setExecutionMonitor(new ExecutionMonitor() {
+                @Override
+                public Span connectionRequested(boolean transactional) {
+                    long start = System.nanoTime();
+                    return (count, error) -> {
+                        if (start >= measureStart)
+                            statistics.poolWait(System.nanoTime() - start);
+                    };
+                }
+            });
+            System.out.println("Running " + config.threads + (config.virtualThreads ? " virtual" : " platform") + " threads for "
+                    + config.warmupSeconds + "s warmup and " + config.durationSeconds + "s measurement");
+            measure(workload);
+        } finally {
+            stormify().setExecutionMonitor(null);
+            stormify().closeDataSource();
+        }
+    }
+
+    private void measure(Workload workload) throws Exception {
+        long now = System.nanoTime();
+        measureStart = now + TimeUnit.SECONDS.toNanos(config.warmupSeconds);
+        measureEnd = measureStart + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+        ExecutorService executor = newExecutor();
+        for (int i = 0; i < config.threads; i++)
+            executor.execute(() -> work(workload));
+        executor.shutdown();
+
+        TimeUnit.NANOSECONDS.sleep(Math.max(measureStart - System.nanoTime(), 0));
+        long allocatedBefore = allocatedBytes();
+        TimeUnit.NANOSECONDS.sleep(Math.max(measureEnd - System.nanoTime(), 0));
+        long allocatedAfter = allocatedBytes();
+        if (!executor.awaitTermination(1, TimeUnit.MINUTES))
+            System.err.println("Some workers did not finish in time");
+        long allocated = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+        System.out.println();
+        statistics.print(System.out, config.durationSeconds, allocated);
+    }
+
+    private void work(Workload workload) {
+        Random random = new Random();
+        Map<Operation, Histogram> latencies = Statistics.newWorkerLatencies();
+        long start;
+        while ((start = System.nanoTime()) < measureEnd) {
+            Operation operation = workload.next(random);
+            try {
+                workload.execute(operation, random);
+                if (start >= measureStart)
+                    Statistics.record(latencies.get(operation), System.nanoTime() - start);
+            } catch (RuntimeException e) {
+                if (start >= measureStart)
+                    statistics.error(operation);
+            }
+        }
+        statistics.merge(latencies);
+    }
+
+    private ExecutorService newExecutor() {
+        if (!config.virtualThreads)
+            return Executors.newFixedThreadPool(config.threads);
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or newer", e);
+        }
+    }
+
+    /**
+     * The bytes allocated by all live threads so far. Virtual threads are accounted to their carrier threads.
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean))
+            return -1;
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled())
+            return -1;
+        long total = 0;
+        for (long bytes : sunBean.getThreadAllocatedBytes(bean.getAllThreadIds()))
+            if (bytes > 0)
+                total += bytes;
+        return total;
+    }
+}
@@ -0,0 +1,38 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify.loadtest;
+
+/**
+ * The operations of the load test workload.
+ */
+enum Operation {
+    /**
+     * Read a single row by its primary key.
+     */
+    READ,
+    /**
+     * Read a range of rows.
+     */
+    QUERY,
+    /**
+     * Create a new row.
+     */
+    CREATE,
+    /**
+     * Read and update a row.
+     */
+    UPDATE,
+    /**
+     * Delete a row created by the load test.
+     */
+    DELETE,
+    /**
+     * Read and update a few rows in a transaction.
+     */
+    TRANSACTION;
+
+    String key() {
+        return "mix." + name().toLowerCase();
+    }
+}
@@ -0,0 +1,93 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The measurements of the load test. Latencies are recorded in microseconds.
+ */
+final class Statistics {
+    private static final long HIGHEST_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Map<Operation, Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final Histogram poolWait = new ConcurrentHistogram(HIGHEST_MICROS, 3);
+
+    Statistics() {
+        for (Operation op : Operation.values()) {
+            latencies.put(op, new Histogram(HIGHEST_MICROS, 3));
+            errors.put(op, new LongAdder());
+        }
+    }
+
+    /**
+     * Create the latency histograms of a single worker. They are not thread safe, and should be merged with
+     * {@link #merge(Map)} when the worker is done.
+     *
+     * @return the histograms of the worker
+     */
+    static Map<Operation, Histogram> newWorkerLatencies() {
+        Map<Operation, Histogram> result = new EnumMap<>(Operation.class);
+        for (Operation op : Operation.values())
+            result.put(op, new Histogram(HIGHEST_MICROS, 3));
+        return result;
+    }
+
+    static void record(Histogram histogram, long nanos) {
+        histogram.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), HIGHEST_MICROS));
+    }
+
+    synchronized void merge(Map<Operation, Histogram> worker) {
+        for (Map.Entry<Operation, Histogram> entry : worker.entrySet())
+            latencies.get(entry.getKey()).add(entry.getValue());
+    }
+
+    void error(Operation operation) {
+        errors.get(operation).increment();
+    }
+
+    void poolWait(long nanos) {
+        record(poolWait, nanos);
+    }
+
+    void print(PrintStream out, double seconds, long allocatedBytes) {
+        Histogram total = new Histogram(HIGHEST_MICROS, 3);
+        long totalErrors = 0;
+        out.printf("%-12s %10s %10s %10s %10s %10s %10s %10s %8s%n", "Operation", "Count", "Ops/s", "p50 ms", "p95 ms", "p99 ms", "p999 ms", "Max ms", "Errors");
+        for (Operation op : Operation.values()) {
+            Histogram h = latencies.get(op);
+            long failed = errors.get(op).sum();
+            totalErrors += failed;
+            if (h.getTotalCount() == 0 && failed == 0)
+                continue;
+            total.add(h);
+            printLine(out, op.name(), h, seconds, failed);
+        }
+        printLine(out, "TOTAL", total, seconds, totalErrors);
+        out.println();
+        out.printf("Pool wait:   %d requests, p50 %.3f ms, p95 %.3f ms, p99 %.3f ms, p999 %.3f ms, max %.3f ms%n", poolWait.getTotalCount(),
+                millis(poolWait, 50), millis(poolWait, 95), millis(poolWait, 99), millis(poolWait, 99.9), poolWait.getMaxValue() / 1000d);
+        if (allocatedBytes >= 0 && total.getTotalCount() > 0)
+            out.printf("Allocation:  %.1f MB/s, %d bytes per operation%n", allocatedBytes / seconds / (1024 * 1024), allocatedBytes / total.getTotalCount());
+        else
+            out.println("Allocation:  not available on this JVM");
+    }
+
+    private static void printLine(PrintStream out, String name, Histogram h, double seconds, long failed) {
+        out.printf("%-12s %10d %10.1f %10.3f %10.3f %10.3f %10.3f %10.3f %8d%n", name, h.getTotalCount(), h.getTotalCount() / seconds,
+                millis(h, 50), millis(h, 95), millis(h, 99), millis(h, 99.9), h.getMaxValue() / 1000d, failed);
+    }
+
+    private static double millis(Histogram h, double percentile) {
+        return h.getValueAtPercentile(percentile) / 1000d;
+    }
+}
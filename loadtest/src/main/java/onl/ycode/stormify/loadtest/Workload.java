@@ -0,0 +1,119 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.stormify.loadtest;
+
+import onl.ycode.stormify.FieldInfo;
+import onl.ycode.stormify.TableInfo;
+
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static onl.ycode.stormify.StormifyManager.stormify;
+
+/**
+ * Executes the operations of the load test through Stormify.
+ */
+final class Workload {
+    private static final String TABLE = "load_row";
+
+    private final LoadConfig config;
+    private final FieldInfo[] columns;
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final AtomicInteger nextId;
+    private final Queue<Integer> created = new ConcurrentLinkedQueue<>();
+
+    Workload(LoadConfig config) {
+        this.config = config;
+        for (int i = config.columns + 1; i <= LoadRow.MAX_COLUMNS; i++)
+            stormify().addBlacklistField(LoadRow.columnName(i));
+        TableInfo info = stormify().getTableInfo(LoadRow.class);
+        columns = new FieldInfo[config.columns];
+        for (int i = 0; i < columns.length; i++)
+            columns[i] = info.getField(LoadRow.columnName(i + 1));
+        operations = Operation.values();
+        cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++)
+            cumulativeWeights[i] = total += config.mix.get(operations[i]);
+        nextId = new AtomicInteger(config.rows);
+    }
+
+    void createSchema() {
+        StringBuilder ddl = new StringBuilder("CREATE TABLE " + TABLE + " (id INTEGER PRIMARY KEY");
+        for (int i = 1; i <= config.columns; i++)
+            ddl.append(", ").append(LoadRow.columnName(i)).append(LoadRow.isNumeric(i) ? " INTEGER" : " VARCHAR(100)");
+        stormify().executeUpdate(ddl.append(')').toString());
+        int batch = 1000;
+        for (int from = 1; from <= config.rows; from += batch) {
+            int start = from;
+            stormify().transaction(() -> {
+                for (int id = start; id < start + batch && id <= config.rows; id++)
+                    stormify().create(newRow(id));
+            });
+        }
+    }
+
+    Operation next(Random random) {
+        int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++)
+            if (value < cumulativeWeights[i])
+                return operations[i];
+        throw new IllegalStateException("Unable to select operation");
+    }
+
+    void execute(Operation operation, Random random) {
+        switch (operation) {
+            case READ:
+                stormify().findById(LoadRow.class, randomId(random));
+                break;
+            case QUERY:
+                int start = random.nextInt(Math.max(config.rows - config.queryRows, 1));
+                stormify().read(LoadRow.class, "SELECT * FROM " + TABLE + " WHERE id > ? AND id <= ?", start, start + config.queryRows);
+                break;
+            case CREATE:
+                create();
+                break;
+            case UPDATE:
+                update(random);
+                break;
+            case DELETE:
+                // Only rows created by the load test are deleted, so that the initial rows are always present
+                Integer id = created.poll();
+                stormify().delete(id == null ? create() : new LoadRow(id));
+                break;
+            case TRANSACTION:
+                stormify().transaction(() -> {
+                    for (int i = 0; i < config.transactionRows; i++)
+                        update(random);
+                });
+                break;
+        }
+    }
+
+    private LoadRow create() {
+        LoadRow row = stormify().create(newRow(nextId.incrementAndGet()));
+        created.add(row.getId());
+        return row;
+    }
+
+    private void update(Random random) {
+        LoadRow row = stormify().findById(LoadRow.class, randomId(random));
+        row.setColumn01("Updated " + random.nextInt(1000));
+        stormify().update(row);
+    }
+
+    private int randomId(Random random) {
+        return random.nextInt(config.rows) + 1;
+    }
+
+    private LoadRow newRow(int id) {
+        LoadRow row = new LoadRow(id);
+        for (int i = 0; i < columns.length; i++)
+            columns[i].setValue(row, LoadRow.isNumeric(i + 1) ? (Object) (id + i) : "Value " + id + " of column " + (i + 1));
+        return row;
+    }
+}
@@ -0,0 +1,40 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.logger;
+
+/**
+ * The severity levels supported by the {@link Logger} interface, in ascending order.
+ */
+public enum LogLevel {
+    /**
+     * Debug level, used for detailed diagnostic information.
+     */
+    DEBUG,
+    /**
+     * Info level, used for general operational messages.
+     */
+    INFO,
+    /**
+     * Warning level, used for unexpected but recoverable situations.
+     */
+    WARN,
+    /**
+     * Error level, used for failures of an operation.
+     */
+    ERROR,
+    /**
+     * Fatal level, used for failures that the application can not recover from.
+     */
+    FATAL;
+
+    /**
+     * Check if this level is at least as severe as the given level.
+     *
+     * @param other the level to compare against
+     * @return true if this level should be logged when the threshold is the given level
+     */
+    public boolean isAtLeast(LogLevel other) {
+        return ordinal() >= other.ordinal();
+    }
+}
@@ -0,0 +1,267 @@
+// SPDX-License-Identifier: Apache-2.0
+// (C) Panayotis Katsaloulis
+
+package onl.ycode.logger;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * This is a proxy logger that forwards messages to another logger, but suppresses repeated messages.
+ * <p>
+ * Messages are grouped by their level and their message template (i.e. the message before any argument
+ * substitution). Only the first message of a group is forwarded within a time window; the rest are counted and
+ * reported as a single summary message, when the window of the group expires.
+ * <p>
+ * Use this logger for diagnostics that may be emitted for every row of a query or every call of a hot path.
+ */
+public class RateLimitedLogger implements GenericLogger {
+    private static final long DEFAULT_WINDOW_MILLIS = 60_000;
+    private static final int DEFAULT_MAX_TEMPLATES = 1024;
+
+    private final Logger logger;
+    private final long windowMillis;
+    private final int maxTemplates;
+    private final Map<LogLevel, ConcurrentHashMap<String, Counter>> counters = new EnumMap<>(LogLevel.class);
+    private final AtomicLong lastSweep = new AtomicLong(System.currentTimeMillis());
+
+    /**
+     * Create a new rate limited logger, that suppresses repeated messages for one minute.
+     *
+     * @param logger the logger to use for logging
+     */
+    public RateLimitedLogger(Logger logger) {
+        this(logger, DEFAULT_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a new rate limited logger.
+     *
+     * @param logger the logger to use for logging
+     * @param window the time window, in which repeated messages are suppressed
+     * @param unit   the time unit of the window
+     */
+    public RateLimitedLogger(Logger logger, long window, TimeUnit unit) {
+        this(logger, window, unit, DEFAULT_MAX_TEMPLATES);
+    }
+
+    /**
+     * Create a new rate limited logger.
+     *
+     * @param logger       the logger to use for logging
+     * @param window       the time window, in which repeated messages are suppressed
+     * @param unit         the time unit of the window
+     * @param maxTemplates the maximum number of distinct message templates to track. When this limit is reached,
+     *                     messages of new templates are forwarded without suppression.
+     */
+    public RateLimitedLogger(Logger logger, long window, TimeUnit unit, int maxTemplates) {
+        requireNonNull(logger, "Logger must not be null");
+        requireNonNull(unit, "Time unit must not be null");
+        if (window <= 0)
+            throw new IllegalArgumentException("Window must be positive");
+        if (maxTemplates < 1)
+            throw new IllegalArgumentException("Maximum number of templates must be at least 1");
+        this.logger = logger;
+        this.windowMillis = unit.toMillis(window);
+        this.maxTemplates = maxTemplates;
+        for (LogLevel level : LogLevel.values())
+            counters.put(level, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Get the logger that messages are forwarded to.
+     *
+     * @return the target logger
+     */
+    public Logger getLogger() {
+        return logger;
+    }
+
+    /**
+     * Report all pending suppression summaries immediately, and forget the message templates that
+     * are no longer active.
+     */
+    public void flush() {
+        lastSweep.set(System.currentTimeMillis());
+        sweep(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void debug(String message) {
+        if (allow(LogLevel.DEBUG, message)) logger.debug(message);
+    }
+
+    @Override
+    public void debug(String message, Throwable throwable) {
+        if (allow(LogLevel.DEBUG, message)) logger.debug(message, throwable);
+    }
+
+    @Override
+    public void debug(String message, Object... args) {
+        if (allow(LogLevel.DEBUG, message)) logger.debug(message, args);
+    }
+
+    @Override
+    public void debug(String message, Throwable throwable, Object... args) {
+        if (allow(LogLevel.DEBUG, message)) logger.debug(message, throwable, args);
+    }
+
+    @Override
+    public void info(String message) {
+        if (allow(LogLevel.INFO, message)) logger.info(message);
+    }
+
+    @Override
+    public void info(String message, Throwable throwable) {
+        if (allow(LogLevel.INFO, message)) logger.info(message, throwable);
+    }
+
+    @Override
+    public void info(String message, Object... args) {
+        if (allow(LogLevel.INFO, message)) logger.info(message, args);
+    }
+
+    @Override
+    public void info(String message, Throwable throwable, Object... args) {
+        if (allow(LogLevel.INFO, message)) logger.info(message, throwable, args);
+    }
+
+    @Override
+    public void warn(String message) {
+        if (allow(LogLevel.WARN, message)) logger.warn(message);
+    }
+
+    @Override
+    public void warn(String message, Throwable throwable) {
+        if (allow(LogLevel.WARN, message)) logger.warn(message, throwable);
+    }
+
+    @Override
+    public void warn(String message, Object... args) {
+        if (allow(LogLevel.WARN, message)) logger.warn(message, args);
+    }
+
+    @Override
+    public void warn(String message, Throwable throwable, Object... args) {
+        if (allow(LogLevel.WARN, message)) logger.warn(message, throwable, args);
+    }
+
+    @Override
+    public void error(String message) {
+        if (allow(LogLevel.ERROR, message)) logger.error(message);
+    }
+
+    @Override
+    public void error(String message, Throwable throwable) {
+        if (allow(LogLevel.ERROR, message)) logger.error(message, throwable);
+    }
+
+    @Override
+    public void error(String message, Object... args) {
+        if (allow(LogLevel.ERROR, message)) logger.error(message, args);
+    }
+
+    @Override
+    public void error(String message, Throwable throwable, Object... args) {
+        if (allow(LogLevel.ERROR, message)) logger.error(message, throwable, args);
+    }
+
+    @Override
+    public void fatal(String message) {
+        if (allow(LogLevel.FATAL, message)) logger.fatal(message);
+    }
+
+    @Override
+    public void fatal(String message, Throwable throwable) {
+        if (allow(LogLevel.FATAL, message)) logger.fatal(message, throwable);
+    }
+
+    @Override
+    public void fatal(String message, Object... args) {
+        if (allow(LogLevel.FATAL, message)) logger.fatal(message, args);
+    }
+
+    @Override
+    public void fatal(String message, Throwable throwable, Object... args) {
+        if (allow(LogLevel.FATAL, message)) logger.fatal(message, throwable, args);
+    }
+
+    private boolean allow(LogLevel level, String template) {
+        long now = System.currentTimeMillis();
+        long last = lastSweep.get();
+        if (now - last >= windowMillis && lastSweep.compareAndSet(last, now))
+            sweep(now);
+        if (template == null)
+            return true;
+        ConcurrentHashMap<String, Counter> byTemplate = counters.get(level);
+        Counter counter = byTemplate.get(template);
+        if (counter == null) {
+            if (byTemplate.size() >= maxTemplates)
+                return true;
+            Counter created = new Counter(now);
+            counter = byTemplate.putIfAbsent(template, created);
+            if (counter == null)
+                return true;
+        }
+        long start = counter.windowStart.get();
+        if (now - start >= windowMillis && counter.windowStart.compareAndSet(start, now)) {
+            report(level, template, counter.suppressed.getAndSet(0));
+            return true;
+        }
+        counter.suppressed.incrementAndGet();
+        return false;
+    }
+
+    private void sweep(long now) {
+        for (Map.Entry<LogLevel, ConcurrentHashMap<String, Counter>> levelEntry : counters.entrySet())
+            for (Iterator<Map.Entry<String, Counter>> it = levelEntry.getValue().entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Counter> entry = it.next();
+                Counter counter = entry.getValue();
+                if (now - counter.windowStart.get() < windowMillis)
+                    continue;
+                long suppressed = counter.suppressed.getAndSet(0);
+                if (suppressed > 0)
+                    report(levelEntry.getKey(), entry.getKey(), suppressed);
+                else
+                    it.remove();
+            }
+    }
+
+    private void report(LogLevel level, String template, long suppressed) {
+        if (suppressed <= 0)
+            return;
+        String summary = "Suppressed " + suppressed + " message" + (suppressed == 1 ? "" : "s") + " similar to: " + template;
+        switch (level) {
+            case DEBUG:
+                logger.debug(summary);
+                break;
+            case INFO:
+                logger.info(summary);
+                break;
+            case WARN:
+                logger.warn(summary);
+                break;
+            case ERROR:
+                logger.error(summary);
+                break;
+            case FATAL:
+                logger.fatal(summary);
+                break;
+        }
+    }
+
+    private static final class Counter {
+        private final AtomicLong windowStart;
+        private final AtomicLong suppressed = new AtomicLong();
+
+        private Counter(long windowStart) {
+            this.windowStart = new AtomicLong(windowStart);
+        }
+    }
+}
@@ -3,18 +3,38 @@
 
 package onl.ycode.logger;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static java.util.Objects.requireNonNull;
 
 /**
  * A logger that logs to the system output.
+ * <p>
+ * Output is collected in a shared buffer and written to {@link System#out}, as it is at the time of writing. The
+ * buffer is written when it is full, periodically, when an error or fatal message is logged, when {@link #flush()} is called and when the JVM shuts down. Messages below the
+ * minimum level (see {@link #setMinimumLevel(LogLevel)}) are discarded before any formatting takes place.
  */
 public class SystemOutLogger implements GenericLogger {
 
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static final long FLUSH_INTERVAL_MILLIS = 1000;
+    private static final int MAX_RETAINED_BUFFER = 16 * 1024;
+    private static final int OUTPUT_BUFFER_SIZE = 8192;
+    private static final String[] HIDDEN_FRAMES = {"java.", "sun.", "com.sun.", "org.apache.catalina.",
+            "org.apache.tomcat.", "org.apache.jasper.", "worker.org.gradle."};
+
+    private static final ThreadLocal<StringBuilder> lineBuffer = ThreadLocal.withInitial(() -> new StringBuilder(256));
+    private static volatile Timestamp lastTimestamp = new Timestamp(Long.MIN_VALUE, "");
+    private static volatile LogLevel defaultMinimumLevel = LogLevel.DEBUG;
+
     private final String name;
+    private volatile LogLevel minimumLevel;
 
     /**
      * Create a logger for the given class.
@@ -36,75 +56,228 @@ public class SystemOutLogger implements GenericLogger {
         this.name = name;
     }
 
+    /**
+     * Set the minimum level of all system output loggers that do not define their own minimum level.
+     * The default value is {@link LogLevel#DEBUG}, i.e. everything is logged.
+     *
+     * @param level the default minimum level
+     */
+    public static void setDefaultMinimumLevel(LogLevel level) {
+        requireNonNull(level, "Minimum level must not be null");
+        defaultMinimumLevel = level;
+    }
+
+    /**
+     * Set the minimum level of this logger. Messages with lower severity are ignored.
+     *
+     * @param level the minimum level, or null to use the default minimum level.
+     * @see #setDefaultMinimumLevel(LogLevel)
+     */
+    public void setMinimumLevel(LogLevel level) {
+        minimumLevel = level;
+    }
+
+    /**
+     * Get the minimum level of this logger.
+     *
+     * @return the minimum level in effect
+     */
+    public LogLevel getMinimumLevel() {
+        LogLevel level = minimumLevel;
+        return level == null ? defaultMinimumLevel : level;
+    }
+
+    /**
+     * Write all buffered messages to the system output.
+     */
+    public static void flush() {
+        Output.INSTANCE.flush();
+    }
+
     @Override
     public void debug(String message) {
-        log("DEBUG", message, null);
+        log(LogLevel.DEBUG, message, null, null);
     }
 
     @Override
     public void debug(String message, Throwable throwable) {
-        log("DEBUG", message, throwable);
+        log(LogLevel.DEBUG, message, null, throwable);
+    }
+
+    @Override
+    public void debug(String message, Object... args) {
+        log(LogLevel.DEBUG, message, args, null);
+    }
+
+    @Override
+    public void debug(String message, Throwable throwable, Object... args) {
+        log(LogLevel.DEBUG, message, args, throwable);
     }
 
     @Override
     public void info(String message) {
-        log("INFO", message, null);
+        log(LogLevel.INFO, message, null, null);
     }
 
     @Override
     public void info(String message, Throwable throwable) {
-        log("INFO", message, throwable);
+        log(LogLevel.INFO, message, null, throwable);
+    }
+
+    @Override
+    public void info(String message, Object... args) {
+        log(LogLevel.INFO, message, args, null);
+    }
+
+    @Override
+    public void info(String message, Throwable throwable, Object... args) {
+        log(LogLevel.INFO, message, args, throwable);
     }
 
     @Override
     public void warn(String message) {
-        log("WARN", message, null);
+        log(LogLevel.WARN, message, null, null);
     }
 
     @Override
     public void warn(String message, Throwable throwable) {
-        log("WARN", message, throwable);
+        log(LogLevel.WARN, message, null, throwable);
+    }
+
+    @Override
+    public void warn(String message, Object... args) {
+        log(LogLevel.WARN, message, args, null);
+    }
+
+    @Override
+    public void warn(String message, Throwable throwable, Object... args) {
+        log(LogLevel.WARN, message, args, throwable);
     }
 
     @Override
     public void error(String message) {
-        log("ERROR", message, null);
+        log(LogLevel.ERROR, message, null, null);
     }
 
     @Override
     public void error(String message, Throwable throwable) {
-        log("ERROR", message, throwable);
+        log(LogLevel.ERROR, message, null, throwable);
+    }
+
+    @Override
+    public void error(String message, Object... args) {
+        log(LogLevel.ERROR, message, args, null);
+    }
+
+    @Override
+    public void error(String message, Throwable throwable, Object... args) {
+        log(LogLevel.ERROR, message, args, throwable);
     }
 
     @Override
     public void fatal(String message) {
-        log("FATAL", message, null);
+        log(LogLevel.FATAL, message, null, null);
     }
 
     @Override
     public void fatal(String message, Throwable throwable) {
-        log("FATAL", message, throwable);
+        log(LogLevel.FATAL, message, null, throwable);
+    }
+
+    @Override
+    public void fatal(String message, Object... args) {
+        log(LogLevel.FATAL, message, args, null);
     }
 
-    private void log(String level, String message, Throwable th) {
-        System.out.printf("%s [%s] %s: %s%n", dateFormat.format(new Date()), level, name, message);
+    @Override
+    public void fatal(String message, Throwable throwable, Object... args) {
+        log(LogLevel.FATAL, message, args, throwable);
+    }
+
+    private void log(LogLevel level, String message, Object[] args, Throwable th) {
+        if (!level.isAtLeast(getMinimumLevel()))
+            return;
+        StringBuilder line = lineBuffer.get();
+        line.setLength(0);
+        line.append(timestamp(System.currentTimeMillis())).append(" [").append(level.name()).append("] ").append(name).append(": ");
+        line.append(message == null || args == null || args.length == 0 ? message : format(message, args));
+        line.append(System.lineSeparator());
         if (th != null)
-            logException(th, "");
+            appendException(line, th, "");
+        Output.INSTANCE.write(line, level.isAtLeast(LogLevel.ERROR));
+        if (line.capacity() > MAX_RETAINED_BUFFER)
+            lineBuffer.remove();
+    }
+
+    private static String timestamp(long millis) {
+        long second = Math.floorDiv(millis, 1000L);
+        Timestamp current = lastTimestamp;
+        if (current.second != second) {
+            current = new Timestamp(second, DATE_FORMAT.format(Instant.ofEpochSecond(second)));
+            lastTimestamp = current;
+        }
+        return current.text;
     }
 
-    private void logException(Throwable th, String from) {
-        System.out.println(from + th);
+    private static void appendException(StringBuilder out, Throwable th, String from) {
+        out.append(from).append(th).append(System.lineSeparator());
         for (StackTraceElement ste : th.getStackTrace())
-            if (!(ste.getClassName().startsWith("java.")
-                    || ste.getClassName().startsWith("sun.")
-                    || ste.getClassName().startsWith("com.sun.")
-                    || ste.getClassName().startsWith("org.apache.catalina.")
-                    || ste.getClassName().startsWith("org.apache.tomcat.")
-                    || ste.getClassName().startsWith("org.apache.jasper.")
-                    || ste.getClassName().startsWith("worker.org.gradle.")))
-                System.out.println("\tat " + ste);
+            if (!isHidden(ste.getClassName()))
+                out.append("\tat ").append(ste).append(System.lineSeparator());
         Throwable child = th.getCause();
         if (child != null && !child.equals(th))
-            logException(child, "caused by ");
+            appendException(out, child, "caused by ");
+    }
+
+    private static boolean isHidden(String className) {
+        for (String prefix : HIDDEN_FRAMES)
+            if (className.startsWith(prefix))
+                return true;
+        return false;
+    }
+
+    private static final class Timestamp {
+        private final long second;
+        private final String text;
+
+        private Timestamp(long second, String text) {
+            this.second = second;
+            this.text = text;
+        }
+    }
+
+    private static final class Output {
+        private static final Output INSTANCE = new Output();
+
+        private final StringBuilder buffer = new StringBuilder(OUTPUT_BUFFER_SIZE);
+
+        private Output() {
+            ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "SystemOutLogger flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "SystemOutLogger shutdown"));
+        }
+
+        synchronized void write(StringBuilder line, boolean flushNow) {
+            buffer.append(line);
+            if (flushNow || buffer.length() >= OUTPUT_BUFFER_SIZE)
+                flush();
+        }
+
+        synchronized void flush() {
+            if (buffer.length() == 0)
+                return;
+            PrintStream out = System.out;
+            out.append(buffer);
+            out.flush();
+            buffer.setLength(0);
+            if (buffer.capacity() > MAX_RETAINED_BUFFER) {
+                buffer.trimToSize();
+                buffer.ensureCapacity(OUTPUT_BUFFER_SIZE);
+            }
+        }
     }
 }
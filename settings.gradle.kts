@@ -4,9 +4,12 @@ plugins {
 rootProject.name = "stormify"
 
 include("annproc")
+include("benchmarks")
 include("biglist")
 include("browse")
 include("db")
+include("jfr")
 include("kotlin")
+include("loadtest")
 include("logger")
 include("tokenizer")